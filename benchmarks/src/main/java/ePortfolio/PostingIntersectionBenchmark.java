@@ -0,0 +1,117 @@
+package ePortfolio;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares intersecting two keyword postings as the keyword index used to, by copying a
+ * {@code HashSet<Integer>} and calling {@code retainAll}, with {@code PostingBitmap.and}.
+ * <p>
+ * The postings are those of a generated portfolio's names, and each operation intersects a
+ * pair of keywords drawn from a fixed, seeded sequence, starting from the shorter posting as
+ * {@code Portfolio.search} does. This benchmark is in the {@code ePortfolio} package, unlike
+ * the others, because {@code PostingBitmap} is package-private.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostingIntersectionBenchmark {
+
+    /** The number of keyword pairs drawn in advance; a power of two, so they can be cycled with a mask. */
+    private static final int PAIRS = 1024;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "zipf"})
+    public String distribution;
+
+    private int next;
+
+    // The postings of each pair, the shorter one first
+    private HashSet<Integer>[] firstSets;
+    private HashSet<Integer>[] secondSets;
+    private PostingBitmap[] firstBitmaps;
+    private PostingBitmap[] secondBitmaps;
+
+    /**
+     * Indexes the names of a generated portfolio both ways and draws the keyword pairs.
+     */
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void buildPostings() {
+        // The seed every other benchmark uses, so the names are the same as theirs
+        PortfolioGenerator generator = new PortfolioGenerator(42);
+        if (distribution.equals("uniform")) {
+            generator.setNameSkew(0);
+        } else if (!distribution.equals("zipf")) {
+            throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+        List<Investment> investments = generator.investments(size).collect(Collectors.toList());
+
+        HashMap<String, HashSet<Integer>> sets = new HashMap<>();
+        HashMap<String, PostingBitmap> bitmaps = new HashMap<>();
+        for (int i = 0; i < investments.size(); i++) {
+            for (String keyword : Portfolio.nameKeywords(investments.get(i).getName())) {
+                sets.computeIfAbsent(keyword, k -> new HashSet<>()).add(i);
+                bitmaps.computeIfAbsent(keyword, k -> new PostingBitmap()).add(i);
+            }
+        }
+
+        // Draw pairs of keywords that are both held, so no operation is a trivial miss
+        firstSets = new HashSet[PAIRS];
+        secondSets = new HashSet[PAIRS];
+        firstBitmaps = new PostingBitmap[PAIRS];
+        secondBitmaps = new PostingBitmap[PAIRS];
+        ArrayList<String> drawn = new ArrayList<>(2);
+        for (int i = 0; i < PAIRS; i++) {
+            drawn.clear();
+            while (drawn.size() < 2) {
+                String keyword = generator.nextKeyword().toLowerCase();
+                if (sets.containsKey(keyword)) {
+                    drawn.add(keyword);
+                }
+            }
+            drawn.sort((a, b) -> Integer.compare(sets.get(a).size(), sets.get(b).size()));
+            firstSets[i] = sets.get(drawn.get(0));
+            secondSets[i] = sets.get(drawn.get(1));
+            firstBitmaps[i] = bitmaps.get(drawn.get(0));
+            secondBitmaps[i] = bitmaps.get(drawn.get(1));
+        }
+    }
+
+    @Benchmark
+    public HashSet<Integer> hashSetRetainAll() {
+        int i = next++ & (PAIRS - 1);
+        HashSet<Integer> matches = new HashSet<>(firstSets[i]);
+        matches.retainAll(secondSets[i]);
+        return matches;
+    }
+
+    @Benchmark
+    public Object postingBitmapAnd() {
+        int i = next++ & (PAIRS - 1);
+        return firstBitmaps[i].and(secondBitmaps[i]);
+    }
+}
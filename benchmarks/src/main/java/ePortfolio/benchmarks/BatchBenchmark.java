@@ -0,0 +1,116 @@
+package ePortfolio.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ePortfolio.Investment;
+import ePortfolio.Order;
+import ePortfolio.OrderStatus;
+import ePortfolio.Portfolio;
+import ePortfolio.Stock;
+
+/**
+ * Compares three ways of placing the same batch of orders: one {@code buy} or {@code sell} call
+ * per order, which builds a message for each, one {@code tryBuy} or {@code trySell} call per
+ * order, and a single {@code buyAll} or {@code sellAll} call.
+ * <p>
+ * Each invocation buys one unit for every order and then sells it again, so the portfolio is
+ * the same before and after. A share of the orders is invalid, as in a real order feed, so
+ * rejections are measured along with fills.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "zipf"})
+    public String distribution;
+
+    /** The number of orders in a batch. */
+    @Param({"1000"})
+    public int orders;
+
+    /** The percentage of orders that are rejected. */
+    @Param({"10"})
+    public int invalidPercent;
+
+    private Portfolio portfolio;
+    private ArrayList<Order> buyOrders;
+    private ArrayList<Order> sellOrders;
+
+    /**
+     * Builds the portfolio and draws the orders.
+     */
+    @Setup(Level.Trial)
+    public void drawOrders() {
+        BenchmarkData data = new BenchmarkData(distribution, BenchmarkData.SEED);
+        ArrayList<Investment> investments = data.investments(size);
+        Random random = data.random();
+
+        buyOrders = new ArrayList<>(orders);
+        sellOrders = new ArrayList<>(orders);
+        for (int i = 0; i < orders; i++) {
+            Investment investment = investments.get(random.nextInt(size));
+            String type = investment instanceof Stock ? "Stock" : "Mutual Fund";
+            double price = data.price();
+            if (random.nextInt(100) < invalidPercent) {
+                // A wrong name is rejected when buying and a sell of more than is held when selling
+                buyOrders.add(Order.buy(type, investment.getSymbol(), "Wrong " + investment.getName(), price, 1));
+                sellOrders.add(Order.sell(investment.getSymbol(), price, Integer.MAX_VALUE));
+            } else {
+                buyOrders.add(Order.buy(type, investment.getSymbol(), investment.getName(), price, 1));
+                sellOrders.add(Order.sell(investment.getSymbol(), price, 1));
+            }
+        }
+        portfolio = new Portfolio();
+        portfolio.setInvestments(investments);
+    }
+
+    @Benchmark
+    public void buyAndSell(Blackhole blackhole) {
+        for (Order order : buyOrders) {
+            blackhole.consume(portfolio.buy(order.getType(), order.getSymbol(), order.getName(), order.getPrice(), order.getQuantity()));
+        }
+        for (Order order : sellOrders) {
+            blackhole.consume(portfolio.sell(order.getSymbol(), order.getPrice(), order.getQuantity()));
+        }
+    }
+
+    @Benchmark
+    public void tryBuyAndTrySell(Blackhole blackhole) {
+        for (Order order : buyOrders) {
+            blackhole.consume(portfolio.tryBuy(order.getType(), order.getSymbol(), order.getName(), order.getPrice(), order.getQuantity()));
+        }
+        for (Order order : sellOrders) {
+            blackhole.consume(portfolio.trySell(order.getSymbol(), order.getPrice(), order.getQuantity()));
+        }
+    }
+
+    @Benchmark
+    public OrderStatus[] buyAllAndSellAll() {
+        portfolio.buyAll(buyOrders);
+        return portfolio.sellAll(sellOrders);
+    }
+}
@@ -0,0 +1,83 @@
+package ePortfolio.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import ePortfolio.Investment;
+import ePortfolio.PortfolioGenerator;
+
+/**
+ * Builds the portfolios the benchmarks run on, with a {@code PortfolioGenerator}. The same size,
+ * distribution and seed always give the same investments, so results can be compared between
+ * runs and between commits.
+ * <p>
+ * With the {@code uniform} distribution every name token is equally likely, so keyword
+ * postings are all about the same length. With {@code zipf} a few tokens, like {@code inc.} and
+ * {@code fund}, appear in most names and the rest are rare, as in real instrument names, which
+ * gives the keyword index a few very long postings and many short ones.
+ * </p>
+ */
+final class BenchmarkData {
+
+    /** The seed used by every benchmark. */
+    static final long SEED = 42;
+
+    // Attributes
+    private final PortfolioGenerator generator;
+    private final Random random;
+
+    /**
+     * Constructs a generator of investments with the given name token distribution.
+     *
+     * @param distribution {@code uniform} or {@code zipf}
+     * @param seed         the seed of the random numbers
+     * @throws IllegalArgumentException if the distribution is unknown
+     */
+    BenchmarkData(String distribution, long seed) {
+        generator = new PortfolioGenerator(seed);
+        if (distribution.equals("uniform")) {
+            generator.setNameSkew(0);
+        } else if (!distribution.equals("zipf")) {
+            throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        }
+        random = new Random(seed);
+    }
+
+    /**
+     * Builds a list of investments with unique symbols.
+     *
+     * @param size the number of investments
+     * @return the investments
+     */
+    ArrayList<Investment> investments(int size) {
+        return generator.investments(size).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Draws a token from the name vocabulary.
+     *
+     * @return the token
+     */
+    String token() {
+        return generator.nextKeyword();
+    }
+
+    /**
+     * Draws a price from the same distribution as the investments' prices.
+     *
+     * @return the price
+     */
+    double price() {
+        return generator.nextPrice();
+    }
+
+    /**
+     * Returns the random numbers benchmarks use to pick investments and operations.
+     *
+     * @return the random number generator
+     */
+    Random random() {
+        return random;
+    }
+}
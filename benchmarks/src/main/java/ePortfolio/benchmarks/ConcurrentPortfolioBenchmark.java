@@ -0,0 +1,93 @@
+package ePortfolio.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ePortfolio.ConcurrentPortfolio;
+import ePortfolio.Investment;
+import ePortfolio.Portfolio;
+import ePortfolio.Stock;
+
+/**
+ * Compares trading from several threads at once on a {@code ConcurrentPortfolio}, which locks
+ * one stripe of symbols per order, with a {@code Portfolio} guarded by a single lock.
+ * <p>
+ * Each thread buys a unit of a random investment and sells it again. The number of threads
+ * can be changed with {@code -t}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ConcurrentPortfolioBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "zipf"})
+    public String distribution;
+
+    private ConcurrentPortfolio concurrentPortfolio;
+    private Portfolio lockedPortfolio;
+    private String[] types;
+    private String[] symbols;
+    private String[] names;
+
+    /**
+     * Builds both portfolios from the same investments.
+     */
+    @Setup(Level.Trial)
+    public void buildPortfolios() {
+        BenchmarkData data = new BenchmarkData(distribution, BenchmarkData.SEED);
+        ArrayList<Investment> investments = data.investments(size);
+        types = new String[size];
+        symbols = new String[size];
+        names = new String[size];
+        for (int i = 0; i < size; i++) {
+            Investment investment = investments.get(i);
+            types[i] = investment instanceof Stock ? "Stock" : "Mutual Fund";
+            symbols[i] = investment.getSymbol();
+            names[i] = investment.getName();
+        }
+
+        concurrentPortfolio = new ConcurrentPortfolio();
+        concurrentPortfolio.addInvestments(investments);
+        lockedPortfolio = new Portfolio();
+        lockedPortfolio.setInvestments(new BenchmarkData(distribution, BenchmarkData.SEED).investments(size));
+    }
+
+    @Benchmark
+    public String concurrentPortfolio() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        concurrentPortfolio.buy(types[i], symbols[i], names[i], 10, 1);
+        return concurrentPortfolio.sell(symbols[i], 10, 1);
+    }
+
+    @Benchmark
+    public String lockedPortfolio() {
+        int i = ThreadLocalRandom.current().nextInt(size);
+        synchronized (lockedPortfolio) {
+            lockedPortfolio.buy(types[i], symbols[i], names[i], 10, 1);
+            return lockedPortfolio.sell(symbols[i], 10, 1);
+        }
+    }
+}
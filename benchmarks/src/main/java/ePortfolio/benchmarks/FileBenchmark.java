@@ -0,0 +1,105 @@
+package ePortfolio.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ePortfolio.Investment;
+import ePortfolio.PortfolioFileReader;
+import ePortfolio.PortfolioFileReader.FileFormat;
+import ePortfolio.PortfolioFileReader.LoadMode;
+
+/**
+ * Benchmarks reading and saving whole portfolio files with {@code PortfolioFileReader}.
+ * <p>
+ * The files are written to a temporary directory once per trial and deleted afterwards. Reads
+ * of a file that was just written mostly come from the page cache, so these numbers measure
+ * parsing and formatting rather than the disk.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "zipf"})
+    public String distribution;
+
+    @Param({"TEXT", "BINARY"})
+    public FileFormat format;
+
+    /** How text files are read; binary files are read the same way in either mode. */
+    @Param({"SEQUENTIAL", "PARALLEL_MAPPED"})
+    public LoadMode loadMode;
+
+    private Path directory;
+    private String readFile;
+    private String saveFile;
+    private ArrayList<Investment> investments;
+    private PrintStream out;
+
+    /**
+     * Writes the file to read, and silences the message {@code saveInvestmentsToFile} prints
+     * after every save.
+     *
+     * @throws IOException if the temporary directory can't be created
+     */
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+        directory = Files.createTempDirectory("ePortfolio-benchmark");
+        readFile = directory.resolve("read.txt").toString();
+        saveFile = directory.resolve("save.txt").toString();
+        investments = new BenchmarkData(distribution, BenchmarkData.SEED).investments(size);
+        PortfolioFileReader.saveInvestmentsToFile(readFile, investments, format);
+    }
+
+    /**
+     * Deletes the files and restores standard output.
+     *
+     * @throws IOException if a file can't be deleted
+     */
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(Path.of(readFile));
+        Files.deleteIfExists(Path.of(saveFile));
+        Files.deleteIfExists(directory);
+        System.setOut(out);
+    }
+
+    @Benchmark
+    public ArrayList<Investment> readInvestmentsFromFile() {
+        return PortfolioFileReader.readInvestmentsFromFile(readFile, loadMode);
+    }
+
+    @Benchmark
+    public void saveInvestmentsToFile() {
+        PortfolioFileReader.saveInvestmentsToFile(saveFile, investments, format);
+    }
+}
@@ -0,0 +1,91 @@
+package ePortfolio.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ePortfolio.ColumnarPortfolio;
+import ePortfolio.ConcurrentPortfolio;
+import ePortfolio.Investment;
+import ePortfolio.Portfolio;
+import ePortfolio.PortfolioOperations;
+
+/**
+ * Compares the ways of computing gains across the three portfolio implementations: the boxed
+ * list the application has always used, the primitive array, an array supplied by the caller,
+ * and the running total.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GainsBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "zipf"})
+    public String distribution;
+
+    @Param({"Portfolio", "ColumnarPortfolio", "ConcurrentPortfolio"})
+    public String implementation;
+
+    private PortfolioOperations portfolio;
+    private double[] gains;
+
+    /**
+     * Builds the portfolio.
+     */
+    @Setup(Level.Trial)
+    public void buildPortfolio() {
+        ArrayList<Investment> investments = new BenchmarkData(distribution, BenchmarkData.SEED).investments(size);
+        if (implementation.equals("Portfolio")) {
+            Portfolio objects = new Portfolio();
+            objects.setInvestments(investments);
+            portfolio = objects;
+        } else if (implementation.equals("ColumnarPortfolio")) {
+            ColumnarPortfolio columns = new ColumnarPortfolio();
+            columns.setInvestments(investments);
+            portfolio = columns;
+        } else {
+            ConcurrentPortfolio concurrent = new ConcurrentPortfolio();
+            concurrent.addInvestments(investments);
+            portfolio = concurrent;
+        }
+        gains = new double[size];
+    }
+
+    @Benchmark
+    public ArrayList<Double> getGain() {
+        return portfolio.getGain();
+    }
+
+    @Benchmark
+    public double[] getGains() {
+        return portfolio.getGains();
+    }
+
+    @Benchmark
+    public int getGainsIntoArray() {
+        return portfolio.getGains(gains);
+    }
+
+    @Benchmark
+    public double getTotalGain() {
+        return portfolio.getTotalGain();
+    }
+}
@@ -0,0 +1,196 @@
+package ePortfolio.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ePortfolio.Investment;
+import ePortfolio.Portfolio;
+import ePortfolio.PortfolioValuation;
+import ePortfolio.Stock;
+
+/**
+ * Benchmarks the operations of a {@code Portfolio} that the application calls for every user
+ * action: buying, selling, searching and computing gains.
+ * <p>
+ * Each operation works on an investment or a query drawn from a fixed, seeded sequence, so
+ * every run sees the same mix. Buys and sells go to investments already held, the common case.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PortfolioBenchmark {
+
+    /**
+     * The pool {@link #getValuation} runs on. Its size is a parameter of that benchmark only, so
+     * the other benchmarks aren't run once per size.
+     */
+    @State(Scope.Benchmark)
+    public static class ValuationPool {
+
+        @Param({"1", "2", "4", "8"})
+        public int parallelism;
+
+        private ForkJoinPool pool;
+
+        /**
+         * Starts the pool.
+         */
+        @Setup(Level.Trial)
+        public void startPool() {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        /**
+         * Stops the pool.
+         */
+        @TearDown(Level.Trial)
+        public void stopPool() {
+            pool.shutdown();
+        }
+    }
+
+    /** The number of operations drawn in advance; a power of two, so they can be cycled with a mask. */
+    private static final int OPERATIONS = 4096;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"uniform", "zipf"})
+    public String distribution;
+
+    private Portfolio portfolio;
+    private int next;
+
+    // The operations, drawn once per trial
+    private String[] types;
+    private String[] symbols;
+    private String[] names;
+    private double[] prices;
+    private String[] keywords;
+    private String[] keywordPairs;
+    private double[] lowPrices;
+    private double[] highPrices;
+
+    /**
+     * Draws the operations the benchmarks will cycle through.
+     */
+    @Setup(Level.Trial)
+    public void drawOperations() {
+        BenchmarkData data = new BenchmarkData(distribution, BenchmarkData.SEED);
+        ArrayList<Investment> investments = data.investments(size);
+        Random random = data.random();
+
+        types = new String[OPERATIONS];
+        symbols = new String[OPERATIONS];
+        names = new String[OPERATIONS];
+        prices = new double[OPERATIONS];
+        keywords = new String[OPERATIONS];
+        keywordPairs = new String[OPERATIONS];
+        lowPrices = new double[OPERATIONS];
+        highPrices = new double[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            Investment investment = investments.get(random.nextInt(size));
+            types[i] = investment instanceof Stock ? "Stock" : "Mutual Fund";
+            symbols[i] = investment.getSymbol();
+            names[i] = investment.getName();
+            prices[i] = data.price();
+            keywords[i] = data.token();
+            keywordPairs[i] = data.token() + " " + data.token();
+            lowPrices[i] = prices[i] * 0.99;
+            highPrices[i] = prices[i] * 1.01;
+        }
+    }
+
+    /**
+     * Builds a fresh portfolio for each iteration, so the quantities bought and sold by the
+     * last one don't carry over.
+     */
+    @Setup(Level.Iteration)
+    public void buildPortfolio() {
+        ArrayList<Investment> investments = new BenchmarkData(distribution, BenchmarkData.SEED).investments(size);
+
+        // Enough units that selling one at a time never sells an investment out
+        for (Investment investment : investments) {
+            investment.setQuantity(investment.getQuantity() + 100_000_000);
+        }
+        portfolio = new Portfolio();
+        portfolio.setInvestments(investments);
+    }
+
+    @Benchmark
+    public String buy() {
+        int i = next++ & (OPERATIONS - 1);
+        return portfolio.buy(types[i], symbols[i], names[i], prices[i], 1);
+    }
+
+    @Benchmark
+    public String sell() {
+        int i = next++ & (OPERATIONS - 1);
+        return portfolio.sell(symbols[i], prices[i], 1);
+    }
+
+    @Benchmark
+    public ArrayList<String> searchBySymbol() {
+        int i = next++ & (OPERATIONS - 1);
+        return portfolio.search(symbols[i], "", 0, Double.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ArrayList<String> searchByKeyword() {
+        int i = next++ & (OPERATIONS - 1);
+        return portfolio.search("", keywords[i], 0, Double.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ArrayList<String> searchByTwoKeywords() {
+        int i = next++ & (OPERATIONS - 1);
+        return portfolio.search("", keywordPairs[i], 0, Double.MAX_VALUE);
+    }
+
+    @Benchmark
+    public ArrayList<String> searchByPriceRange() {
+        int i = next++ & (OPERATIONS - 1);
+        return portfolio.search("", "", lowPrices[i], highPrices[i]);
+    }
+
+    @Benchmark
+    public ArrayList<String> searchByKeywordAndPriceRange() {
+        int i = next++ & (OPERATIONS - 1);
+        return portfolio.search("", keywords[i], lowPrices[i], highPrices[i]);
+    }
+
+    @Benchmark
+    public ArrayList<Double> getGain() {
+        return portfolio.getGain();
+    }
+
+    @Benchmark
+    public double getTotalGain() {
+        return portfolio.getTotalGain();
+    }
+
+    @Benchmark
+    public PortfolioValuation getValuation(ValuationPool valuationPool) {
+        return PortfolioValuation.of(portfolio.getInvestments(), valuationPool.pool);
+    }
+}
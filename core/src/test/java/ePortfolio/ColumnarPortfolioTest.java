@@ -0,0 +1,68 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Tests that a {@code ColumnarPortfolio} rejects orders that would overflow a position the same
+ * way a {@code Portfolio} does, leaving the position as it was.
+ */
+class ColumnarPortfolioTest {
+
+    static List<Supplier<PortfolioOperations>> portfolios() {
+        return Arrays.asList(Portfolio::new, ColumnarPortfolio::new);
+    }
+
+    @ParameterizedTest
+    @MethodSource("portfolios")
+    void buyThatWouldOverflowTheQuantityIsRejected(Supplier<PortfolioOperations> factory) {
+        PortfolioOperations portfolio = factory.get();
+        portfolio.buy("Stock", "AAPL", "Apple Inc.", 0.01, Integer.MAX_VALUE);
+
+        assertEquals("Error: Quantity is too large: the investment can't hold that many units.",
+                portfolio.buy("Stock", "AAPL", "Apple Inc.", 0.01, 10));
+
+        assertEquals(1, portfolio.size());
+        assertEquals(Integer.MAX_VALUE * 0.01 + 9.99, portfolio.getTotalBookValue(), 1e-4);
+    }
+
+    @ParameterizedTest
+    @MethodSource("portfolios")
+    void buyThatWouldOverflowTheBookValueIsRejected(Supplier<PortfolioOperations> factory) {
+        PortfolioOperations portfolio = factory.get();
+        portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, 10);
+
+        String outOfRange = "Error: " + OrderStatus.AMOUNT_OUT_OF_RANGE.getMessage();
+        assertEquals(outOfRange, portfolio.buy("Stock", "AAPL", "Apple Inc.", 1e12, 1_000_000_000));
+        assertEquals(outOfRange, portfolio.buy("Mutual Fund", "VFIAX", "Vanguard 500", 1e12, 1_000_000_000));
+
+        assertUnchanged(portfolio);
+    }
+
+    @ParameterizedTest
+    @MethodSource("portfolios")
+    void priceUpdateThatWouldOverflowTheValueIsRejected(Supplier<PortfolioOperations> factory) {
+        PortfolioOperations portfolio = factory.get();
+        portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, 10);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> portfolio.updatePrice("AAPL", 1e14));
+        assertEquals("Amount out of range: 100000000000000.0 x 10", e.getMessage());
+
+        assertUnchanged(portfolio);
+    }
+
+    private static void assertUnchanged(PortfolioOperations portfolio) {
+        assertEquals(1, portfolio.size());
+        assertEquals(1009.99, portfolio.getTotalBookValue(), 1e-9);
+        assertEquals(1000.0, portfolio.getTotalMarketValue(), 1e-9);
+        assertEquals(-19.98, portfolio.getTotalGain(), 1e-9);
+    }
+}
@@ -0,0 +1,110 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@code ConcurrentPortfolio} loses no update when several threads trade the same
+ * symbols at once.
+ */
+class ConcurrentPortfolioTest {
+
+    private static final int THREADS = 8;
+    private static final int ORDERS_PER_THREAD = 20_000;
+    private static final String[] SYMBOLS = {"AAPL", "MSFT", "GOOG", "AMZN", "VFIAX"};
+
+    @Test
+    void concurrentBuysAndSellsOfSharedSymbolsLoseNoUpdate() throws Exception {
+        ConcurrentPortfolio portfolio = new ConcurrentPortfolio();
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<long[]>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                long seed = t;
+                results.add(threads.submit(() -> {
+                    start.await();
+                    return trade(portfolio, new Random(seed));
+                }));
+            }
+            start.countDown();
+
+            long[] expected = new long[SYMBOLS.length];
+            for (Future<long[]> result : results) {
+                long[] net = result.get();
+                for (int s = 0; s < SYMBOLS.length; s++) {
+                    expected[s] += net[s];
+                }
+            }
+
+            // The quantity held is what was bought minus what was sold
+            HashMap<String, Investment> held = new HashMap<>();
+            for (Investment investment : portfolio.getInvestments()) {
+                held.put(investment.getSymbol(), investment);
+            }
+            for (int s = 0; s < SYMBOLS.length; s++) {
+                Investment investment = held.get(SYMBOLS[s]);
+                assertEquals(expected[s], investment == null ? 0 : investment.getQuantity(), SYMBOLS[s]);
+            }
+
+            // The running totals agree with totals worked out from the investments
+            long bookValue = 0;
+            long marketValue = 0;
+            long gain = 0;
+            for (Investment investment : held.values()) {
+                bookValue += investment.getBookValueUnits();
+                marketValue += investment.getPriceUnits() * investment.getQuantity();
+                gain += investment.getGainUnits();
+            }
+            assertEquals(Money.toDouble(bookValue), portfolio.getTotalBookValue());
+            assertEquals(Money.toDouble(marketValue), portfolio.getTotalMarketValue());
+            assertEquals(Money.toDouble(gain), portfolio.getTotalGain());
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * Places random buys, sells and price updates, and counts the units bought and sold by the
+     * orders that were filled.
+     *
+     * @return the net quantity bought of each symbol
+     */
+    private static long[] trade(ConcurrentPortfolio portfolio, Random random) {
+        long[] net = new long[SYMBOLS.length];
+        for (int i = 0; i < ORDERS_PER_THREAD; i++) {
+            int s = random.nextInt(SYMBOLS.length);
+            String symbol = SYMBOLS[s];
+            int quantity = 1 + random.nextInt(5);
+            double price = 10 + random.nextInt(20) * 0.25;
+            int action = random.nextInt(10);
+            if (action < 5) {
+                String type = symbol.equals("VFIAX") ? "Mutual Fund" : "Stock";
+                if (portfolio.buy(type, symbol, symbol + " Holdings", price, quantity).startsWith("Successfully")) {
+                    net[s] += quantity;
+                }
+            } else if (action < 9) {
+                if (portfolio.sell(symbol, price, quantity).startsWith("Successfully")) {
+                    net[s] -= quantity;
+                }
+            } else {
+                try {
+                    portfolio.updatePrice(symbol, price);
+                } catch (IllegalArgumentException e) {
+                    // sold out by another thread
+                }
+            }
+        }
+        return net;
+    }
+}
@@ -0,0 +1,117 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests running command scripts with {@code PortfolioBatch}.
+ */
+class PortfolioBatchTest {
+
+    @Test
+    void commandsThatOverflowAreReportedAndTheScriptCarriesOn() throws IOException {
+        PortfolioBatch batch = new PortfolioBatch(new Portfolio(), null);
+
+        String[] results = run(batch, "buy stock X \"X Corp\" 10 1000000\n"
+                + "update X 1e13\n"
+                + "sell X 1e13 1\n"
+                + "gain\n");
+
+        assertEquals(4, results.length);
+        assertEquals("{\"line\":1,\"command\":\"buy\",\"symbol\":\"X\",\"status\":\"FILLED\"}", results[0]);
+        assertEquals("{\"line\":2,\"command\":\"update\",\"status\":\"ERROR\",\"message\":\"Amount out of range: 10000000000000.0 x 1000000\"}",
+                results[1]);
+        assertEquals("{\"line\":3,\"command\":\"sell\",\"symbol\":\"X\",\"status\":\"AMOUNT_OUT_OF_RANGE\",\"message\":\""
+                + OrderStatus.AMOUNT_OUT_OF_RANGE.getMessage() + "\"}", results[2]);
+        assertEquals("{\"line\":4,\"command\":\"gain\",\"investments\":1,\"totalGain\":-19.98,\"status\":\"OK\"}", results[3]);
+        assertEquals(2, batch.getErrors());
+    }
+
+    @Test
+    void failureOtherThanARejectionIsReportedAndTheScriptCarriesOn() throws IOException {
+        PortfolioBatch batch = new PortfolioBatch(new Portfolio(), () -> {
+            throw new IllegalStateException("saver closed");
+        });
+
+        String[] results = run(batch, "save\ngain\n");
+
+        assertEquals(2, results.length);
+        assertEquals("{\"line\":1,\"command\":\"save\",\"status\":\"ERROR\",\"message\":"
+                + "\"Unexpected error: java.lang.IllegalStateException: saver closed\"}", results[0]);
+        assertEquals("{\"line\":2,\"command\":\"gain\",\"investments\":0,\"totalGain\":0.0,\"status\":\"OK\"}", results[1]);
+        assertEquals(1, batch.getErrors());
+    }
+
+    @Test
+    void blankLinesAndCommentsAreSkippedButCounted() throws IOException {
+        PortfolioBatch batch = new PortfolioBatch(new Portfolio(), null);
+
+        String[] results = run(batch, "# a comment\n\n   \n  gain  \n");
+
+        assertEquals(1, results.length);
+        assertEquals("{\"line\":4,\"command\":\"gain\",\"investments\":0,\"totalGain\":0.0,\"status\":\"OK\"}", results[0]);
+        assertEquals(1, batch.getCommands());
+    }
+
+    @Test
+    void malformedCommandsAreReported() throws IOException {
+        PortfolioBatch batch = new PortfolioBatch(new Portfolio(), null);
+
+        String[] results = run(batch, "frobnicate X\n"
+                + "buy stock AAPL \"Apple Inc. 150 10\n"
+                + "sell AAPL 150\n"
+                + "update AAPL cheap\n"
+                + "buy stock AAPL Apple 150 ten\n"
+                + "search colour=red\n"
+                + "save\n");
+
+        assertEquals(Arrays.asList(
+                "{\"line\":1,\"command\":\"frobnicate\",\"status\":\"ERROR\",\"message\":\"Unknown command: frobnicate\"}",
+                "{\"line\":2,\"status\":\"ERROR\",\"message\":\"Missing closing quote.\"}",
+                "{\"line\":3,\"command\":\"sell\",\"status\":\"ERROR\",\"message\":\"Expected 3 arguments to sell but found 2.\"}",
+                "{\"line\":4,\"command\":\"update\",\"status\":\"ERROR\",\"message\":\"Invalid number: cheap\"}",
+                "{\"line\":5,\"command\":\"buy\",\"status\":\"ERROR\",\"message\":\"Invalid quantity: ten\"}",
+                "{\"line\":6,\"command\":\"search\",\"status\":\"ERROR\",\"message\":\"Unknown search criterion: colour=red\"}",
+                "{\"line\":7,\"command\":\"save\",\"status\":\"ERROR\",\"message\":\"This portfolio can't be saved.\"}"),
+                Arrays.asList(results));
+        assertEquals(7, batch.getErrors());
+    }
+
+    @Test
+    void wordsAreSplitAtSpacesOutsideQuotes() {
+        assertEquals(Arrays.asList("buy", "stock", "AAPL", "Apple Inc.", "150.25", "10"),
+                PortfolioBatch.split("buy stock AAPL \"Apple Inc.\" 150.25 10"));
+        assertEquals(Arrays.asList("search", "keywords=bank of canada", "low=1"),
+                PortfolioBatch.split("search  keywords=\"bank of canada\"\tlow=1 "));
+        assertEquals(Arrays.asList("a", "b cd", ""), PortfolioBatch.split("a \"b c\"d \"\""));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> PortfolioBatch.split("buy \"Apple"));
+        assertEquals("Missing closing quote.", e.getMessage());
+    }
+
+    @Test
+    void resultsAreEscapedAsJson() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.setInvestments(new ArrayList<>(List.of(new Stock("Q", "The \"Q\" Fund \\ A\tB\u0001", 1, 10))));
+        PortfolioBatch batch = new PortfolioBatch(portfolio, null);
+
+        assertEquals("{\"line\":1,\"command\":\"search\",\"count\":1,\"matches\":["
+                + "\"Stock: The \\\"Q\\\" Fund \\\\ A\\tB\\u0001 (Q) | Quantity: 1 | Price: 10.00 | Book Value: 19.99\"],"
+                + "\"status\":\"OK\"}", batch.execute(1, "search symbol=Q"));
+    }
+
+    private static String[] run(PortfolioBatch batch, String script) throws IOException {
+        StringWriter out = new StringWriter();
+        batch.run(new BufferedReader(new StringReader(script)), out);
+        return out.toString().split("\n");
+    }
+}
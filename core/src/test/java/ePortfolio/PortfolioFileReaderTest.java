@@ -0,0 +1,184 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Tests reading portfolio files with {@code PortfolioFileReader}.
+ */
+class PortfolioFileReaderTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(PortfolioFileReader.LoadMode.class)
+    void recordsWithAmountsOutOfRangeAreSkipped(PortfolioFileReader.LoadMode mode) throws IOException {
+        Path file = directory.resolve("portfolio.txt");
+        Files.write(file, (record("stock", "TINY", "0.00001", "1.0")
+                + record("mutualfund", "HUGE", "10.0", "Infinity")
+                + record("stock", "AAPL", "150.0", "1509.99")).getBytes(StandardCharsets.UTF_8));
+
+        ArrayList<Investment> investments = PortfolioFileReader.readInvestments(file.toString(), mode);
+
+        assertEquals(1, investments.size());
+        assertEquals("AAPL", investments.get(0).getSymbol());
+        assertEquals(10, investments.get(0).getQuantity());
+    }
+
+    @ParameterizedTest
+    @EnumSource(PortfolioFileReader.LoadMode.class)
+    void namesOutsideAsciiAreSavedAsUtf8(PortfolioFileReader.LoadMode mode) throws IOException {
+        Path file = directory.resolve("portfolio.txt");
+        ArrayList<Investment> saved = new ArrayList<>();
+        saved.add(new Stock("GLE", "Société Générale", 10, 25.5));
+        PortfolioFileReader.saveInvestmentsToFile(file.toString(), saved, PortfolioFileReader.FileFormat.TEXT);
+
+        assertTrue(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).contains("Société Générale"));
+        ArrayList<Investment> investments = PortfolioFileReader.readInvestments(file.toString(), mode);
+        assertEquals(1, investments.size());
+        assertEquals("Société Générale", investments.get(0).getName());
+    }
+
+    @ParameterizedTest
+    @EnumSource(PortfolioFileReader.FileFormat.class)
+    void failedWriteLeavesTheOldFileIntact(PortfolioFileReader.FileFormat format) throws IOException {
+        Path file = directory.resolve("portfolio.dat");
+        PortfolioFileReader.writeInvestments(file.toString(), Arrays.asList(new Stock("AAPL", "Apple Inc.", 10, 150)), format);
+
+        // An investment that can't be written fails the write halfway through the file
+        Stock broken = new Stock("BRKN", "Broken Corp", 1, 1) {
+            @Override
+            public long getPriceUnits() {
+                throw new IllegalStateException("write failed");
+            }
+
+            @Override
+            public String toFileFormat() {
+                throw new IllegalStateException("write failed");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> PortfolioFileReader.writeInvestments(file.toString(),
+                Arrays.asList(new Stock("MSFT", "Microsoft", 5, 300), broken), format));
+
+        ArrayList<Investment> investments = PortfolioFileReader.readInvestments(file.toString(), PortfolioFileReader.LoadMode.SEQUENTIAL);
+        assertEquals(1, investments.size());
+        assertEquals("AAPL", investments.get(0).getSymbol());
+        assertFalse(Files.exists(directory.resolve("portfolio.dat.tmp")));
+    }
+
+    @Test
+    void binarySnapshotsOfAnotherVersionAreRejected() throws IOException {
+        Path file = directory.resolve("portfolio.dat");
+        PortfolioFileReader.writeInvestments(file.toString(), Arrays.asList(new Stock("AAPL", "Apple Inc.", 10, 150)),
+                PortfolioFileReader.FileFormat.BINARY);
+
+        // Rewrite the version byte as 1, with a checksum that matches, so only the version is wrong
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[PortfolioBinaryFormat.MAGIC.length] = 1;
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, bytes.length - Integer.BYTES);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - Integer.BYTES, (int) checksum.getValue());
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class,
+                () -> PortfolioFileReader.readInvestments(file.toString(), PortfolioFileReader.LoadMode.SEQUENTIAL));
+        assertTrue(e.getMessage().endsWith("has unsupported version 1."), e.getMessage());
+    }
+
+    @Test
+    void streamParsesRecordsAsTheyAreConsumed() throws IOException {
+        Path file = directory.resolve("portfolio.txt");
+        int records = 4000;
+        try (Stream<Investment> generated = new PortfolioGenerator(7).investments(records)) {
+            PortfolioFileReader.writeInvestments(file.toString(), Arrays.asList(generated.toArray(Investment[]::new)),
+                    PortfolioFileReader.FileFormat.TEXT);
+        }
+
+        try (Stream<Investment> investments = PortfolioFileReader.streamInvestmentsFromFile(file.toString())) {
+            Iterator<Investment> iterator = investments.iterator();
+            assertTrue(iterator.hasNext());
+
+            // Cut the file short after the first record is read; a reader that had parsed the
+            // whole file up front would still return every record
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() / 2);
+            }
+            int read = 0;
+            while (iterator.hasNext()) {
+                iterator.next();
+                read++;
+            }
+            assertTrue(read > 0 && read < records - 1, "read " + read + " of " + records);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PortfolioFileReader.FileFormat.class)
+    void closingTheStreamClosesTheFile(PortfolioFileReader.FileFormat format) throws IOException {
+        Path descriptors = Path.of("/proc/self/fd");
+        assumeTrue(Files.isDirectory(descriptors), "needs /proc to count open files");
+        Path file = directory.resolve("portfolio.dat");
+        PortfolioFileReader.writeInvestments(file.toString(), Arrays.asList(new Stock("AAPL", "Apple Inc.", 10, 150),
+                new Stock("MSFT", "Microsoft", 5, 300)), format);
+
+        Stream<Investment> investments = PortfolioFileReader.streamInvestmentsFromFile(file.toString());
+        assertEquals("AAPL", investments.iterator().next().getSymbol());
+        assertEquals(1, openDescriptors(descriptors, file));
+
+        investments.close();
+        assertEquals(0, openDescriptors(descriptors, file));
+    }
+
+    /**
+     * Counts the open file descriptors of this process that refer to a file.
+     */
+    private static int openDescriptors(Path descriptors, Path file) throws IOException {
+        Path target = file.toRealPath();
+        int count = 0;
+        try (DirectoryStream<Path> links = Files.newDirectoryStream(descriptors)) {
+            for (Path link : links) {
+                try {
+                    if (Files.readSymbolicLink(link).equals(target)) {
+                        count++;
+                    }
+                } catch (IOException e) {
+                    // the descriptor was closed while the directory was listed
+                }
+            }
+        }
+        return count;
+    }
+
+    private static String record(String type, String symbol, String price, String bookValue) {
+        return "type = \"" + type + "\"\n"
+                + "symbol = \"" + symbol + "\"\n"
+                + "name = \"" + symbol + " Inc.\"\n"
+                + "quantity = \"10\"\n"
+                + "price = \"" + price + "\"\n"
+                + "bookValue = \"" + bookValue + "\"\n"
+                + "\n";
+    }
+}
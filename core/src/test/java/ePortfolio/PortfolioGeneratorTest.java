@@ -0,0 +1,88 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a {@code PortfolioGenerator} draws the same portfolio every time from the same seed.
+ */
+class PortfolioGeneratorTest {
+
+    private static final int POSITIONS = 500;
+
+    @Test
+    void sameSeedWritesTheSameFile() throws IOException {
+        assertEquals(write(7), write(7));
+        assertNotEquals(write(7), write(8));
+    }
+
+    @Test
+    void sameSeedStreamsTheSameInvestments() {
+        assertEquals(records(7), records(7));
+        assertNotEquals(records(7), records(8));
+    }
+
+    @Test
+    void streamedInvestmentsMatchTheWrittenFile() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (String record : records(7)) {
+            expected.append(record).append(System.lineSeparator());
+        }
+        assertEquals(expected.toString(), write(7));
+    }
+
+    @Test
+    void settingsShapeThePositions() {
+        PortfolioGenerator generator = new PortfolioGenerator(7);
+        generator.setStockFraction(1);
+        generator.setMaxQuantity(3);
+        generator.setTokensPerName(1, 1);
+        generator.setVocabularySize(10);
+        generator.setPriceDistribution(PortfolioGenerator.PriceDistribution.UNIFORM, 5, 6);
+
+        List<Investment> investments = generator.investments(POSITIONS).collect(Collectors.toList());
+        for (int i = 0; i < investments.size(); i++) {
+            Investment investment = investments.get(i);
+            assertTrue(investment instanceof Stock, investment.toString());
+            assertEquals(PortfolioGenerator.symbol(i), investment.getSymbol());
+            assertTrue(investment.getQuantity() >= 1 && investment.getQuantity() <= 3, investment.toString());
+            assertTrue(investment.getPrice() >= 5 && investment.getPrice() <= 6, investment.toString());
+            assertEquals(1, Portfolio.nameKeywords(investment.getName()).length, investment.getName());
+        }
+        assertEquals(10, investments.stream().map(Investment::getName).distinct().count(), "names drawn from the vocabulary");
+
+        generator.setStockFraction(0);
+        assertTrue(generator.investments(POSITIONS).allMatch(investment -> investment instanceof MutualFund));
+    }
+
+    @Test
+    void settingsOutOfRangeAreRejected() {
+        PortfolioGenerator generator = new PortfolioGenerator(7);
+        assertThrows(IllegalArgumentException.class, () -> generator.setStockFraction(1.5));
+        assertThrows(IllegalArgumentException.class, () -> generator.setNameSkew(-1));
+        assertThrows(IllegalArgumentException.class, () -> generator.setVocabularySize(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.setTokensPerName(3, 2));
+        assertThrows(IllegalArgumentException.class,
+                () -> generator.setPriceDistribution(PortfolioGenerator.PriceDistribution.UNIFORM, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> generator.setMaxQuantity(0));
+    }
+
+    private static String write(long seed) throws IOException {
+        StringWriter writer = new StringWriter();
+        new PortfolioGenerator(seed).write(writer, POSITIONS);
+        return writer.toString();
+    }
+
+    private static List<String> records(long seed) {
+        return new PortfolioGenerator(seed).investments(POSITIONS).map(Investment::toFileFormat).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,155 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that journaled portfolios reload with every change made to them.
+ */
+class PortfolioJournalTest {
+
+    // Enough orders for the journal to pass the compaction threshold in one batch
+    private static final int ORDERS = 60_000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void batchCrossingCompactionThresholdWithoutSaver() throws IOException {
+        String fileName = directory.resolve("portfolio.txt").toString();
+        Portfolio portfolio = new Portfolio();
+        PortfolioJournal journal = PortfolioJournal.open(fileName, portfolio);
+
+        assertAllFilled(portfolio.buyAll(orders()));
+        journal.close();
+
+        assertReloads(fileName);
+    }
+
+    @Test
+    void batchCrossingCompactionThresholdWithSaver() throws IOException {
+        String fileName = directory.resolve("portfolio.txt").toString();
+        Portfolio portfolio = new Portfolio();
+        PortfolioJournal journal = PortfolioJournal.open(fileName, portfolio);
+        PortfolioSaver saver = new PortfolioSaver(portfolio, fileName, journal, new PortfolioSaver.Listener() {
+            @Override
+            public void saveCompleted(int investments) {
+            }
+
+            @Override
+            public void saveFailed(IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        assertAllFilled(portfolio.buyAll(orders()));
+        saver.close();
+        journal.close();
+
+        assertReloads(fileName);
+    }
+
+    @Test
+    void recordThatCantBeWrittenIsReportedAndCompactedAway() throws IOException {
+        String fileName = directory.resolve("portfolio.txt").toString();
+        Portfolio portfolio = new Portfolio();
+        PortfolioJournal journal = PortfolioJournal.open(fileName, portfolio);
+        List<IOException> failures = new ArrayList<>();
+        journal.setFailureListener(failures::add);
+        portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, 10);
+
+        breakJournal(portfolio, journal);
+        portfolio.buy("Stock", "MSFT", "Microsoft", 200, 5);
+
+        // The journal compacts itself, so the change is saved after all
+        assertEquals(1, failures.size());
+        assertNull(journal.getFailure());
+        portfolio.buy("Stock", "GOOG", "Alphabet Inc.", 150, 2);
+        journal.close();
+
+        assertEquals(3, reload(fileName).size());
+    }
+
+    @Test
+    void brokenJournalIsOnlyMendedByACopyHoldingEveryChange() throws IOException {
+        String fileName = directory.resolve("portfolio.txt").toString();
+        Portfolio portfolio = new Portfolio();
+        PortfolioJournal journal = PortfolioJournal.open(fileName, portfolio);
+        journal.setFailureListener(e -> { });
+        journal.setCompactor(() -> { });
+        portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, 10);
+
+        breakJournal(portfolio, journal);
+        List<Investment> staleCopy = portfolio.getInvestments();
+        long stalePosition = journal.position();
+        portfolio.buy("Stock", "MSFT", "Microsoft", 200, 5);
+        assertNotNull(journal.getFailure());
+
+        assertThrows(IOException.class, () -> journal.compact(staleCopy, stalePosition));
+        assertNotNull(journal.getFailure());
+
+        journal.compact();
+        assertNull(journal.getFailure());
+        journal.close();
+
+        assertEquals(2, reload(fileName).size());
+    }
+
+    /**
+     * Closes the journal's file under the portfolio, so the next record can't be written.
+     */
+    private static void breakJournal(Portfolio portfolio, PortfolioJournal journal) throws IOException {
+        journal.close();
+        portfolio.setJournal(journal);
+    }
+
+    private static Portfolio reload(String fileName) throws IOException {
+        Portfolio reloaded = new Portfolio();
+        PortfolioJournal.open(fileName, reloaded).close();
+        return reloaded;
+    }
+
+    private static List<Order> orders() {
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < ORDERS; i++) {
+            orders.add(Order.buy("Stock", "S" + i, "Company " + i + " Inc.", 10 + i % 90, 1 + i % 7));
+        }
+        return orders;
+    }
+
+    private static void assertAllFilled(OrderStatus[] statuses) {
+        for (OrderStatus status : statuses) {
+            assertEquals(OrderStatus.FILLED, status);
+        }
+    }
+
+    private void assertReloads(String fileName) throws IOException {
+        // The journal must have been compacted, or the test doesn't cover the batch case
+        assertTrue(Files.size(Path.of(fileName)) > 0);
+
+        Portfolio reloaded = new Portfolio();
+        PortfolioJournal.open(fileName, reloaded).close();
+        assertEquals(ORDERS, reloaded.size());
+        long quantity = 0;
+        for (Investment investment : reloaded.getInvestments()) {
+            quantity += investment.getQuantity();
+        }
+        long expected = 0;
+        for (int i = 0; i < ORDERS; i++) {
+            expected += 1 + i % 7;
+        }
+        assertEquals(expected, quantity);
+    }
+}
@@ -0,0 +1,78 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+/**
+ * Tests that the files read in one load session share their instruments.
+ */
+class PortfolioLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @EnumSource(PortfolioFileReader.LoadMode.class)
+    void filesReadThroughOneLoaderShareInstruments(PortfolioFileReader.LoadMode mode) throws IOException {
+        String first = write("first.txt", new Stock("AAPL", "Apple Inc.", 10, 100), new Stock("MSFT", "Microsoft", 5, 200));
+        String second = write("second.txt", new Stock("MSFT", "Microsoft", 3, 210), new Stock("AAPL", "Apple Inc.", 1, 90));
+
+        PortfolioLoader loader = new PortfolioLoader();
+        ArrayList<Investment> fromFirst = loader.readInvestments(first, mode);
+        ArrayList<Investment> fromSecond = loader.readInvestments(second, mode);
+        assertSame(fromFirst.get(0).getInstrument(), fromSecond.get(1).getInstrument());
+        assertSame(fromFirst.get(1).getInstrument(), fromSecond.get(0).getInstrument());
+
+        // Separate reads only share within a file
+        assertNotSame(PortfolioFileReader.readInvestments(first, mode).get(0).getInstrument(),
+                PortfolioFileReader.readInvestments(second, mode).get(1).getInstrument());
+    }
+
+    @ParameterizedTest
+    @EnumSource(PortfolioFileReader.LoadMode.class)
+    void portfoliosSharingInstrumentsStayIndependent(PortfolioFileReader.LoadMode mode) throws IOException {
+        String first = write("first.txt", new Stock("AAPL", "Apple Inc.", 10, 100));
+        String second = write("second.txt", new Stock("AAPL", "Apple Inc.", 4, 100));
+
+        PortfolioLoader loader = new PortfolioLoader();
+        Portfolio selling = new Portfolio();
+        selling.setInvestments(loader.readInvestments(first, mode));
+        Portfolio holding = new Portfolio();
+        holding.setInvestments(loader.readInvestments(second, mode));
+
+        assertEquals(OrderStatus.FILLED, selling.trySell("AAPL", 100, 10));
+        assertEquals(OrderStatus.FILLED, selling.tryBuy("Stock", "AAPL", "Apple Inc.", 120, 2));
+
+        assertEquals(1, holding.search("aapl", "apple", 0, Double.MAX_VALUE).size());
+        assertEquals(4, holding.getInvestments().get(0).getQuantity());
+        assertEquals(2, selling.getInvestments().get(0).getQuantity());
+    }
+
+    @Test
+    void streamingDoesNotIntern() throws IOException {
+        String file = write("portfolio.txt", new Stock("AAPL", "Apple Inc.", 10, 100), new Stock("AAPL", "Apple Inc.", 1, 90));
+
+        try (Stream<Investment> first = PortfolioFileReader.streamInvestmentsFromFile(file);
+             Stream<Investment> second = PortfolioFileReader.streamInvestmentsFromFile(file)) {
+            assertNotSame(first.findFirst().get().getInstrument(), second.findFirst().get().getInstrument());
+        }
+    }
+
+    private String write(String fileName, Investment... investments) {
+        String path = directory.resolve(fileName).toString();
+        PortfolioFileReader.saveInvestmentsToFile(path, new ArrayList<>(Arrays.asList(investments)), PortfolioFileReader.FileFormat.TEXT);
+        return path;
+    }
+}
@@ -0,0 +1,118 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that {@code Portfolio.search} keeps its price index in step with the investments.
+ */
+class PortfolioSearchTest {
+
+    private static final String[] SYMBOLS = {"AAPL", "MSFT", "GOOG", "AMZN", "VFIAX", "VTSAX"};
+    private static final String[] NAMES = {"Apple Inc.", "Microsoft Corp", "Alphabet Inc.", "Amazon Inc.",
+            "Vanguard 500 Index Fund", "Vanguard Total Market Fund"};
+
+    @Test
+    void priceRangeFollowsChangesMadeThroughThePortfolio() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, 10);
+        portfolio.buy("Stock", "MSFT", "Microsoft Corp", 200, 5);
+        portfolio.buy("Mutual Fund", "VFIAX", "Vanguard 500 Index Fund", 50, 20);
+
+        portfolio.updatePrice("AAPL", 250);
+        assertSymbols(portfolio.search("", "", 240, 260), "AAPL");
+        assertNull(portfolio.search("", "", 90, 110));
+
+        // A purchase and a sale both move the price to the one paid
+        portfolio.buy("Stock", "MSFT", "Microsoft Corp", 300, 1);
+        assertSymbols(portfolio.search("", "", 290, 310), "MSFT");
+        assertNull(portfolio.search("", "", 190, 210));
+        portfolio.sell("VFIAX", 60, 5);
+        assertSymbols(portfolio.search("", "fund", 55, 65), "VFIAX");
+
+        portfolio.sell("AAPL", 250, 10);
+        assertNull(portfolio.search("", "", 240, 260));
+    }
+
+    @Test
+    void priceRangeFollowsChangesMadeToTheInvestmentsDirectly() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, 10);
+        portfolio.buy("Stock", "MSFT", "Microsoft Corp", 200, 5);
+
+        // The GUI's update screen changes prices on the investments themselves
+        Investment apple = portfolio.getInvestments().get(0);
+        apple.setPrice(400);
+        assertSymbols(portfolio.search("", "", 350, 450), "AAPL");
+        assertNull(portfolio.search("", "", 90, 110));
+
+        Investment microsoft = portfolio.getInvestments().get(1);
+        microsoft.buy(1, 420);
+        assertSymbols(portfolio.search("", "", 350, 450), "AAPL", "MSFT");
+        microsoft.sell(2, 150);
+        assertSymbols(portfolio.search("", "", 140, 160), "MSFT");
+        assertSymbols(portfolio.search("", "apple", 0, Double.MAX_VALUE), "AAPL");
+    }
+
+    @Test
+    void searchMatchesAScanAfterRandomChanges() {
+        Portfolio portfolio = new Portfolio();
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int s = random.nextInt(SYMBOLS.length);
+            double price = 10 + random.nextInt(400) * 0.25;
+            int quantity = 1 + random.nextInt(10);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    portfolio.buy(s < 4 ? "Stock" : "Mutual Fund", SYMBOLS[s], NAMES[s], price, quantity);
+                    break;
+                case 2:
+                    portfolio.sell(SYMBOLS[s], price, quantity);
+                    break;
+                default:
+                    for (Investment investment : portfolio.getInvestments()) {
+                        if (investment.getSymbol().equals(SYMBOLS[s])) {
+                            investment.setPrice(price);
+                        }
+                    }
+            }
+
+            double low = 10 + random.nextInt(100);
+            double high = low + random.nextInt(50);
+            String keywords = random.nextBoolean() ? "" : "inc.";
+            assertEquals(scan(portfolio, keywords, low, high), portfolio.search("", keywords, low, high),
+                    "after change " + i + ", between " + low + " and " + high);
+        }
+    }
+
+    /**
+     * Finds the matches of a search by checking every investment in list order.
+     */
+    private static ArrayList<String> scan(Portfolio portfolio, String keywords, double low, double high) {
+        ArrayList<String> matches = new ArrayList<>();
+        for (Investment investment : portfolio.getInvestments()) {
+            List<String> words = Arrays.asList(Portfolio.nameKeywords(investment.getName()));
+            if (investment.getPrice() >= low && investment.getPrice() <= high
+                    && (keywords.isEmpty() || words.contains(keywords))) {
+                matches.add(investment.toString());
+            }
+        }
+        return matches.isEmpty() ? null : matches;
+    }
+
+    private static void assertSymbols(ArrayList<String> matches, String... symbols) {
+        assertEquals(symbols.length, matches.size(), String.valueOf(matches));
+        for (int i = 0; i < symbols.length; i++) {
+            assertTrue(matches.get(i).contains("(" + symbols[i] + ")"), matches.get(i));
+        }
+    }
+}
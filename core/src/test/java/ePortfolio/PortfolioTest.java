@@ -0,0 +1,238 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests placing orders on a {@code Portfolio}.
+ */
+class PortfolioTest {
+
+    @Test
+    void buyThatWouldOverflowTheBookValueIsRejected() {
+        Portfolio portfolio = portfolioWithAapl();
+
+        assertEquals(OrderStatus.AMOUNT_OUT_OF_RANGE, portfolio.tryBuy("Stock", "AAPL", "Apple Inc.", 1e12, 1_000_000_000));
+        assertEquals(OrderStatus.AMOUNT_OUT_OF_RANGE, portfolio.tryBuy("Stock", "MSFT", "Microsoft", 1e12, 1_000_000_000));
+
+        assertUnchanged(portfolio);
+    }
+
+    @Test
+    void buyThatWouldOverflowTheQuantityIsRejected() {
+        Portfolio portfolio = portfolioWithAapl();
+
+        assertEquals(OrderStatus.QUANTITY_TOO_LARGE, portfolio.tryBuy("Stock", "AAPL", "Apple Inc.", 0.01, Integer.MAX_VALUE));
+        assertEquals("Error: Quantity is too large: the investment can't hold that many units.",
+                portfolio.buy("Stock", "AAPL", "Apple Inc.", 0.01, Integer.MAX_VALUE));
+
+        assertUnchanged(portfolio);
+    }
+
+    @Test
+    void batchBuyThatWouldOverflowIsRejected() {
+        Portfolio portfolio = portfolioWithAapl();
+        List<Order> orders = Arrays.asList(
+                Order.buy("Stock", "AAPL", "Apple Inc.", 1e12, 1_000_000_000),
+                Order.buy("Stock", "AAPL", "Apple Inc.", 0.01, Integer.MAX_VALUE),
+                Order.buy("Stock", "MSFT", "Microsoft", 1e12, 1_000_000_000));
+
+        OrderStatus[] statuses = portfolio.buyAll(orders);
+
+        assertEquals(OrderStatus.AMOUNT_OUT_OF_RANGE, statuses[0]);
+        assertEquals(OrderStatus.QUANTITY_TOO_LARGE, statuses[1]);
+        assertEquals(OrderStatus.AMOUNT_OUT_OF_RANGE, statuses[2]);
+        assertUnchanged(portfolio);
+    }
+
+    @Test
+    void symbolHeldInTwoCasesIsFoundAfterTheFirstIsSold() {
+        Portfolio portfolio = portfolioWithCaseVariants();
+        assertEquals(2, portfolio.search("AAPL", "", 0, Double.MAX_VALUE).size());
+
+        assertEquals(OrderStatus.FILLED, portfolio.trySell("AAPL", 100, 10));
+
+        assertEquals(1, portfolio.search("AAPL", "", 0, Double.MAX_VALUE).size());
+        assertEquals(OrderStatus.FILLED, portfolio.trySell("AAPL", 100, 5));
+        assertEquals(0, portfolio.size());
+        assertEquals(OrderStatus.NOT_FOUND, portfolio.trySell("AAPL", 100, 1));
+    }
+
+    @Test
+    void batchSellCarriesOnWithTheSymbolHeldInAnotherCase() {
+        Portfolio portfolio = portfolioWithCaseVariants();
+
+        OrderStatus[] statuses = portfolio.sellAll(Arrays.asList(
+                Order.sell("AAPL", 100, 10),
+                Order.sell("aapl", 100, 5),
+                Order.sell("AAPL", 100, 1)));
+
+        assertEquals(OrderStatus.FILLED, statuses[0]);
+        assertEquals(OrderStatus.FILLED, statuses[1]);
+        assertEquals(OrderStatus.NOT_FOUND, statuses[2]);
+        assertEquals(0, portfolio.size());
+        assertNull(portfolio.search("AAPL", "", 0, Double.MAX_VALUE));
+    }
+
+    @Test
+    void searchReturnsMatchesInListOrderAfterSlotsAreReused() {
+        Portfolio portfolio = new Portfolio();
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Stock", "A", "Alpha Corp", 10, 1));
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Stock", "B", "Beta Corp", 10, 1));
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Stock", "C", "Gamma Corp", 10, 1));
+        assertEquals(OrderStatus.FILLED, portfolio.trySell("A", 10, 1));
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Stock", "D", "Delta Corp", 10, 1));
+
+        List<String> expected = new ArrayList<>();
+        for (Investment investment : portfolio.getInvestments()) {
+            expected.add(investment.toString());
+        }
+        assertEquals(expected, portfolio.search("", "corp", 0, Double.MAX_VALUE));
+        assertEquals(expected, portfolio.search("", "", 10, 10));
+    }
+
+    @Test
+    void priceUpdateThatWouldOverflowTheValueIsRejected() {
+        Portfolio portfolio = new Portfolio();
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Stock", "X", "X Corp", 10, 1_000_000));
+        double totalGain = portfolio.getTotalGain();
+        double totalMarketValue = portfolio.getTotalMarketValue();
+
+        assertThrows(IllegalArgumentException.class, () -> portfolio.updatePrice("X", 1e13));
+        Investment x = portfolio.getInvestments().get(0);
+        x.sell(1, 1e13);
+
+        assertEquals(1_000_000, x.getQuantity());
+        assertEquals(10, x.getPrice());
+        assertEquals(totalGain, portfolio.getTotalGain());
+        assertEquals(totalMarketValue, portfolio.getTotalMarketValue());
+        assertEquals(1, portfolio.search("", "", 5, 20).size());
+        assertEquals(totalGain, portfolio.getValuation().getTotalGain());
+        assertEquals(totalGain, portfolio.getGains()[0]);
+    }
+
+    @Test
+    void saleThatWouldOverflowTheValueIsRejected() {
+        Portfolio portfolio = new Portfolio();
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Stock", "X", "X Corp", 10, 1_000_000));
+        double totalGain = portfolio.getTotalGain();
+
+        assertEquals(OrderStatus.AMOUNT_OUT_OF_RANGE, portfolio.trySell("X", 1e13, 1));
+        assertEquals("Error: " + OrderStatus.AMOUNT_OUT_OF_RANGE.getMessage(), portfolio.sell("X", 1e13, 1));
+        assertEquals(OrderStatus.AMOUNT_OUT_OF_RANGE, portfolio.sellAll(Arrays.asList(Order.sell("X", 1e13, 1)))[0]);
+
+        assertEquals(1_000_000, portfolio.getInvestments().get(0).getQuantity());
+        assertEquals(totalGain, portfolio.getTotalGain());
+        assertEquals(totalGain, portfolio.getValuation().getTotalGain());
+        assertEquals(OrderStatus.FILLED, portfolio.trySell("X", 10, 1_000_000));
+        assertEquals(0, portfolio.size());
+    }
+
+    @Test
+    void rejectedBuysReportWhyAndChangeNothing() {
+        Portfolio portfolio = portfolioWithAapl();
+
+        assertEquals(OrderStatus.EMPTY_SYMBOL, portfolio.tryBuy("Stock", " ", "Apple Inc.", 100, 1));
+        assertEquals(OrderStatus.EMPTY_NAME, portfolio.tryBuy("Stock", "AAPL", "", 100, 1));
+        assertEquals(OrderStatus.INVALID_QUANTITY, portfolio.tryBuy("Stock", "AAPL", "Apple Inc.", 100, 0));
+        assertEquals(OrderStatus.INVALID_PRICE, portfolio.tryBuy("Stock", "AAPL", "Apple Inc.", -1, 1));
+        assertEquals(OrderStatus.INVALID_PRICE, portfolio.tryBuy("Stock", "AAPL", "Apple Inc.", 0.00001, 1));
+        assertEquals(OrderStatus.INVALID_TYPE, portfolio.tryBuy("Bond", "MSFT", "Microsoft", 100, 1));
+        assertEquals(OrderStatus.TYPE_MISMATCH, portfolio.tryBuy("Mutual Fund", "AAPL", "Apple Inc.", 100, 1));
+        assertEquals(OrderStatus.NAME_MISMATCH, portfolio.tryBuy("Stock", "AAPL", "Apple", 100, 1));
+
+        assertEquals("Error: Investment symbol cannot be empty.", portfolio.buy("Stock", "", "Apple Inc.", 100, 1));
+        assertEquals("Error: Investment name cannot be empty.", portfolio.buy("Stock", "AAPL", " ", 100, 1));
+        assertEquals("Error: Quantity must be greater than zero.", portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, -1));
+        assertEquals("Error: Price must be greater than zero.", portfolio.buy("Stock", "AAPL", "Apple Inc.", 0, 1));
+        assertEquals("Error: Amount out of range: 1.0E300", portfolio.buy("Stock", "AAPL", "Apple Inc.", 1e300, 1));
+        assertEquals("Error: Invalid investment type. Must be 'Stock' or 'Mutual Fund'.", portfolio.buy("Bond", "MSFT", "Microsoft", 100, 1));
+        assertEquals("Error: The type selected doesn't match the type of the existing investment.",
+                portfolio.buy("Mutual Fund", "AAPL", "Apple Inc.", 100, 1));
+        assertEquals("Error: The name of the investment corresponding to the given symbol is Apple Inc. not Apple. "
+                + "Please try again with the correct name.", portfolio.buy("Stock", "AAPL", "Apple", 100, 1));
+
+        assertUnchanged(portfolio);
+    }
+
+    @Test
+    void rejectedSalesReportWhyAndChangeNothing() {
+        Portfolio portfolio = portfolioWithAapl();
+
+        assertEquals(OrderStatus.EMPTY_SYMBOL, portfolio.trySell("", 100, 1));
+        assertEquals(OrderStatus.INVALID_QUANTITY, portfolio.trySell("AAPL", 100, 0));
+        assertEquals(OrderStatus.INVALID_PRICE, portfolio.trySell("AAPL", 0, 1));
+        assertEquals(OrderStatus.NOT_FOUND, portfolio.trySell("MSFT", 100, 1));
+        assertEquals(OrderStatus.INSUFFICIENT_QUANTITY, portfolio.trySell("AAPL", 100, 11));
+
+        assertEquals("Error: Investment symbol cannot be empty.", portfolio.sell(" ", 100, 1));
+        assertEquals("Error: Quantity to sell must be greater than zero.", portfolio.sell("AAPL", 100, -1));
+        assertEquals("Error: Selling price must be greater than zero.", portfolio.sell("AAPL", -5, 1));
+        assertEquals("Error: Investment MSFT not found.", portfolio.sell("MSFT", 100, 1));
+        assertEquals("Error: Error: Not enough quantity to sell. You currently have 10/11", portfolio.sell("AAPL", 100, 11));
+
+        assertUnchanged(portfolio);
+    }
+
+    @Test
+    void filledOrdersReportWhatWasDone() {
+        Portfolio portfolio = new Portfolio();
+
+        assertEquals("Successfully purchased 10 Stocks of Apple Inc.", portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, 10));
+        assertEquals("Successfully purchased an additional 5 Stocks of Apple Inc. (AAPL)",
+                portfolio.buy("Stock", "AAPL", "Apple Inc.", 110, 5));
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Mutual Fund", "VFIAX", "Vanguard 500 Index Fund", 50, 20));
+        assertEquals(15, portfolio.getInvestments().get(0).getQuantity());
+
+        assertEquals(OrderStatus.FILLED, portfolio.trySell("VFIAX", 60, 20));
+        assertTrue(portfolio.sell("AAPL", 120, 5).startsWith("Successfully sold 5 of AAPL.\n"));
+        assertEquals(1, portfolio.size());
+        assertEquals(10, portfolio.getInvestments().get(0).getQuantity());
+    }
+
+    @Test
+    void snapshotSearchMatchesLiveSearchOnCaseVariants() {
+        Portfolio portfolio = portfolioWithCaseVariants();
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Stock", "MSFT", "Microsoft", 200, 5));
+        portfolio.updatePrice("aapl", 120);
+        PortfolioSnapshot snapshot = portfolio.getSnapshot();
+
+        for (String symbol : Arrays.asList("AAPL", "aapl", "Aapl", "MSFT", "", "GOOG")) {
+            assertEquals(portfolio.search(symbol, "", 0, Double.MAX_VALUE), snapshot.search(symbol, "", 0, Double.MAX_VALUE), symbol);
+            assertEquals(portfolio.search(symbol, "apple", 110, 130), snapshot.search(symbol, "apple", 110, 130), symbol);
+        }
+        assertEquals(2, snapshot.search("aapl", "", 0, Double.MAX_VALUE).size());
+    }
+
+    private static Portfolio portfolioWithCaseVariants() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.setInvestments(new ArrayList<>(Arrays.asList(
+                new Stock("AAPL", "Apple Inc.", 10, 100),
+                new Stock("aapl", "Apple Inc.", 5, 100))));
+        return portfolio;
+    }
+
+    private static Portfolio portfolioWithAapl() {
+        Portfolio portfolio = new Portfolio();
+        assertEquals(OrderStatus.FILLED, portfolio.tryBuy("Stock", "AAPL", "Apple Inc.", 100, 10));
+        return portfolio;
+    }
+
+    private static void assertUnchanged(Portfolio portfolio) {
+        assertEquals(1, portfolio.size());
+        Investment aapl = portfolio.getInvestments().get(0);
+        assertEquals(10, aapl.getQuantity());
+        assertEquals(100, aapl.getPrice());
+        assertEquals(1009.99, aapl.getBookValue());
+        assertEquals(1009.99, portfolio.getTotalBookValue());
+        assertEquals(1, portfolio.search("", "", 100, 100).size());
+    }
+}
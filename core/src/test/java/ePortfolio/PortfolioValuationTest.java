@@ -0,0 +1,97 @@
+package ePortfolio;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the gains and totals a {@code Portfolio} reports.
+ */
+class PortfolioValuationTest {
+
+    @Test
+    void gainsAreReportedInListOrder() {
+        Portfolio portfolio = new Portfolio();
+        portfolio.buy("Stock", "AAPL", "Apple Inc.", 100, 10);
+        portfolio.buy("Mutual Fund", "VFIAX", "Vanguard 500 Index Fund", 50, 20);
+        portfolio.buy("Stock", "MSFT", "Microsoft Corp", 200, 5);
+        portfolio.updatePrice("AAPL", 110);
+
+        // Market value less the commission or redemption fee on selling, less the book value
+        double[] expected = {80.02, -45.0, -19.98};
+        assertArrayEquals(expected, portfolio.getGains());
+        assertEquals(Arrays.asList(expected[0], expected[1], expected[2]), portfolio.getGain());
+
+        double[] buffer = new double[5];
+        assertEquals(3, portfolio.getGains(buffer));
+        assertArrayEquals(expected, Arrays.copyOf(buffer, 3));
+        assertThrows(IllegalArgumentException.class, () -> portfolio.getGains(new double[2]));
+    }
+
+    @Test
+    void totalGainIsExact() {
+        // Gains of a tenth of a cent, which a running double total can't add up exactly
+        Portfolio portfolio = new Portfolio();
+        for (int i = 0; i < 1000; i++) {
+            portfolio.buy("Mutual Fund", "F" + i, "Fund " + i, 0.1001, 1000);
+        }
+        for (int i = 0; i < 1000; i += 3) {
+            portfolio.updatePrice("F" + i, 0.1002);
+        }
+        for (int i = 0; i < 1000; i += 7) {
+            portfolio.sell("F" + i, 0.1003, 500);
+        }
+
+        long gain = 0;
+        for (Investment investment : portfolio.getInvestments()) {
+            gain += investment.getGainUnits();
+        }
+        assertEquals(Money.toDouble(gain), portfolio.getTotalGain());
+    }
+
+    @Test
+    void valuationMatchesTheRunningTotals() {
+        // Large enough to be split across the pool
+        int size = 4 * PortfolioValuation.PARALLEL_THRESHOLD;
+        Portfolio portfolio = new Portfolio();
+        List<Investment> generated = new PortfolioGenerator(11).investments(size).collect(Collectors.toList());
+        portfolio.setInvestments(new ArrayList<>(generated));
+        for (int i = 0; i < size; i += 5) {
+            portfolio.getInvestments().get(i).setPrice(1 + i % 97);
+        }
+
+        PortfolioValuation valuation = portfolio.getValuation();
+        assertEquals(portfolio.getTotalGain(), valuation.getTotalGain());
+        assertEquals(portfolio.getTotalBookValue(), valuation.getTotalBookValue());
+        assertEquals(portfolio.getTotalMarketValue(), valuation.getTotalMarketValue());
+        assertArrayEquals(portfolio.getGains(), valuation.getGains());
+    }
+
+    @Test
+    void valuationIsTheSameHoweverTheWorkIsSplit() {
+        List<Investment> investments = new PortfolioGenerator(12).investments(3 * PortfolioValuation.PARALLEL_THRESHOLD)
+                .collect(Collectors.toList());
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            PortfolioValuation sequential = PortfolioValuation.of(investments, single);
+            PortfolioValuation parallel = PortfolioValuation.of(investments, several);
+            assertEquals(sequential.getTotalGain(), parallel.getTotalGain());
+            assertEquals(sequential.getTotalBookValue(), parallel.getTotalBookValue());
+            assertEquals(sequential.getTotalMarketValue(), parallel.getTotalMarketValue());
+            assertArrayEquals(sequential.getGains(), parallel.getGains());
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+}
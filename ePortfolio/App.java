@@ -3,9 +3,21 @@ package ePortfolio;
 import java.util.Scanner;
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import ePortfolio.PortfolioFileReader;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Locale;
 
 /**
  * The {@code App} class serves as the entry point for the Portfolio management application.
@@ -14,7 +26,12 @@ import java.util.HashSet;
  * <p>
  * Usage:
  * <p>
- * {@code java ePortfolio.App}
+ * {@code java ePortfolio.App <filename> [--batch [script]]}
+ * <p>
+ * With {@code --batch}, no window is opened: the commands of the script, or of standard input
+ * if no script or {@code -} is given, are run against the portfolio by {@link PortfolioBatch},
+ * their results are written to standard output as lines of JSON, and a summary with the number
+ * of commands per second is written to standard error.
  */
 public class App {
 
@@ -28,6 +45,22 @@ public class App {
      */
     private String fileName;
 
+    /**
+     * The journal that changes to the portfolio are saved in as they are made, or {@code null}
+     * if the portfolio is saved in full on exit.
+     */
+    private PortfolioJournal journal;
+
+    /**
+     * Saves the portfolio in the background, so large portfolios don't freeze the GUI.
+     */
+    private PortfolioSaver saver;
+
+    /**
+     * Shows the outcome of the latest save in the menu bar.
+     */
+    private JLabel saveStatus;
+
     /**
      * The main frame of the GUI application.
      */
@@ -49,13 +82,14 @@ public class App {
      * users to manage their investments.
      *
      * @param args command line arguments where args[0] is expected to be the filename
-     *             for loading and saving portfolio data.
+     *             for loading and saving portfolio data, optionally followed by
+     *             {@code --batch} and the script to run without the GUI.
      */
     public static void main(String[] args) {
 
         // Check if filename was provided
         if (args.length < 1) {
-            System.out.println("To use the program: java Portfolio <filename>");
+            System.out.println("To use the program: java Portfolio <filename> [--batch [script]]");
             return;
         }
 
@@ -65,11 +99,82 @@ public class App {
         // Create portfolio object
         Portfolio portfolio = new Portfolio();
 
-        // Read file and populate investment arraylist
-        portfolio.setInvestments(PortfolioFileReader.readInvestmentsFromFile(fileName));
-        
+        // Read file and populate investment arraylist, then replay the changes journaled since it was last saved
+        PortfolioJournal journal;
+        try {
+            journal = PortfolioJournal.open(fileName, portfolio);
+        } catch (IOException e) {
+            System.out.println("An error occurred while reading the file: " + e.getMessage());
+            return;
+        }
+
+        // Run a script of commands instead of the GUI if asked to
+        if (args.length > 1 && args[1].equals("--batch")) {
+            String scriptName = args.length > 2 ? args[2] : "-";
+            if (!runBatch(portfolio, fileName, journal, scriptName)) {
+                System.exit(1);
+            }
+            return;
+        }
+
         // Launch the GUI with the portfolio
-        SwingUtilities.invokeLater(() -> new App(portfolio, fileName)); 
+        SwingUtilities.invokeLater(() -> new App(portfolio, fileName, journal)); 
+    }
+
+    /**
+     * Runs a script of commands against the portfolio without the GUI, writing the result of
+     * each command to standard output and a summary to standard error. Every change is saved to
+     * the journal as it is made, and {@code save} commands write the whole portfolio in the
+     * background, as the GUI does.
+     *
+     * @param portfolio  the portfolio to run the commands against
+     * @param fileName   the name of the portfolio file
+     * @param journal    the journal of the portfolio
+     * @param scriptName the name of the script, or {@code -} for standard input
+     * @return {@code true} if the script was run to the end and the portfolio closed
+     */
+    private static boolean runBatch(Portfolio portfolio, String fileName, PortfolioJournal journal, String scriptName) {
+        PortfolioSaver saver = new PortfolioSaver(portfolio, fileName, journal, new PortfolioSaver.Listener() {
+            @Override
+            public void saveCompleted(int investments) {
+            }
+
+            @Override
+            public void saveFailed(IOException e) {
+                System.err.println("Error: Could not save " + fileName + ": " + e.getMessage());
+            }
+        });
+        PortfolioBatch batch = new PortfolioBatch(portfolio, saver::requestSave);
+
+        boolean completed = true;
+        long start = System.nanoTime();
+        try (BufferedReader script = scriptName.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+                : Files.newBufferedReader(Paths.get(scriptName), StandardCharsets.UTF_8)) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            batch.run(script, out);
+        } catch (IOException e) {
+            System.err.println("Error: Could not run " + scriptName + ": " + e.getMessage());
+            completed = false;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        // A journal that broke holds only part of the changes, so save the whole portfolio
+        if (journal.getFailure() != null) {
+            saver.requestSave();
+        }
+
+        try {
+            saver.close();
+            journal.close();
+        } catch (IOException e) {
+            System.err.println("Error: Could not close " + fileName + ": " + e.getMessage());
+            completed = false;
+        }
+
+        System.err.println(String.format(Locale.ROOT, "{\"commands\":%d,\"errors\":%d,\"seconds\":%.3f,\"commandsPerSecond\":%.0f}",
+                batch.getCommands(), batch.getErrors(), seconds, batch.getCommands() / Math.max(seconds, 1e-9)));
+        return completed;
     }
 
     /**
@@ -79,12 +184,32 @@ public class App {
      * @param fileName  The filename for loading and saving portfolio data.
      */
     public App(Portfolio portfolio, String fileName) {
+        this(portfolio, fileName, null);
+    }
+
+    /**
+     * Constructor to initialize the ePortfolio GUI for a portfolio whose changes are saved
+     * to a journal as they are made.
+     *
+     * @param portfolio The portfolio to manage.
+     * @param fileName  The filename for loading and saving portfolio data.
+     * @param journal   The journal the portfolio's changes are recorded in, or {@code null}
+     *                  to save the whole portfolio on exit.
+     */
+    public App(Portfolio portfolio, String fileName, PortfolioJournal journal) {
         this.portfolio = portfolio;
         this.fileName = fileName;
+        this.journal = journal;
 
         // Main frame
         frame = new JFrame("ePortfolio");
-        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+        frame.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                exit(false);
+            }
+        });
         frame.setSize(FRAME_WIDTH, FRAME_HEIGHT);
         frame.setLayout(new BorderLayout());
 
@@ -98,14 +223,35 @@ public class App {
         commands.setForeground(Color.WHITE);
         menuBar.add(commands);
 
+        // Save status, on the right of the menu bar
+        saveStatus = new JLabel();
+        saveStatus.setFont(LABEL_FONT);
+        saveStatus.setForeground(Color.WHITE);
+        menuBar.add(Box.createHorizontalGlue());
+        menuBar.add(saveStatus);
+
         frame.setJMenuBar(menuBar);
 
+        // Report each background save on the event dispatch thread
+        saver = new PortfolioSaver(portfolio, fileName, journal, new PortfolioSaver.Listener() {
+            @Override
+            public void saveCompleted(int investments) {
+                SwingUtilities.invokeLater(() -> saveStatus.setText("Saved " + investments + " investments"));
+            }
+
+            @Override
+            public void saveFailed(IOException e) {
+                SwingUtilities.invokeLater(() -> saveStatus.setText("Save failed: " + e.getMessage()));
+            }
+        });
+
         // Create menu items
         JMenuItem buyInvestment = createMenuItem("Buy an Investment");
         JMenuItem sellInvestment = createMenuItem("Sell an Investment");
         JMenuItem updateInvestment = createMenuItem("Update Investments");
         JMenuItem getGain = createMenuItem("Get Gain on Investments");
         JMenuItem search = createMenuItem("Search Investments");
+        JMenuItem save = createMenuItem("Save");
         JMenuItem exit = createMenuItem("Exit and Save");
 
         // Add menu items to the commands menu
@@ -115,6 +261,7 @@ public class App {
         commands.add(getGain);
         commands.add(search);
         commands.addSeparator();
+        commands.add(save);
         commands.add(exit);
 
         // Add action listeners for menu items
@@ -123,10 +270,11 @@ public class App {
         updateInvestment.addActionListener(e -> showUpdateInvestments());
         getGain.addActionListener(e -> showGetTotalGain());
         search.addActionListener(e -> showSearchInvestments());
-        exit.addActionListener(e -> {
-            PortfolioFileReader.saveInvestmentsToFile(fileName, portfolio.getInvestments());
-            System.exit(0);
+        save.addActionListener(e -> {
+            saveStatus.setText("Saving...");
+            saver.requestSave();
         });
+        exit.addActionListener(e -> exit(true));
 
         // Show the welcome screen
         showWelcome();
@@ -135,6 +283,29 @@ public class App {
         frame.setVisible(true);
     }
 
+    /**
+     * Finishes any save still being written and quits the program.
+     *
+     * @param save whether to save the portfolio first. With a journal every change has already
+     *             been saved, so this is only needed without one, or if the journal broke.
+     */
+    private void exit(boolean save) {
+        if (save && journal == null || journal != null && journal.getFailure() != null) {
+            // Saved in the same format the file was loaded from
+            saver.requestSave();
+        }
+
+        try {
+            saver.close();
+            if (journal != null) {
+                journal.close();
+            }
+        } catch (IOException ex) {
+            System.out.println(" an error occured while writing to file");
+        }
+        System.exit(0);
+    }
+
     /**
      * Helper method to create styled menu items.
      *
@@ -581,7 +752,7 @@ public class App {
 
                 // Update the investment's price
                 Investment currentInvestment = investments.get(currentIndex[0]);
-                currentInvestment.setPrice(newPrice);
+                portfolio.updatePrice(currentInvestment.getSymbol(), newPrice);
 
                 // Display the updated investment
                 messageArea.setText("Price updated for investment:\n" + currentInvestment.toString());
@@ -788,20 +959,20 @@ public class App {
         // Create Total Gain Panel, passing totalGainField as a parameter
         JPanel totalGainPanel = createTotalGainPanel(totalGainField);
 
-        // Get the individual gains from the portfolio
-        ArrayList<Double> individualGain = portfolio.getGain();
-        double totalGain = 0.0;
+        // Read the gains and the investments from the same snapshot, so they line up
+        PortfolioSnapshot snapshot = portfolio.getSnapshot();
+        double[] individualGain = snapshot.getGains();
+        double totalGain = snapshot.getTotalGain();
 
         // Create a StringBuilder to build the individual gains string
         StringBuilder individualGainsBuilder = new StringBuilder();
 
         // Get the list of investments
-        ArrayList<Investment> investments = portfolio.getInvestments();
+        ArrayList<Investment> investments = snapshot.getInvestments();
 
         // Loop through the investments and their gains
-        for (int i = 0; i < individualGain.size(); i++) {
-            double gain = individualGain.get(i);
-            totalGain += gain;
+        for (int i = 0; i < individualGain.length; i++) {
+            double gain = individualGain[i];
 
             Investment inv = investments.get(i);
             String investmentType = inv instanceof Stock ? "Stock" : "Mutual Fund";
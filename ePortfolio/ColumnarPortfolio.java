@@ -0,0 +1,691 @@
+package ePortfolio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A portfolio that keeps its positions in columns of primitive arrays rather than as an
+ * {@code Investment} object each.
+ * <p>
+ * Every position is a row: its type, quantity, price and book value sit at the same index of a
+ * {@code byte[]}, an {@code int[]} and two {@code long[]} columns, with amounts in {@link Money}
+ * units. Symbols and names are stored once each in a dictionary, and rows hold their ids. A
+ * scan over every position, such as computing gains, reads a few dense arrays front to back
+ * instead of following a pointer to an object and its strings for each one, and a position
+ * takes about 30 bytes plus its share of the dictionaries.
+ * </p>
+ * <p>
+ * It supports the same operations as {@code Portfolio}, with the same results and messages.
+ * Selling a position completely moves the last row into its place, so the order of positions
+ * changes as they are sold.
+ * </p>
+ */
+public class ColumnarPortfolio implements PortfolioOperations {
+
+    private static final byte STOCK = 0;
+    private static final byte MUTUAL_FUND = 1;
+
+    // Columns, one entry per position
+    private byte[] types;
+    private int[] symbols;
+    private int[] names;
+    private int[] quantities;
+    private long[] prices;
+    private long[] bookValues;
+    private int size;
+
+    // Running totals over every row, in Money units, kept with plain long arithmetic so a total
+    // that overflows on the way still comes back exact
+    private long totalBookValue;
+    private long totalMarketValue;
+    private long totalGain;
+
+    // Dictionaries: symbols are matched ignoring case, names exactly
+    private Dictionary symbolDictionary;
+    private Dictionary nameDictionary;
+    private ArrayList<String[]> keywordsByName;
+
+    // The row holding each symbol, by symbol id, or -1 if none does
+    private int[] rowBySymbol;
+
+    /**
+     * Constructs a new, empty {@code ColumnarPortfolio} object.
+     */
+    public ColumnarPortfolio() {
+        setInvestments(new ArrayList<>());
+    }
+
+    @Override
+    public String buy(String type, String investmentSymbol, String name, double price, int quantityPurchase) {
+        try {
+            // Validate input
+            if (investmentSymbol == null || investmentSymbol.trim().isEmpty()) {
+                throw new IllegalArgumentException("Investment symbol cannot be empty.");
+            }
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Investment name cannot be empty.");
+            }
+            if (quantityPurchase <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than zero.");
+            }
+            if (price <= 0) {
+                throw new IllegalArgumentException("Price must be greater than zero.");
+            }
+            long priceUnits = priceUnits(price);
+
+            // If investment exists:
+            int row = findRow(investmentSymbol);
+            if (row >= 0) {
+
+                // Check if the type matches
+                if ((type.equalsIgnoreCase("STOCK") && types[row] != STOCK) ||
+                    (type.equalsIgnoreCase("MUTUAL FUND") && types[row] != MUTUAL_FUND)) {
+                    throw new IllegalArgumentException("The type selected doesn't match the type of the existing investment.");
+                }
+
+                // Check if the name matches
+                String existingName = nameDictionary.get(names[row]);
+                if (!existingName.equalsIgnoreCase(name)) {
+                    throw new IllegalArgumentException("The name of the investment corresponding to the given symbol is " + existingName + " not " + name + ". Please try again with the correct name.");
+                }
+
+                // Add more quantity to the existing investment
+                long bookValue = bookValueAfterPurchase(types[row], quantities[row], bookValues[row], quantityPurchase, priceUnits);
+                addToTotals(row, -1);
+                quantities[row] += quantityPurchase;
+                prices[row] = priceUnits;
+                bookValues[row] = bookValue;
+                addToTotals(row, 1);
+                return "Successfully purchased an additional " + quantityPurchase + " " + type + "s of " + name + " (" + investmentSymbol + ")";
+            }
+
+            // If investment doesn't exist:
+            byte investmentType;
+            if (type.equalsIgnoreCase("STOCK")) {
+                investmentType = STOCK;
+            } else if (type.equalsIgnoreCase("MUTUAL FUND")) {
+                investmentType = MUTUAL_FUND;
+            } else {
+                throw new IllegalArgumentException("Invalid investment type. Must be 'Stock' or 'Mutual Fund'.");
+            }
+            long bookValue = bookValueAfterPurchase(investmentType, 0, 0, quantityPurchase, priceUnits);
+
+            addRow(investmentType, investmentSymbol, name, quantityPurchase, priceUnits, bookValue);
+            return "Successfully purchased " + quantityPurchase + " " + type + "s of " + name;
+        } catch (IllegalArgumentException ex) {
+            return "Error: " + ex.getMessage();
+        }
+    }
+
+    @Override
+    public String sell(String symbol, double sellingPrice, int quantityToSell) {
+        try {
+            // Validate input
+            if (symbol == null || symbol.trim().isEmpty()) {
+                throw new IllegalArgumentException("Investment symbol cannot be empty.");
+            }
+            if (quantityToSell <= 0) {
+                throw new IllegalArgumentException("Quantity to sell must be greater than zero.");
+            }
+            if (sellingPrice <= 0) {
+                throw new IllegalArgumentException("Selling price must be greater than zero.");
+            }
+
+            // If investment doesn't exist
+            int row = findRow(symbol);
+            if (row < 0) {
+                throw new IllegalArgumentException("Investment " + symbol + " not found.");
+            }
+
+            // If quantity to be sold exceeds the available quantity
+            int currentQuantity = quantities[row];
+            if (currentQuantity < quantityToSell) {
+                throw new IllegalArgumentException("Error: Not enough quantity to sell. You currently have " + currentQuantity + "/" + quantityToSell);
+            }
+            long priceUnits = priceUnits(sellingPrice);
+
+            // Check the payment and the value of the units kept fit, as Portfolio does
+            String message2;
+            long bookValue = Money.scale(bookValues[row], currentQuantity - quantityToSell, currentQuantity);
+            try {
+                message2 = types[row] == STOCK
+                        ? Stock.saleMessage(quantityToSell, priceUnits)
+                        : MutualFund.saleMessage(quantityToSell, priceUnits);
+                gainUnits(types[row], currentQuantity - quantityToSell, priceUnits, bookValue);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException(OrderStatus.AMOUNT_OUT_OF_RANGE.getMessage());
+            }
+
+            // Handle sale of entire or partial investment
+            if (quantityToSell == currentQuantity) {
+                removeRow(row);
+            } else {
+                addToTotals(row, -1);
+                bookValues[row] = bookValue;
+                quantities[row] -= quantityToSell;
+                prices[row] = priceUnits;
+                addToTotals(row, 1);
+            }
+            return "Successfully sold " + quantityToSell + " of " + symbol + "." + "\n" + message2;
+
+        } catch (IllegalArgumentException ex) {
+            return "Error: " + ex.getMessage();
+        }
+    }
+
+    @Override
+    public void updatePrice(String symbol, double price) {
+        int row = findRow(symbol);
+        if (row < 0) {
+            throw new IllegalArgumentException("Investment " + symbol + " not found.");
+        }
+        long priceUnits = priceUnits(price);
+        try {
+            gainUnits(types[row], quantities[row], priceUnits, bookValues[row]);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + Money.toString(priceUnits) + " x " + quantities[row]);
+        }
+        addToTotals(row, -1);
+        prices[row] = priceUnits;
+        addToTotals(row, 1);
+    }
+
+    @Override
+    public ArrayList<Double> getGain() {
+        ArrayList<Double> individualGains = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            individualGains.add(Money.toDouble(gainUnits(row)));
+        }
+        return individualGains;
+    }
+
+    @Override
+    public double[] getGains() {
+        double[] gains = new double[size];
+        getGains(gains);
+        return gains;
+    }
+
+    @Override
+    public int getGains(double[] gains) {
+        if (gains.length < size) {
+            throw new IllegalArgumentException("The array holds " + gains.length + " gains but the portfolio has " + size + " investments.");
+        }
+        for (int row = 0; row < size; row++) {
+            gains[row] = Money.toDouble(gainUnits(row));
+        }
+        return size;
+    }
+
+    @Override
+    public double getTotalGain() {
+        return Money.toDouble(totalGain);
+    }
+
+    @Override
+    public double getTotalBookValue() {
+        return Money.toDouble(totalBookValue);
+    }
+
+    @Override
+    public double getTotalMarketValue() {
+        return Money.toDouble(totalMarketValue);
+    }
+
+    /**
+     * Searches for investments based on a symbol, keywords in the name, and a price range.
+     * Without a symbol, the price column is scanned first and the keywords are only checked
+     * for the positions priced inside the range.
+     *
+     * @param tickerSymbol the symbol of the investment to search for (optional)
+     * @param keywords     the keywords in the investment name to search for (optional)
+     * @param lowPrice     the minimum price range for search
+     * @param highPrice    the maximum price range for search
+     * @return an {@code ArrayList} of {@code String} representing matching investments, or {@code null} if no matches are found
+     */
+    @Override
+    public ArrayList<String> search(String tickerSymbol, String keywords, double lowPrice, double highPrice) {
+        if (lowPrice > highPrice) {
+            return null;
+        }
+        String[] wanted = keywords.trim().isEmpty() ? new String[0] : Portfolio.nameKeywords(keywords.trim());
+        long low = unitsAtLeast(lowPrice);
+        long high = unitsAtMost(highPrice);
+
+        ArrayList<String> resultList = new ArrayList<>();
+        if (!tickerSymbol.isEmpty()) {
+            int row = findRow(tickerSymbol);
+            if (row >= 0 && prices[row] >= low && prices[row] <= high && hasKeywords(row, wanted)) {
+                resultList.add(toInvestment(row).toString());
+            }
+        } else {
+            for (int row = 0; row < size; row++) {
+                if (prices[row] >= low && prices[row] <= high && hasKeywords(row, wanted)) {
+                    resultList.add(toInvestment(row).toString());
+                }
+            }
+        }
+        return resultList.isEmpty() ? null : resultList;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy of every position as an {@code Investment}, for saving or display. Changes
+     * to the copies don't affect the portfolio.
+     *
+     * @return the positions, in row order
+     */
+    public ArrayList<Investment> getInvestments() {
+        ArrayList<Investment> investments = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            investments.add(toInvestment(row));
+        }
+        return investments;
+    }
+
+    /**
+     * Replaces the positions of the portfolio with the given investments.
+     *
+     * @param investments the investments to hold
+     */
+    public void setInvestments(List<Investment> investments) {
+        int capacity = Math.max(16, investments.size());
+        types = new byte[capacity];
+        symbols = new int[capacity];
+        names = new int[capacity];
+        quantities = new int[capacity];
+        prices = new long[capacity];
+        bookValues = new long[capacity];
+        size = 0;
+        totalBookValue = 0;
+        totalMarketValue = 0;
+        totalGain = 0;
+
+        symbolDictionary = new Dictionary(true);
+        nameDictionary = new Dictionary(false);
+        keywordsByName = new ArrayList<>();
+        rowBySymbol = new int[capacity];
+
+        for (Investment investment : investments) {
+            addRow(investment instanceof MutualFund ? MUTUAL_FUND : STOCK, investment.getSymbol(), investment.getName(),
+                    investment.getQuantity(), investment.getPriceUnits(), investment.getBookValueUnits());
+        }
+    }
+
+    /**
+     * Appends a position, growing the columns if needed. If another row already holds the
+     * symbol, it keeps it, as with {@code Portfolio}.
+     */
+    private void addRow(byte type, String symbol, String name, int quantity, long price, long bookValue) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            symbols = Arrays.copyOf(symbols, capacity);
+            names = Arrays.copyOf(names, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            bookValues = Arrays.copyOf(bookValues, capacity);
+        }
+
+        int symbolCount = symbolDictionary.size();
+        int symbolId = symbolDictionary.intern(symbol);
+        if (symbolId == symbolCount) {
+            if (symbolId == rowBySymbol.length) {
+                rowBySymbol = Arrays.copyOf(rowBySymbol, symbolId * 2);
+            }
+            rowBySymbol[symbolId] = -1;
+        }
+        if (rowBySymbol[symbolId] < 0) {
+            // A symbol bought again after being sold takes the spelling of the new purchase
+            symbolDictionary.set(symbolId, symbol);
+            rowBySymbol[symbolId] = size;
+        }
+
+        int nameId = nameDictionary.intern(name);
+        if (nameId == keywordsByName.size()) {
+            keywordsByName.add(Portfolio.nameKeywords(name));
+        }
+
+        types[size] = type;
+        symbols[size] = symbolId;
+        names[size] = nameId;
+        quantities[size] = quantity;
+        prices[size] = price;
+        bookValues[size] = bookValue;
+        addToTotals(size, 1);
+        size++;
+    }
+
+    /**
+     * Removes a position by moving the last row into its place.
+     *
+     * @param row the row to remove
+     */
+    private void removeRow(int row) {
+        addToTotals(row, -1);
+        if (rowBySymbol[symbols[row]] == row) {
+            rowBySymbol[symbols[row]] = -1;
+        }
+
+        int last = size - 1;
+        if (row != last) {
+            types[row] = types[last];
+            symbols[row] = symbols[last];
+            names[row] = names[last];
+            quantities[row] = quantities[last];
+            prices[row] = prices[last];
+            bookValues[row] = bookValues[last];
+            if (rowBySymbol[symbols[row]] == last) {
+                rowBySymbol[symbols[row]] = row;
+            }
+        }
+        size--;
+    }
+
+    /**
+     * Looks up the row holding a symbol, ignoring case.
+     *
+     * @param symbol the symbol of the investment
+     * @return the row, or -1 if the portfolio doesn't hold the investment
+     */
+    private int findRow(String symbol) {
+        int symbolId = symbolDictionary.find(symbol);
+        return symbolId < 0 ? -1 : rowBySymbol[symbolId];
+    }
+
+    /**
+     * Calculates the gain of a position.
+     *
+     * @param row the row of the position
+     * @return the gain, in {@link Money} units
+     */
+    private long gainUnits(int row) {
+        return gainUnits(types[row], quantities[row], prices[row], bookValues[row]);
+    }
+
+    /**
+     * Calculates the gain of a position of the given type from its attributes.
+     *
+     * @param type      {@link #STOCK} or {@link #MUTUAL_FUND}
+     * @param quantity  the quantity owned
+     * @param price     the price per unit, in {@link Money} units
+     * @param bookValue the book value, in {@link Money} units
+     * @return the gain, in {@link Money} units
+     * @throws ArithmeticException if the market value or gain overflows
+     */
+    private static long gainUnits(byte type, int quantity, long price, long bookValue) {
+        return type == STOCK
+                ? Stock.gainUnits(quantity, price, bookValue)
+                : MutualFund.gainUnits(quantity, price, bookValue);
+    }
+
+    /**
+     * Works out the book value of a position after a purchase, checking as {@code Portfolio} does
+     * that its quantity, book value and gain can all be held, so that an order is rejected before
+     * any column is written.
+     *
+     * @param type          {@link #STOCK} or {@link #MUTUAL_FUND}
+     * @param held          the quantity owned before the purchase, 0 for a new position
+     * @param heldBookValue the book value before the purchase, in {@link Money} units
+     * @param quantity      the quantity to buy
+     * @param priceUnits    the price per unit, in {@link Money} units
+     * @return the book value after the purchase, in {@link Money} units
+     * @throws IllegalArgumentException if the quantity owned or the value of the position would
+     *                                  overflow
+     */
+    private static long bookValueAfterPurchase(byte type, int held, long heldBookValue, int quantity, long priceUnits) {
+        if (quantity > Integer.MAX_VALUE - held) {
+            throw new IllegalArgumentException(OrderStatus.QUANTITY_TOO_LARGE.getMessage());
+        }
+        try {
+            long bookValue = Money.add(heldBookValue, Money.add(Money.times(priceUnits, quantity),
+                    type == STOCK ? Stock.COMISSION_UNITS : 0));
+            gainUnits(type, held + quantity, priceUnits, bookValue);
+            return bookValue;
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException(OrderStatus.AMOUNT_OUT_OF_RANGE.getMessage());
+        }
+    }
+
+    /**
+     * Adds the book value, market value and gain of a position to the totals, or takes them away.
+     *
+     * @param row  the row of the position
+     * @param sign 1 to add the values, -1 to take them away
+     */
+    private void addToTotals(int row, int sign) {
+        totalBookValue += sign * bookValues[row];
+        totalMarketValue += sign * prices[row] * quantities[row];
+        totalGain += sign * gainUnits(row);
+    }
+
+    /**
+     * Checks whether the name of a position contains every one of the given keywords.
+     *
+     * @param row    the row of the position
+     * @param wanted the lowercase keywords to look for
+     * @return {@code true} if every keyword is in the name
+     */
+    private boolean hasKeywords(int row, String[] wanted) {
+        List<String> keywords = Arrays.asList(keywordsByName.get(names[row]));
+        for (String keyword : wanted) {
+            if (!keywords.contains(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds an {@code Investment} holding the attributes of a position.
+     *
+     * @param row the row of the position
+     * @return a new investment
+     */
+    private Investment toInvestment(int row) {
+        String symbol = symbolDictionary.get(symbols[row]);
+        String name = nameDictionary.get(names[row]);
+        double price = Money.toDouble(prices[row]);
+        double bookValue = Money.toDouble(bookValues[row]);
+
+        Investment investment = types[row] == STOCK
+                ? new Stock(symbol, name, quantities[row], price, bookValue)
+                : new MutualFund(symbol, name, quantities[row], price, bookValue);
+        investment.setUnits(prices[row], bookValues[row]);
+        return investment;
+    }
+
+    /**
+     * Converts a price to {@link Money} units, as {@code Investment} does.
+     *
+     * @param price the price in dollars
+     * @return the price in units
+     * @throws IllegalArgumentException if the price rounds to zero units or less, or is too large
+     */
+    private static long priceUnits(double price) {
+        long units;
+        try {
+            units = Money.of(price);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + price);
+        }
+        if (units <= 0) {
+            throw new IllegalArgumentException("Price must be greater than zero.");
+        }
+        return units;
+    }
+
+    /**
+     * Finds the smallest amount in units whose {@code double} value is at least the given bound,
+     * so that comparing units gives the same answer as comparing {@code getPrice()}.
+     *
+     * @param bound the lower bound, in dollars
+     * @return the smallest amount at or above the bound, in units
+     */
+    private static long unitsAtLeast(double bound) {
+        if (bound * Money.ONE <= -0x1p62) {
+            return Long.MIN_VALUE;
+        }
+        if (!(bound * Money.ONE < 0x1p62)) {
+            return Long.MAX_VALUE;
+        }
+        long units = Money.of(bound);
+        while (Money.toDouble(units) < bound) {
+            units++;
+        }
+        while (Money.toDouble(units - 1) >= bound) {
+            units--;
+        }
+        return units;
+    }
+
+    /**
+     * Finds the largest amount in units whose {@code double} value is at most the given bound.
+     *
+     * @param bound the upper bound, in dollars
+     * @return the largest amount at or below the bound, in units
+     */
+    private static long unitsAtMost(double bound) {
+        if (!(bound * Money.ONE > -0x1p62)) {
+            return Long.MIN_VALUE;
+        }
+        if (bound * Money.ONE >= 0x1p62) {
+            return Long.MAX_VALUE;
+        }
+        long units = Money.of(bound);
+        while (Money.toDouble(units) > bound) {
+            units--;
+        }
+        while (Money.toDouble(units + 1) <= bound) {
+            units++;
+        }
+        return units;
+    }
+
+    /**
+     * Gives each distinct string an id, numbered from zero in the order they are first seen.
+     * <p>
+     * The ids are kept in an open-addressing table of {@code int}s that points into the array of
+     * strings, so a string costs a few bytes beyond itself rather than a map entry, a boxed id
+     * and, when case is ignored, a lowercase copy.
+     * </p>
+     */
+    private static final class Dictionary {
+
+        private final boolean ignoreCase;
+        private String[] values = new String[16];
+        private int[] table = new int[32]; // id + 1 for each used bucket, 0 for empty ones
+        private int size;
+
+        /**
+         * Constructs an empty {@code Dictionary}.
+         *
+         * @param ignoreCase whether strings that differ only in case share an id
+         */
+        Dictionary(boolean ignoreCase) {
+            this.ignoreCase = ignoreCase;
+        }
+
+        /**
+         * Returns the id of a string, adding it if it's new.
+         *
+         * @param value the string to look up
+         * @return the id of the string
+         */
+        int intern(String value) {
+            int bucket = bucketOf(value);
+            if (table[bucket] != 0) {
+                return table[bucket] - 1;
+            }
+
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size] = value;
+            table[bucket] = ++size;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+            return size - 1;
+        }
+
+        /**
+         * Returns the id of a string.
+         *
+         * @param value the string to look up
+         * @return the id of the string, or -1 if it hasn't been added
+         */
+        int find(String value) {
+            return table[bucketOf(value)] - 1;
+        }
+
+        String get(int id) {
+            return values[id];
+        }
+
+        /**
+         * Replaces the string stored for an id with one that matches it.
+         *
+         * @param id    the id to change
+         * @param value the new string, equal to the old one ignoring case
+         */
+        void set(int id, String value) {
+            values[id] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Finds the bucket holding a string, or the empty bucket where it would go.
+         */
+        private int bucketOf(String value) {
+            int mask = table.length - 1;
+            int bucket = hash(value) & mask;
+            while (table[bucket] != 0 && !matches(values[table[bucket] - 1], value)) {
+                bucket = (bucket + 1) & mask;
+            }
+            return bucket;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int id = 0; id < size; id++) {
+                int bucket = hash(values[id]) & mask;
+                while (table[bucket] != 0) {
+                    bucket = (bucket + 1) & mask;
+                }
+                table[bucket] = id + 1;
+            }
+        }
+
+        private boolean matches(String a, String b) {
+            return ignoreCase ? a.equalsIgnoreCase(b) : a.equals(b);
+        }
+
+        /**
+         * Hashes a string, folding case the same way {@code equalsIgnoreCase} does when needed,
+         * and spreads the bits so nearby hashes don't share buckets.
+         */
+        private int hash(String value) {
+            int h;
+            if (ignoreCase) {
+                h = 0;
+                for (int i = 0; i < value.length(); i++) {
+                    h = 31 * h + Character.toLowerCase(Character.toUpperCase(value.charAt(i)));
+                }
+            } else {
+                h = value.hashCode();
+            }
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package ePortfolio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A portfolio that can be used from several threads at once, for example to take orders from
+ * more than one source while a valuation runs.
+ * <p>
+ * Investments are kept in a {@code ConcurrentHashMap} by symbol, and each symbol is guarded by
+ * one of a fixed set of lock stripes. {@code buy}, {@code sell} and {@code updatePrice} hold the
+ * stripe of their symbol while they check and change an investment, including adding or
+ * removing it, so orders for the same symbol are applied one at a time while orders for
+ * different symbols mostly run in parallel. Reads such as {@code getGain} and {@code search}
+ * take each investment's stripe briefly while reading it; they see every investment in a
+ * consistent state, but not the whole portfolio at a single instant.
+ * </p>
+ * <p>
+ * It supports the same operations as {@code Portfolio}, with the same messages. Investments are
+ * not kept in order of purchase, and changes are not recorded in a journal.
+ * </p>
+ */
+public class ConcurrentPortfolio implements PortfolioOperations {
+
+    /** The number of lock stripes, a power of two. */
+    private static final int STRIPES = 64;
+
+    // Attributes
+    private final ConcurrentHashMap<String, Investment> investments = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<String>> nameIndex = new ConcurrentHashMap<>();
+    private final Object[] locks = new Object[STRIPES];
+
+    // Running totals in Money units, updated by the listener of each investment
+    private final LongAdder totalBookValue = new LongAdder();
+    private final LongAdder totalMarketValue = new LongAdder();
+    private final LongAdder totalGain = new LongAdder();
+
+    /**
+     * Constructs a new, empty {@code ConcurrentPortfolio} object.
+     */
+    public ConcurrentPortfolio() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public String buy(String type, String investmentSymbol, String name, double price, int quantityPurchase) {
+        try {
+            // Validate input
+            if (investmentSymbol == null || investmentSymbol.trim().isEmpty()) {
+                throw new IllegalArgumentException("Investment symbol cannot be empty.");
+            }
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Investment name cannot be empty.");
+            }
+            if (quantityPurchase <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than zero.");
+            }
+            if (price <= 0) {
+                throw new IllegalArgumentException("Price must be greater than zero.");
+            }
+
+            String key = symbolKey(investmentSymbol);
+            synchronized (lockFor(key)) {
+
+                // If investment exists:
+                Investment existingInvestment = investments.get(key);
+                if (existingInvestment != null) {
+
+                    // Check if the type matches
+                    if ((type.equalsIgnoreCase("STOCK") && !(existingInvestment instanceof Stock)) ||
+                        (type.equalsIgnoreCase("MUTUAL FUND") && !(existingInvestment instanceof MutualFund))) {
+                        throw new IllegalArgumentException("The type selected doesn't match the type of the existing investment.");
+                    }
+
+                    // Check if the name matches
+                    if (!existingInvestment.getName().equalsIgnoreCase(name)) {
+                        throw new IllegalArgumentException("The name of the investment corresponding to the given symbol is " + existingInvestment.getName() + " not " + name + ". Please try again with the correct name.");
+                    }
+
+                    // Add more quantity to the existing investment
+                    existingInvestment.buy(quantityPurchase, price);
+                    return "Successfully purchased an additional " + quantityPurchase + " " + type + "s of " + name + " (" + investmentSymbol + ")";
+                }
+
+                // If investment doesn't exist:
+                Investment newInvestment;
+                if (type.equalsIgnoreCase("STOCK")) {
+                    newInvestment = new Stock(investmentSymbol, name, quantityPurchase, price);
+                } else if (type.equalsIgnoreCase("MUTUAL FUND")) {
+                    newInvestment = new MutualFund(investmentSymbol, name, quantityPurchase, price);
+                } else {
+                    throw new IllegalArgumentException("Invalid investment type. Must be 'Stock' or 'Mutual Fund'.");
+                }
+
+                addInvestment(key, newInvestment);
+                return "Successfully purchased " + quantityPurchase + " " + type + "s of " + newInvestment.getName();
+            }
+        } catch (IllegalArgumentException ex) {
+            return "Error: " + ex.getMessage();
+        }
+    }
+
+    @Override
+    public String sell(String symbol, double sellingPrice, int quantityToSell) {
+        try {
+            // Validate input
+            if (symbol == null || symbol.trim().isEmpty()) {
+                throw new IllegalArgumentException("Investment symbol cannot be empty.");
+            }
+            if (quantityToSell <= 0) {
+                throw new IllegalArgumentException("Quantity to sell must be greater than zero.");
+            }
+            if (sellingPrice <= 0) {
+                throw new IllegalArgumentException("Selling price must be greater than zero.");
+            }
+
+            String key = symbolKey(symbol);
+            synchronized (lockFor(key)) {
+
+                // If investment doesn't exist
+                Investment investmentToSell = investments.get(key);
+                if (investmentToSell == null) {
+                    throw new IllegalArgumentException("Investment " + symbol + " not found.");
+                }
+
+                // If quantity to be sold exceeds the available quantity
+                int currentQuantity = investmentToSell.getQuantity();
+                if (currentQuantity < quantityToSell) {
+                    throw new IllegalArgumentException("Error: Not enough quantity to sell. You currently have " + currentQuantity + "/" + quantityToSell);
+                }
+
+                // Handle sale of entire or partial investment
+                String message2 = investmentToSell.sell(quantityToSell, sellingPrice);
+                if (quantityToSell == currentQuantity) {
+                    removeInvestment(key, investmentToSell);
+                }
+                return "Successfully sold " + quantityToSell + " of " + symbol + "." + "\n" + message2;
+            }
+        } catch (IllegalArgumentException ex) {
+            return "Error: " + ex.getMessage();
+        }
+    }
+
+    @Override
+    public void updatePrice(String symbol, double price) {
+        String key = symbolKey(symbol);
+        synchronized (lockFor(key)) {
+            Investment investment = investments.get(key);
+            if (investment == null) {
+                throw new IllegalArgumentException("Investment " + symbol + " not found.");
+            }
+            investment.setPrice(price);
+        }
+    }
+
+    @Override
+    public ArrayList<Double> getGain() {
+        ArrayList<Double> individualGains = new ArrayList<>();
+        for (double gain : getGains()) {
+            individualGains.add(gain);
+        }
+        return individualGains;
+    }
+
+    @Override
+    public double[] getGains() {
+        double[] gains = new double[investments.size()];
+        int count = 0;
+        for (Investment investment : investments.values()) {
+            if (count == gains.length) {
+                gains = Arrays.copyOf(gains, count * 2 + 1);
+            }
+            synchronized (lockFor(investment.getInstrument().getSymbolKey())) {
+                gains[count++] = investment.getGain();
+            }
+        }
+        return count == gains.length ? gains : Arrays.copyOf(gains, count);
+    }
+
+    /**
+     * Writes the gain for each investment into an array supplied by the caller. Investments
+     * bought while this runs may be left out if the array is full.
+     *
+     * @param gains the array to fill, which must hold at least {@link #size()} values
+     * @return the number of gains written
+     * @throws IllegalArgumentException if the array is too small
+     */
+    @Override
+    public int getGains(double[] gains) {
+        int size = investments.size();
+        if (gains.length < size) {
+            throw new IllegalArgumentException("The array holds " + gains.length + " gains but the portfolio has " + size + " investments.");
+        }
+        int count = 0;
+        for (Investment investment : investments.values()) {
+            if (count == gains.length) {
+                break;
+            }
+            synchronized (lockFor(investment.getInstrument().getSymbolKey())) {
+                gains[count++] = investment.getGain();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public double getTotalGain() {
+        return Money.toDouble(totalGain.sum());
+    }
+
+    @Override
+    public double getTotalBookValue() {
+        return Money.toDouble(totalBookValue.sum());
+    }
+
+    @Override
+    public double getTotalMarketValue() {
+        return Money.toDouble(totalMarketValue.sum());
+    }
+
+    @Override
+    public int size() {
+        return investments.size();
+    }
+
+    @Override
+    public ArrayList<String> search(String tickerSymbol, String keywords, double lowPrice, double highPrice) {
+        if (lowPrice > highPrice) {
+            return null;
+        }
+
+        // Start from the symbol, or from the rarest keyword, or else from every investment
+        Set<String> candidates = investments.keySet();
+        String[] wanted = keywords.trim().isEmpty() ? new String[0] : Portfolio.nameKeywords(keywords.trim());
+        if (!tickerSymbol.isEmpty()) {
+            candidates = Set.of(symbolKey(tickerSymbol));
+        } else {
+            for (String keyword : wanted) {
+                Set<String> symbolsForKeyword = nameIndex.get(keyword);
+                if (symbolsForKeyword == null) {
+                    // If any keyword has no matches, return no results
+                    return null;
+                }
+                if (symbolsForKeyword.size() < candidates.size()) {
+                    candidates = symbolsForKeyword;
+                }
+            }
+        }
+
+        ArrayList<String> resultList = new ArrayList<>();
+        for (String key : candidates) {
+            synchronized (lockFor(key)) {
+                Investment investment = investments.get(key);
+                if (investment != null && matchesCriteria(investment, wanted, lowPrice, highPrice)) {
+                    resultList.add(investment.toString());
+                }
+            }
+        }
+        return resultList.isEmpty() ? null : resultList;
+    }
+
+    /**
+     * Returns a copy of every investment, for saving or display. Each copy is taken while its
+     * symbol is locked, and changes to the copies don't affect the portfolio.
+     *
+     * @return copies of the investments
+     */
+    public ArrayList<Investment> getInvestments() {
+        ArrayList<Investment> copies = new ArrayList<>(investments.size());
+        for (Investment investment : investments.values()) {
+            synchronized (lockFor(investment.getInstrument().getSymbolKey())) {
+                copies.add(investment.copy());
+            }
+        }
+        return copies;
+    }
+
+    /**
+     * Adds investments to the portfolio, such as the ones read from a file. If a symbol is
+     * already held, the investment already in the portfolio is kept.
+     *
+     * @param toAdd the investments to add
+     */
+    public void addInvestments(List<Investment> toAdd) {
+        for (Investment investment : toAdd) {
+            String key = investment.getInstrument().getSymbolKey();
+            synchronized (lockFor(key)) {
+                if (!investments.containsKey(key)) {
+                    addInvestment(key, investment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds an investment to the map, the name index and the totals, and starts listening for
+     * changes to it. The caller must hold the stripe of its symbol.
+     *
+     * @param key        the lowercase symbol of the investment
+     * @param investment the investment to add
+     */
+    private void addInvestment(String key, Investment investment) {
+        for (String keyword : investment.getInstrument().getKeywords()) {
+            // Add inside compute, so a removal on another stripe can't drop the set in between
+            nameIndex.compute(keyword, (k, symbols) -> {
+                if (symbols == null) {
+                    symbols = ConcurrentHashMap.newKeySet();
+                }
+                symbols.add(key);
+                return symbols;
+            });
+        }
+        addToTotals(investment, investment.getQuantity(), investment.getPriceUnits(), investment.getBookValueUnits(), 1);
+        investment.setListener((changed, oldPrice, oldQuantity, oldBookValue) -> {
+            addToTotals(changed, oldQuantity, oldPrice, oldBookValue, -1);
+            addToTotals(changed, changed.getQuantity(), changed.getPriceUnits(), changed.getBookValueUnits(), 1);
+        });
+        investments.put(key, investment);
+    }
+
+    /**
+     * Removes an investment from the map, the name index and the totals. The caller must hold
+     * the stripe of its symbol.
+     *
+     * @param key        the lowercase symbol of the investment
+     * @param investment the investment to remove
+     */
+    private void removeInvestment(String key, Investment investment) {
+        investments.remove(key);
+        investment.setListener(null);
+        addToTotals(investment, investment.getQuantity(), investment.getPriceUnits(), investment.getBookValueUnits(), -1);
+
+        for (String keyword : investment.getInstrument().getKeywords()) {
+            // Drop keywords no investment uses any more
+            nameIndex.computeIfPresent(keyword, (k, symbols) -> {
+                symbols.remove(key);
+                return symbols.isEmpty() ? null : symbols;
+            });
+        }
+    }
+
+    /**
+     * Adds the book value, market value and gain of an investment in the given state to the
+     * totals, or takes them away.
+     *
+     * @param investment the investment, which decides how the gain is calculated
+     * @param quantity   the quantity owned
+     * @param price      the price per unit, in {@link Money} units
+     * @param bookValue  the book value, in {@link Money} units
+     * @param sign       1 to add the values, -1 to take them away
+     */
+    private void addToTotals(Investment investment, int quantity, long price, long bookValue, int sign) {
+        long gain = investment instanceof MutualFund
+                ? MutualFund.gainUnits(quantity, price, bookValue)
+                : Stock.gainUnits(quantity, price, bookValue);
+        totalBookValue.add(sign * bookValue);
+        totalMarketValue.add(sign * price * quantity);
+        totalGain.add(sign * gain);
+    }
+
+    /**
+     * Checks whether an investment matches the name keywords and price range of a search.
+     *
+     * @param investment the investment to check
+     * @param wanted     the lowercase keywords that must all be in the name
+     * @param lowPrice   the minimum price
+     * @param highPrice  the maximum price
+     * @return {@code true} if the investment matches
+     */
+    private static boolean matchesCriteria(Investment investment, String[] wanted, double lowPrice, double highPrice) {
+        double investmentPrice = investment.getPrice();
+        if (investmentPrice < lowPrice || investmentPrice > highPrice) {
+            return false;
+        }
+        List<String> keywords = Arrays.asList(investment.getInstrument().getKeywords());
+        for (String keyword : wanted) {
+            if (!keywords.contains(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the lock stripe that guards a symbol.
+     *
+     * @param key the lowercase symbol
+     * @return the lock to synchronize on
+     */
+    private Object lockFor(String key) {
+        int h = key.hashCode();
+        return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    /**
+     * Normalizes a symbol so that lookups are case-insensitive, as in {@code Portfolio}.
+     *
+     * @param symbol the investment symbol
+     * @return the lowercase form of the symbol
+     */
+    private static String symbolKey(String symbol) {
+        return symbol.toLowerCase();
+    }
+}
@@ -0,0 +1,190 @@
+package ePortfolio;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A dictionary of the instruments, symbol and name pairs, read in one load session.
+ * <p>
+ * Each distinct instrument is stored once, with the forms the indexes search by: its symbol in
+ * lowercase and the lowercase keywords of its name. Every investment holds a reference to its
+ * instrument instead of its own symbol and name. A new investment gets an instrument of its
+ * own, in no dictionary, and the reader swaps it for the dictionary's copy, so the investments
+ * read in one session that hold the same instrument share a single copy of its strings, even
+ * across files, and the keyword indexes never lowercase or split their names again. Keywords
+ * are themselves shared between instruments.
+ * </p>
+ * <p>
+ * {@code PortfolioFileReader} uses a dictionary for each file it loads, and a
+ * {@link PortfolioLoader} one for all the files it loads. The instruments keep no reference to
+ * their dictionary, so it is dropped with its session while the investments keep their shared
+ * strings. Investments that are streamed from a file or bought through a portfolio are never
+ * interned; they work out their normalized forms on first use. Looking up an instrument that is
+ * already known takes no locks and allocates nothing.
+ * </p>
+ */
+final class InstrumentDictionary {
+
+    // Attributes
+    // Instruments by symbol, exactly as spelled; instruments with the same symbol are chained
+    private final ConcurrentHashMap<String, Instrument> bySymbol = new ConcurrentHashMap<>();
+
+    // Canonical copies of keywords
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the instrument with the given symbol and name, adding it if it is new. Symbols and
+     * names are matched exactly, including case.
+     *
+     * @param symbol the symbol of the instrument
+     * @param name   the name of the instrument
+     * @return the instrument
+     */
+    Instrument intern(String symbol, String name) {
+        Instrument instrument = find(bySymbol.get(symbol), name);
+        return instrument != null ? instrument : add(symbol, name);
+    }
+
+    /**
+     * Returns this dictionary's copy of an instrument, adding it if it is new. An instrument
+     * already in a dictionary is kept as it is.
+     *
+     * @param instrument the instrument
+     * @return the instrument, or this dictionary's copy of it if it was in no dictionary
+     */
+    Instrument intern(Instrument instrument) {
+        return instrument.interned ? instrument : intern(instrument.symbol, instrument.name);
+    }
+
+    /**
+     * Adds an instrument, unless another thread added it first.
+     *
+     * @param symbol the symbol of the instrument
+     * @param name   the name of the instrument
+     * @return the instrument
+     */
+    private synchronized Instrument add(String symbol, String name) {
+        Instrument head = bySymbol.get(symbol);
+        Instrument instrument = find(head, name);
+        if (instrument != null) {
+            return instrument;
+        }
+
+        String[] keywords = Portfolio.nameKeywords(name);
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = canonical(keywords[i]);
+        }
+        instrument = new Instrument(true, head != null ? head.symbol : symbol, name,
+                head != null ? head.symbolKey : symbol.toLowerCase(), keywords, head);
+        bySymbol.put(instrument.symbol, instrument);
+        return instrument;
+    }
+
+    /**
+     * Returns the shared copy of a string, making the given one the shared copy if there is none.
+     *
+     * @param text the string
+     * @return the shared copy
+     */
+    private String canonical(String text) {
+        String existing = strings.putIfAbsent(text, text);
+        return existing != null ? existing : text;
+    }
+
+    /**
+     * Finds the instrument with the given name in a chain of instruments sharing a symbol.
+     *
+     * @param instrument the first instrument of the chain, or {@code null}
+     * @param name       the name to look for
+     * @return the instrument, or {@code null} if none in the chain has the name
+     */
+    private static Instrument find(Instrument instrument, String name) {
+        while (instrument != null && !instrument.name.equals(name)) {
+            instrument = instrument.next;
+        }
+        return instrument;
+    }
+
+    /**
+     * A symbol and name pair, with the normalized forms used by the indexes. An instrument never
+     * changes once it is in a dictionary. An instrument in no dictionary works out its normalized
+     * forms the first time they are asked for.
+     */
+    static final class Instrument {
+
+        private final boolean interned;
+        private final String symbol;
+        private final String name;
+        private volatile String symbolKey;
+        private volatile String[] keywords;
+        private final Instrument next;
+
+        private Instrument(boolean interned, String symbol, String name, String symbolKey, String[] keywords,
+                           Instrument next) {
+            this.interned = interned;
+            this.symbol = symbol;
+            this.name = name;
+            this.symbolKey = symbolKey;
+            this.keywords = keywords;
+            this.next = next;
+        }
+
+        /**
+         * Returns an instrument in no dictionary, for an investment that hasn't been added to a
+         * portfolio yet.
+         *
+         * @param symbol the symbol of the instrument
+         * @param name   the name of the instrument
+         * @return the instrument
+         */
+        static Instrument of(String symbol, String name) {
+            return new Instrument(false, symbol, name, null, null, null);
+        }
+
+        /**
+         * Returns the symbol of the instrument.
+         *
+         * @return the symbol
+         */
+        String getSymbol() {
+            return symbol;
+        }
+
+        /**
+         * Returns the name of the instrument.
+         *
+         * @return the name
+         */
+        String getName() {
+            return name;
+        }
+
+        /**
+         * Returns the lowercase symbol, the key symbols are looked up by ignoring case.
+         *
+         * @return the lowercase symbol
+         */
+        String getSymbolKey() {
+            String key = symbolKey;
+            if (key == null) {
+                key = symbol.toLowerCase();
+                symbolKey = key;
+            }
+            return key;
+        }
+
+        /**
+         * Returns the lowercase keywords of the name, as split by {@link Portfolio#nameKeywords}.
+         * The array is shared and must not be modified.
+         *
+         * @return the keywords of the name
+         */
+        String[] getKeywords() {
+            String[] words = keywords;
+            if (words == null) {
+                words = Portfolio.nameKeywords(name);
+                keywords = words;
+            }
+            return words;
+        }
+    }
+}
@@ -4,15 +4,25 @@ package ePortfolio;
  * Represents a financial investment with attributes like symbol, name, quantity, price, and book value.
  * This class serves as a parent to specific investment types such as {@code MutualFund} and {@code Stock}.
  * It provides methods for managing investment transactions, including buying and selling.
+ * <p>
+ * Prices and book values are kept as exact fixed-point amounts, see {@link Money}. They are
+ * passed in and returned as {@code double} dollars, rounded to the nearest unit on the way in,
+ * and are also available in units.
+ * </p>
+ * <p>
+ * The symbol and name are held as one {@code Instrument}. When the investment is read from a
+ * file, that is the load session's copy from its {@link InstrumentDictionary}, so the
+ * investments read in the same instrument share a single copy of them.
+ * </p>
  */
 public abstract class Investment {
   
     // Attributes
-    private String symbol;
-    private String name;
+    private InstrumentDictionary.Instrument instrument;
     private int quantity;
-    private double price;
-    private double bookValue;
+    private long price;
+    private long bookValue;
+    private InvestmentListener listener;
 
     // Constructors
 
@@ -24,7 +34,8 @@ public abstract class Investment {
      * @param quantity the quantity of units owned
      * @param price the price per unit of the investment
      * @param bookValue the total book value of the investment
-     * @throws IllegalArgumentException if symbol or name is null or empty, quantity is non-positive, price is non-positive, or book value is negative
+     * @throws IllegalArgumentException if symbol or name is null or empty, quantity is non-positive, price is non-positive, book value is negative,
+     *                                  or the value of the investment is too large to hold
      */
     public Investment(String symbol, String name, int quantity, double price, double bookValue) {
         if (symbol == null || symbol.isEmpty()) {
@@ -36,20 +47,36 @@ public abstract class Investment {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero.");
         }
-        if (price <= 0) {
+        long priceUnits = toUnits(price);
+        if (priceUnits <= 0) {
             throw new IllegalArgumentException("Price must be greater than zero.");
         }
-        if (bookValue < 0) {
+        long bookValueUnits = toUnits(bookValue);
+        if (bookValueUnits < 0) {
             throw new IllegalArgumentException("Book value cannot be negative.");
         }
+        checkValue(quantity, priceUnits, bookValueUnits);
 
-        this.symbol = symbol;
-        this.name = name;
+        this.instrument = InstrumentDictionary.Instrument.of(symbol, name);
         this.quantity = quantity;
-        this.price = price;
-        this.bookValue = bookValue;
+        this.price = priceUnits;
+        this.bookValue = bookValueUnits;
     }
     
+    /**
+     * Constructs a copy of another investment, without checking its attributes again, so an
+     * investment can be copied in any state it passes through, such as just after its last
+     * unit is sold. The copy has no listener.
+     * 
+     * @param other the investment to copy
+     */
+    Investment(Investment other) {
+        this.instrument = other.instrument;
+        this.quantity = other.quantity;
+        this.price = other.price;
+        this.bookValue = other.bookValue;
+    }
+
     /**
      * Constructs an {@code Investment} object with the specified attributes.
      * The book value is automatically calculated as {@code quantity * price}.
@@ -70,15 +97,22 @@ public abstract class Investment {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero.");
         }
-        if (price <= 0) {
+        long priceUnits = toUnits(price);
+        if (priceUnits <= 0) {
             throw new IllegalArgumentException("Price must be greater than zero.");
         }
 
-        this.symbol = symbol;
-        this.name = name;
+        long bookValueUnits;
+        try {
+            bookValueUnits = Money.times(priceUnits, quantity);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + price + " x " + quantity);
+        }
+
+        this.instrument = InstrumentDictionary.Instrument.of(symbol, name);
         this.quantity = quantity;
-        this.price = price;
-        this.bookValue = quantity * price;
+        this.price = priceUnits;
+        this.bookValue = bookValueUnits;
     }
 
     // Getters
@@ -89,7 +123,7 @@ public abstract class Investment {
      * @return the investment symbol (e.g., AAPL for Apple stock)
      */
     public String getSymbol() {
-        return this.symbol;
+        return this.instrument.getSymbol();
     }
 
      /**
@@ -98,7 +132,27 @@ public abstract class Investment {
      * @return the name of the investment
      */
     public String getName() {
-        return this.name;
+        return this.instrument.getName();
+    }
+
+    /**
+     * Returns the instrument of the investment, its symbol and name with their normalized forms.
+     * 
+     * @return the instrument
+     */
+    InstrumentDictionary.Instrument getInstrument() {
+        return this.instrument;
+    }
+
+    /**
+     * Moves the investment over to a dictionary's copy of its instrument, so it shares the
+     * strings of the other investments held in the same instrument. This must happen before the
+     * investment is seen by other threads.
+     *
+     * @param dictionary the dictionary of the load session the investment is read in
+     */
+    void internInstrument(InstrumentDictionary dictionary) {
+        this.instrument = dictionary.intern(this.instrument);
     }
 
     /**
@@ -116,6 +170,15 @@ public abstract class Investment {
      * @return the current price per unit of the investment
      */
     public double getPrice() {
+        return Money.toDouble(this.price);
+    }
+
+    /**
+     * Returns the exact price per unit of the investment.
+     * 
+     * @return the current price per unit, in {@link Money} units
+     */
+    public long getPriceUnits() {
         return this.price;
     }
 
@@ -125,6 +188,15 @@ public abstract class Investment {
      * @return the book value, representing the total value based on the purchase price
      */
     public double getBookValue() {
+        return Money.toDouble(this.bookValue);
+    }
+
+    /**
+     * Returns the exact book value of the investment.
+     * 
+     * @return the book value, in {@link Money} units
+     */
+    public long getBookValueUnits() {
         return this.bookValue;
     }
 
@@ -134,26 +206,35 @@ public abstract class Investment {
      * Sets the price per unit of the investment.
      * 
      * @param price the new price per unit of the investment
-     * @throws IllegalArgumentException if the price is non-positive
+     * @throws IllegalArgumentException if the price is non-positive, or the investment's value at
+     *         that price would be too large to hold
      */
     public void setPrice(double price) {
-        if (price <= 0) {
+        long priceUnits = toUnits(price);
+        if (priceUnits <= 0) {
             throw new IllegalArgumentException("Price must be greater than zero.");
         }
-        this.price = price;
+        checkValue(this.quantity, priceUnits, this.bookValue);
+        long oldPrice = this.price;
+        this.price = priceUnits;
+        notifyChanged(oldPrice, this.quantity, this.bookValue);
     }
 
     /**
      * Sets the quantity of the investment owned.
      * 
      * @param quantity the new quantity of units owned
-     * @throws IllegalArgumentException if the quantity is non-positive
+     * @throws IllegalArgumentException if the quantity is non-positive, or the investment's value
+     *         at that quantity would be too large to hold
      */
     public void setQuantity(int quantity) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero.");
         }
+        checkValue(quantity, this.price, this.bookValue);
+        int oldQuantity = this.quantity;
         this.quantity = quantity;
+        notifyChanged(this.price, oldQuantity, this.bookValue);
     }
 
     /**
@@ -163,38 +244,182 @@ public abstract class Investment {
      * @throws IllegalArgumentException if the book value is negative
      */
     public void setBookValue(double bookValue) {
+        setBookValueUnits(toUnits(bookValue));
+    }
+
+    /**
+     * Sets the exact book value of the investment.
+     * 
+     * @param bookValue the new book value, in {@link Money} units
+     * @throws IllegalArgumentException if the book value is negative, or the gain would be too
+     *         large to hold
+     */
+    public void setBookValueUnits(long bookValue) {
+        if (bookValue < 0) {
+            throw new IllegalArgumentException("Book value cannot be negative.");
+        }
+        checkValue(this.quantity, this.price, bookValue);
+        long oldBookValue = this.bookValue;
+        this.bookValue = bookValue;
+        notifyChanged(this.price, this.quantity, oldBookValue);
+    }
+
+    /**
+     * Sets the exact price and book value at once, for copies of investments and snapshots
+     * that were saved in units.
+     *
+     * @param price     the price per unit, in {@link Money} units
+     * @param bookValue the book value, in {@link Money} units
+     * @throws IllegalArgumentException if the price is non-positive or the book value is negative
+     */
+    void setUnits(long price, long bookValue) {
+        if (price <= 0) {
+            throw new IllegalArgumentException("Price must be greater than zero.");
+        }
         if (bookValue < 0) {
             throw new IllegalArgumentException("Book value cannot be negative.");
         }
+        checkValue(this.quantity, price, bookValue);
+        long oldPrice = this.price;
+        long oldBookValue = this.bookValue;
+        this.price = price;
         this.bookValue = bookValue;
+        notifyChanged(oldPrice, this.quantity, oldBookValue);
+    }
+
+    /**
+     * Registers the listener to notify whenever this investment's price, quantity or book value
+     * changes. An investment has at most one listener, normally the portfolio that holds it.
+     *
+     * @param listener the listener to notify, or {@code null} to stop notifications
+     */
+    void setListener(InvestmentListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Notifies the listener, if any, that this investment has changed.
+     *
+     * @param oldPrice     the price per unit before the change
+     * @param oldQuantity  the quantity owned before the change
+     * @param oldBookValue the book value before the change
+     */
+    private void notifyChanged(long oldPrice, int oldQuantity, long oldBookValue) {
+        if (listener != null) {
+            listener.investmentChanged(this, oldPrice, oldQuantity, oldBookValue);
+        }
+    }
+
+    /**
+     * Converts a dollar amount passed in to {@link Money} units.
+     *
+     * @param amount the amount in dollars
+     * @return the amount in units
+     * @throws IllegalArgumentException if the amount is too large to hold, or isn't a number
+     */
+    private static long toUnits(double amount) {
+        try {
+            return Money.of(amount);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + amount);
+        }
+    }
+
+    /**
+     * Checks that a position can be valued, that is that its market value and gain fit in
+     * {@link Money} units, so a change that would overflow them is rejected before anything
+     * is changed.
+     *
+     * @param quantity  the quantity owned
+     * @param price     the price per unit, in {@link Money} units
+     * @param bookValue the book value, in {@link Money} units
+     * @throws IllegalArgumentException if the market value or gain would overflow
+     */
+    private void checkValue(int quantity, long price, long bookValue) {
+        try {
+            gainUnitsAt(quantity, price, bookValue);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + Money.toString(price) + " x " + quantity);
+        }
     }
 
     // Buying and Selling methods on the individual investment level
 
     /**
      * Increases the quantity of the investment by buying more units.
-     * The price is updated to the latest purchase price and the book value is adjusted accordingly.
+     * The price is updated to the latest purchase price and the book value is adjusted accordingly,
+     * including any fee charged on a purchase.
      * 
      * @param quantity the quantity of units to buy
      * @param price the price per unit at the time of purchase
-     * @throws IllegalArgumentException if the quantity or price is non-positive
+     * @throws IllegalArgumentException if the quantity or price is non-positive, or the quantity
+     *         or book value after the purchase would be too large to hold
      */
     public void buy(int quantity, double price) {
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero.");
         }
-        if (price <= 0) {
+        long priceUnits = toUnits(price);
+        if (priceUnits <= 0) {
             throw new IllegalArgumentException("Price must be greater than zero.");
         }
+        try {
+            buyUnits(quantity, priceUnits);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + price + " x " + quantity);
+        }
+    }
 
-        this.quantity += quantity;
-        this.price = price;
-        this.bookValue += (quantity * price);
+    /**
+     * Buys more units at an exact price, for callers that have already checked the order. The
+     * investment is left unchanged if the new quantity, book value or gain can't be held.
+     * 
+     * @param quantity   the quantity of units to buy, which must be positive
+     * @param priceUnits the price per unit, in {@link Money} units, which must be positive
+     * @throws ArithmeticException if the new quantity, book value or gain overflows
+     */
+    void buyUnits(int quantity, long priceUnits) {
+        int newQuantity = Math.addExact(this.quantity, quantity);
+        long newBookValue = bookValueAfterBuying(quantity, priceUnits);
+        gainUnitsAt(newQuantity, priceUnits, newBookValue);
+
+        long oldPrice = this.price;
+        int oldQuantity = this.quantity;
+        long oldBookValue = this.bookValue;
+
+        this.quantity = newQuantity;
+        this.price = priceUnits;
+        this.bookValue = newBookValue;
+        notifyChanged(oldPrice, oldQuantity, oldBookValue);
+    }
+
+    /**
+     * Calculates the book value the investment would have after buying more units, including
+     * any fee charged on a purchase.
+     * 
+     * @param quantity   the quantity of units to buy
+     * @param priceUnits the price per unit, in {@link Money} units
+     * @return the new book value, in {@link Money} units
+     * @throws ArithmeticException if the book value overflows
+     */
+    long bookValueAfterBuying(int quantity, long priceUnits) {
+        return Money.add(this.bookValue, Money.add(Money.times(priceUnits, quantity), purchaseFeeUnits()));
+    }
+
+    /**
+     * Returns the fee added to the book value whenever more units are bought. Investments
+     * charge none unless a subclass says otherwise.
+     * 
+     * @return the fee, in {@link Money} units
+     */
+    long purchaseFeeUnits() {
+        return 0;
     }
 
     /**
      * Decreases the quantity of the investment by selling units.
-     * Updates the book value based on the remaining units.
+     * Updates the book value based on the remaining units, in proportion to the units kept and
+     * rounded to the nearest {@link Money} unit.
      * 
      * @param quantity the quantity of units to sell
      * @param price the price per unit at the time of sale
@@ -205,17 +430,19 @@ public abstract class Investment {
             if (quantity <= 0) {
                 throw new IllegalArgumentException("Quantity must be greater than zero.");
             }
-            if (price <= 0) {
+            long priceUnits = toUnits(price);
+            if (priceUnits <= 0) {
                 throw new IllegalArgumentException("Price must be greater than zero.");
             }
             if (quantity > this.quantity) {
                 throw new IllegalArgumentException("Cannot sell more units than currently owned.");
             }
 
-            double proportion = (double) (this.quantity - quantity) / this.quantity;
-            this.bookValue *= proportion;
-            this.quantity -= quantity;
-            this.price = price;
+            try {
+                sellUnits(quantity, priceUnits);
+            } catch (ArithmeticException e) {
+                throw new IllegalArgumentException("Amount out of range: " + price + " x " + quantity);
+            }
 
             return String.format("Successfully sold %d units at %.2f per unit.", quantity, price);
         } catch (IllegalArgumentException ex) {
@@ -223,6 +450,31 @@ public abstract class Investment {
         }
     }
 
+    /**
+     * Sells units at an exact price, for callers that have already checked the order. The book
+     * value is reduced in proportion to the units kept. The investment is left unchanged if the
+     * payment for the units sold, or the value of the units kept at the new price, can't be held.
+     * 
+     * @param quantity   the quantity of units to sell, which must be positive and no more than
+     *                   the quantity owned
+     * @param priceUnits the price per unit, in {@link Money} units, which must be positive
+     * @throws ArithmeticException if the payment, market value or gain overflows
+     */
+    void sellUnits(int quantity, long priceUnits) {
+        long newBookValue = Money.scale(this.bookValue, this.quantity - quantity, this.quantity);
+        Money.times(priceUnits, quantity);
+        gainUnitsAt(this.quantity - quantity, priceUnits, newBookValue);
+
+        long oldPrice = this.price;
+        int oldQuantity = this.quantity;
+        long oldBookValue = this.bookValue;
+
+        this.bookValue = newBookValue;
+        this.quantity -= quantity;
+        this.price = priceUnits;
+        notifyChanged(oldPrice, oldQuantity, oldBookValue);
+    }
+
     /**
      * Converts the investment details into a format suitable for saving to a file.
      * This method is to be implemented by subclasses to provide specific formatting.
@@ -233,9 +485,37 @@ public abstract class Investment {
 
     /**
      * Calculates the gain of the investment.
-     * This method is to be implemented by subclasses to provide specific calculations.
      * 
      * @return the calculated gain of the investment
      */
-    public abstract double getGain();
+    public double getGain() {
+        return Money.toDouble(getGainUnits());
+    }
+
+    /**
+     * Calculates the exact gain of the investment.
+     * This method is to be implemented by subclasses to provide specific calculations.
+     * 
+     * @return the calculated gain of the investment, in {@link Money} units
+     */
+    public abstract long getGainUnits();
+
+    /**
+     * Calculates the gain this investment would have in the given state, without changing it.
+     *
+     * @param quantity  the quantity owned
+     * @param price     the price per unit, in {@link Money} units
+     * @param bookValue the book value, in {@link Money} units
+     * @return the gain, in {@link Money} units
+     * @throws ArithmeticException if the market value or gain overflows
+     */
+    abstract long gainUnitsAt(int quantity, long price, long bookValue);
+
+    /**
+     * Creates a copy of the investment with the same attributes, which can be read or written
+     * out while the original keeps changing. The copy has no listener.
+     *
+     * @return a new investment of the same type
+     */
+    abstract Investment copy();
 }
@@ -0,0 +1,19 @@
+package ePortfolio;
+
+/**
+ * Receives notifications when the price, quantity or book value of an {@code Investment} changes.
+ * {@code Portfolio} uses this to keep its indexes and totals up to date when an investment is modified
+ * directly, for example when a new price is set from the update screen.
+ */
+interface InvestmentListener {
+
+    /**
+     * Called after an investment has been modified.
+     *
+     * @param investment    the investment that changed
+     * @param oldPrice      the price per unit before the change, in {@link Money} units
+     * @param oldQuantity   the quantity owned before the change
+     * @param oldBookValue  the book value before the change, in {@link Money} units
+     */
+    void investmentChanged(Investment investment, long oldPrice, int oldQuantity, long oldBookValue);
+}
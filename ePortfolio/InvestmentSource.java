@@ -0,0 +1,70 @@
+package ePortfolio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A file of investments that is read one investment at a time, such as a text portfolio file
+ * or a binary snapshot.
+ */
+interface InvestmentSource extends Closeable {
+
+    /**
+     * Reads the next investment.
+     *
+     * @return the next investment, or {@code null} once the end of the file is reached
+     * @throws IOException if the file can't be read
+     */
+    Investment next() throws IOException;
+
+    /**
+     * Returns a sequential stream of the investments left in the file. Investments are read
+     * lazily as the stream is consumed, and closing the stream closes the file.
+     *
+     * @return a stream of the remaining investments
+     */
+    default Stream<Investment> stream() {
+        Iterator<Investment> iterator = new Iterator<Investment>() {
+            private Investment nextInvestment;
+
+            @Override
+            public boolean hasNext() {
+                if (nextInvestment == null) {
+                    try {
+                        nextInvestment = InvestmentSource.this.next();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                return nextInvestment != null;
+            }
+
+            @Override
+            public Investment next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Investment investment = nextInvestment;
+                nextInvestment = null;
+                return investment;
+            }
+        };
+
+        Spliterator<Investment> spliterator = Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(() -> {
+            try {
+                close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,161 @@
+package ePortfolio;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds that many threads can record into at once without
+ * locking, used by {@link PortfolioMetrics}.
+ * <p>
+ * Buckets are laid out as in an HDR histogram: values below {@code 2 * SUB_BUCKETS} get a
+ * bucket each, and every power of two above that is split into {@value #SUB_BUCKETS} equal
+ * buckets. Any latency from a nanosecond to centuries is then recorded to within about 3%,
+ * with a fixed 1888 buckets and one atomic increment per value.
+ * </p>
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    // Attributes
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds; negative values count as zero
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(value));
+        total.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Clears every recorded latency. Latencies recorded while this runs may be kept or lost.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * Takes a copy of the histogram and works out its statistics.
+     *
+     * @return the statistics
+     */
+    Summary summarize() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Summary(copy, count, total.sum(), max.get());
+    }
+
+    /**
+     * Returns the bucket a value is counted in.
+     *
+     * @param value the value, which must not be negative
+     * @return the index of the bucket
+     */
+    static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the largest value in the bucket
+     */
+    static long highestValue(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long subBucket = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * The statistics of a histogram at one point in time.
+     */
+    static final class Summary {
+
+        private final long[] counts;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Summary(long[] counts, long count, long total, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of latencies recorded.
+         *
+         * @return the number of latencies
+         */
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the mean latency.
+         *
+         * @return the mean in nanoseconds, or 0 if nothing was recorded
+         */
+        double getMean() {
+            return count == 0 ? 0 : (double) total / count;
+        }
+
+        /**
+         * Returns the longest latency recorded.
+         *
+         * @return the maximum in nanoseconds
+         */
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the latency that the given share of latencies were no longer than, to within
+         * the precision of the buckets.
+         *
+         * @param percentile the percentile, from 0 to 100
+         * @return the latency in nanoseconds, or 0 if nothing was recorded
+         */
+        long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package ePortfolio;
+
+import java.math.BigInteger;
+
+/**
+ * Fixed-point arithmetic on amounts of money held in a {@code long}.
+ * <p>
+ * An amount is stored as a whole number of units, where one unit is {@code 10^-SCALE} of a
+ * dollar; with the default scale of 4, {@code 49544.991} is held as {@code 495449910}. Sums and
+ * products of amounts are exact, so gains don't drift however many trades are made, and
+ * amounts can be written out and read back as plain integers. The scale can be set with the
+ * {@code ePortfolio.moneyScale} system property, from 0 to 9 decimal places.
+ * </p>
+ * <p>
+ * All methods are static and work on plain {@code long} values, so no objects are allocated.
+ * Operations that overflow a {@code long} throw an {@code ArithmeticException}.
+ * </p>
+ */
+public final class Money {
+
+    /** The number of decimal places kept. */
+    public static final int SCALE = scaleProperty();
+
+    /** The number of units in one dollar, {@code 10^SCALE}. */
+    public static final long ONE = pow10(SCALE);
+
+    private Money() {
+    }
+
+    /**
+     * Converts a dollar amount to units, rounding to the nearest unit.
+     *
+     * @param value the amount in dollars
+     * @return the amount in units
+     * @throws ArithmeticException if the amount is too large to hold, or isn't a number
+     */
+    public static long of(double value) {
+        double units = Math.rint(value * ONE);
+        if (!(Math.abs(units) < 0x1p63)) {
+            throw new ArithmeticException("Amount out of range: " + value);
+        }
+        return (long) units;
+    }
+
+    /**
+     * Converts an amount in units to the nearest {@code double} number of dollars.
+     *
+     * @param units the amount in units
+     * @return the amount in dollars
+     */
+    public static double toDouble(long units) {
+        return units / (double) ONE;
+    }
+
+    /**
+     * Adds two amounts.
+     *
+     * @param a the first amount, in units
+     * @param b the second amount, in units
+     * @return the sum, in units
+     * @throws ArithmeticException if the sum overflows
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtracts one amount from another.
+     *
+     * @param a the amount to subtract from, in units
+     * @param b the amount to subtract, in units
+     * @return the difference, in units
+     * @throws ArithmeticException if the difference overflows
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Multiplies an amount by a whole number, such as a price by a quantity.
+     *
+     * @param units  the amount, in units
+     * @param factor the number to multiply by
+     * @return the product, in units
+     * @throws ArithmeticException if the product overflows
+     */
+    public static long times(long units, long factor) {
+        return Math.multiplyExact(units, factor);
+    }
+
+    /**
+     * Scales an amount by the fraction {@code numerator / denominator}, rounding half to even.
+     * The product is computed in 128 bits, so only the final result has to fit in a
+     * {@code long}.
+     *
+     * @param units       the amount, in units
+     * @param numerator   the numerator of the fraction
+     * @param denominator the denominator of the fraction, which must be positive
+     * @return the scaled amount, in units
+     * @throws ArithmeticException if the denominator isn't positive or the result overflows
+     */
+    public static long scale(long units, long numerator, long denominator) {
+        if (denominator <= 0) {
+            throw new ArithmeticException("Denominator must be positive: " + denominator);
+        }
+
+        long low = units * numerator;
+        long high = Math.multiplyHigh(units, numerator);
+        if (high == (low >> 63)) {
+            return divide(low, denominator);
+        }
+
+        // Rare: the product doesn't fit in a long, so divide it as a big integer
+        BigInteger[] division = BigInteger.valueOf(units).multiply(BigInteger.valueOf(numerator))
+                .divideAndRemainder(BigInteger.valueOf(denominator));
+        BigInteger quotient = division[0];
+        int half = division[1].abs().shiftLeft(1).compareTo(BigInteger.valueOf(denominator));
+        if (half > 0 || (half == 0 && quotient.testBit(0))) {
+            quotient = quotient.add(BigInteger.valueOf(division[1].signum()));
+        }
+        return quotient.longValueExact();
+    }
+
+    /**
+     * Converts an amount from another scale to {@link #SCALE}, rounding half to even.
+     *
+     * @param units     the amount, in units of {@code 10^-fromScale}
+     * @param fromScale the scale the amount is in
+     * @return the amount in units
+     * @throws ArithmeticException if the result overflows
+     */
+    public static long rescale(long units, int fromScale) {
+        if (fromScale <= SCALE) {
+            return times(units, pow10(SCALE - fromScale));
+        }
+        return divide(units, pow10(fromScale - SCALE));
+    }
+
+    /**
+     * Formats an amount as a plain decimal number of dollars, with at least one decimal place
+     * and no trailing zeros after it, such as {@code 150.0} or {@code 49544.991}. The result
+     * reads back to the same number of units.
+     *
+     * @param units the amount, in units
+     * @return the formatted amount
+     */
+    public static String toString(long units) {
+        StringBuilder text = new StringBuilder(24);
+        if (units < 0) {
+            text.append('-');
+        }
+        // Work with the negative magnitude, which can hold every long
+        long magnitude = units < 0 ? units : -units;
+        text.append(-(magnitude / ONE)).append('.');
+
+        int start = text.length();
+        String fraction = Long.toString(-(magnitude % ONE));
+        for (int i = fraction.length(); i < SCALE; i++) {
+            text.append('0');
+        }
+        text.append(fraction);
+
+        // Drop trailing zeros, keeping at least one decimal place
+        int end = text.length();
+        while (end > start + 1 && text.charAt(end - 1) == '0') {
+            end--;
+        }
+        text.setLength(end);
+        return text.toString();
+    }
+
+    /**
+     * Divides, rounding half to even.
+     *
+     * @param dividend the number to divide
+     * @param divisor  the number to divide by, which must be positive
+     * @return the rounded quotient
+     */
+    private static long divide(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        long remainder = Math.abs(dividend % divisor);
+
+        // Compare the remainder against half the divisor without overflowing
+        int half = Long.compare(remainder, divisor - remainder);
+        if (half > 0 || (half == 0 && (quotient & 1) != 0)) {
+            quotient += dividend < 0 ? -1 : 1;
+        }
+        return quotient;
+    }
+
+    /**
+     * Returns ten to the given power.
+     *
+     * @param exponent the power, from 0 to 18
+     * @return {@code 10^exponent}
+     */
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    /**
+     * Reads the scale from the {@code ePortfolio.moneyScale} system property.
+     *
+     * @return the scale, 4 if the property isn't set
+     * @throws IllegalArgumentException if the property isn't a number from 0 to 9
+     */
+    private static int scaleProperty() {
+        int scale = Integer.getInteger("ePortfolio.moneyScale", 4);
+        if (scale < 0 || scale > 9) {
+            throw new IllegalArgumentException("ePortfolio.moneyScale must be from 0 to 9, not " + scale + ".");
+        }
+        return scale;
+    }
+}
@@ -15,6 +15,9 @@ public class MutualFund extends Investment {
      */
     public static final double REDEMPTIONFEE = 45;
 
+    /** The redemption fee, in {@link Money} units. */
+    static final long REDEMPTIONFEE_UNITS = Money.of(REDEMPTIONFEE);
+
     // Constructors
 
     /**
@@ -47,6 +50,15 @@ public class MutualFund extends Investment {
         super(symbol, name, quantity, price);
     }
 
+    /**
+     * Constructs a copy of another mutual fund.
+     * 
+     * @param other the mutual fund to copy
+     */
+    MutualFund(MutualFund other) {
+        super(other);
+    }
+
     // Getter and setter methods are inherited from investment parent class
     
     // Method to buy investment inherited from investment class
@@ -60,7 +72,7 @@ public class MutualFund extends Investment {
      * @return a string message with the payment details
      * @throws IllegalArgumentException if the quantity is non-positive, the price is non-positive,
      *                                  the quantity exceeds the available quantity, or if the redemption fee
-     *                                  results in a negative payment
+     *                                  results in a negative payment, or if the payment is too large to hold
      */
     @Override
     public String sell(int quantity, double price) {
@@ -74,13 +86,29 @@ public class MutualFund extends Investment {
             throw new IllegalArgumentException("Cannot sell more units than currently owned.");
         }
 
-        double paymentReceived = quantity * price - REDEMPTIONFEE;
-
-        String message = String.format("Payment received by investor is %.2f", paymentReceived);
+        String message;
+        try {
+            message = saleMessage(quantity, Money.of(price));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + price + " x " + quantity);
+        }
         super.sell(quantity, price);
         return message;
     }
 
+    /**
+     * Builds the message for a sale of mutual fund shares, showing the payment received after
+     * the redemption fee.
+     *
+     * @param quantity the quantity of shares sold
+     * @param price    the price per share, in {@link Money} units
+     * @return the message for the sale
+     */
+    static String saleMessage(int quantity, long price) {
+        long paymentReceived = Money.subtract(Money.times(price, quantity), REDEMPTIONFEE_UNITS);
+        return String.format("Payment received by investor is %.2f", Money.toDouble(paymentReceived));
+    }
+
     /**
      * Returns a formatted string representation of the mutual fund investment.
      * 
@@ -103,20 +131,42 @@ public class MutualFund extends Investment {
                "symbol = \"" + this.getSymbol() + "\"\n" +
                "name = \"" + this.getName() + "\"\n" +
                "quantity = \"" + this.getQuantity() + "\"\n" +
-               "price = \"" + this.getPrice() + "\"\n" +
-               "bookValue = \"" + this.getBookValue() + "\"\n";
+               "price = \"" + Money.toString(this.getPriceUnits()) + "\"\n" +
+               "bookValue = \"" + Money.toString(this.getBookValueUnits()) + "\"\n";
     }
 
     /**
      * Calculates the gain for the mutual fund investment.
      * The gain is computed as the current value of the investment minus the redemption fee and book value.
      * 
-     * @return the calculated gain for the mutual fund
+     * @return the calculated gain for the mutual fund, in {@link Money} units
      */
     @Override
-    public double getGain() {
-        double currentValue = this.getPrice() * this.getQuantity();
-        double gain = currentValue - REDEMPTIONFEE - this.getBookValue();
+    public long getGainUnits() {
+        return gainUnits(this.getQuantity(), this.getPriceUnits(), this.getBookValueUnits());
+    }
+
+    @Override
+    long gainUnitsAt(int quantity, long price, long bookValue) {
+        return gainUnits(quantity, price, bookValue);
+    }
+
+    @Override
+    MutualFund copy() {
+        return new MutualFund(this);
+    }
+
+    /**
+     * Calculates the gain of a mutual fund position from its attributes.
+     *
+     * @param quantity  the quantity of shares owned
+     * @param price     the price per share, in {@link Money} units
+     * @param bookValue the book value, in {@link Money} units
+     * @return the gain, in {@link Money} units
+     */
+    static long gainUnits(int quantity, long price, long bookValue) {
+        long currentValue = Money.times(price, quantity);
+        long gain = Money.subtract(Money.subtract(currentValue, REDEMPTIONFEE_UNITS), bookValue);
         return gain;
     }
 }
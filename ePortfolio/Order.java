@@ -0,0 +1,181 @@
+package ePortfolio;
+
+/**
+ * An order to buy or sell an investment, for placing many orders at once with
+ * {@code Portfolio.buyAll} and {@code Portfolio.sellAll}. Orders are immutable.
+ */
+public final class Order {
+
+    // Attributes
+    private final String type;
+    private final String symbol;
+    private final String name;
+    private final double price;
+    private final int quantity;
+
+    // The price in Money units, or 0 if it can't be held
+    private final long priceUnits;
+
+    // Whether the type is "Stock" or "Mutual Fund", ignoring case, worked out once
+    private final boolean stock;
+    private final boolean mutualFund;
+
+    private Order(String type, String symbol, String name, double price, int quantity) {
+        this.type = type;
+        this.symbol = symbol;
+        this.name = name;
+        this.price = price;
+        this.quantity = quantity;
+
+        long units;
+        try {
+            units = Money.of(price);
+        } catch (ArithmeticException e) {
+            units = 0;
+        }
+        this.priceUnits = units;
+        this.stock = type != null && type.equalsIgnoreCase("STOCK");
+        this.mutualFund = type != null && type.equalsIgnoreCase("MUTUAL FUND");
+    }
+
+    /**
+     * Creates an order to buy an investment.
+     *
+     * @param type     the type of investment, either "Stock" or "Mutual Fund"
+     * @param symbol   the symbol of the investment
+     * @param name     the name of the investment
+     * @param price    the price per unit
+     * @param quantity the quantity of units to buy
+     * @return the order
+     */
+    public static Order buy(String type, String symbol, String name, double price, int quantity) {
+        return new Order(type, symbol, name, price, quantity);
+    }
+
+    /**
+     * Creates an order to sell an investment.
+     *
+     * @param symbol   the symbol of the investment
+     * @param price    the price per unit
+     * @param quantity the quantity of units to sell
+     * @return the order
+     */
+    public static Order sell(String symbol, double price, int quantity) {
+        return new Order(null, symbol, null, price, quantity);
+    }
+
+    /**
+     * Checks the parts of a buy order that don't depend on the portfolio, in the same order as
+     * {@code Portfolio.buy}.
+     *
+     * @return the reason the order is invalid, or {@code null} if it passes
+     */
+    OrderStatus checkBuy() {
+        if (symbol == null || symbol.trim().isEmpty()) {
+            return OrderStatus.EMPTY_SYMBOL;
+        }
+        if (name == null || name.trim().isEmpty()) {
+            return OrderStatus.EMPTY_NAME;
+        }
+        if (quantity <= 0) {
+            return OrderStatus.INVALID_QUANTITY;
+        }
+        if (priceUnits <= 0) {
+            return OrderStatus.INVALID_PRICE;
+        }
+        return null;
+    }
+
+    /**
+     * Checks the parts of a sell order that don't depend on the portfolio, in the same order as
+     * {@code Portfolio.sell}.
+     *
+     * @return the reason the order is invalid, or {@code null} if it passes
+     */
+    OrderStatus checkSell() {
+        if (symbol == null || symbol.trim().isEmpty()) {
+            return OrderStatus.EMPTY_SYMBOL;
+        }
+        if (quantity <= 0) {
+            return OrderStatus.INVALID_QUANTITY;
+        }
+        if (priceUnits <= 0) {
+            return OrderStatus.INVALID_PRICE;
+        }
+        return null;
+    }
+
+    // Getters
+
+    /**
+     * Returns the type of investment to buy.
+     *
+     * @return "Stock" or "Mutual Fund", or {@code null} for a sell order
+     */
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * Returns the symbol of the investment.
+     *
+     * @return the symbol
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    /**
+     * Returns the name of the investment to buy.
+     *
+     * @return the name, or {@code null} for a sell order
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the price per unit.
+     *
+     * @return the price
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Returns the quantity of units to buy or sell.
+     *
+     * @return the quantity
+     */
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Returns whether the order is for a stock.
+     *
+     * @return {@code true} if the type is "Stock", ignoring case
+     */
+    boolean isStock() {
+        return stock;
+    }
+
+    /**
+     * Returns whether the order is for a mutual fund.
+     *
+     * @return {@code true} if the type is "Mutual Fund", ignoring case
+     */
+    boolean isMutualFund() {
+        return mutualFund;
+    }
+
+    /**
+     * Returns the price per unit in {@link Money} units.
+     *
+     * @return the price, or 0 if it is too large to hold
+     */
+    long getPriceUnits() {
+        return priceUnits;
+    }
+}
@@ -0,0 +1,69 @@
+package ePortfolio;
+
+/**
+ * The outcome of an order placed through {@code Portfolio.tryBuy}, {@code Portfolio.trySell},
+ * {@code Portfolio.buyAll} or {@code Portfolio.sellAll}. Every status other than {@link #FILLED}
+ * means the order was rejected and changed nothing.
+ * <p>
+ * Statuses are constants, so reporting one costs nothing. A message for the user is only put
+ * together when {@link #getMessage()} is called.
+ * </p>
+ */
+public enum OrderStatus {
+
+    /** The order was carried out. */
+    FILLED("The order was filled."),
+
+    /** The symbol was missing or blank. */
+    EMPTY_SYMBOL("Investment symbol cannot be empty."),
+
+    /** The name was missing or blank. */
+    EMPTY_NAME("Investment name cannot be empty."),
+
+    /** The quantity was zero or negative. */
+    INVALID_QUANTITY("Quantity must be greater than zero."),
+
+    /** The price was zero, negative, or too large to hold. */
+    INVALID_PRICE("Price must be greater than zero."),
+
+    /** The quantity owned after a purchase would be more than an investment can hold. */
+    QUANTITY_TOO_LARGE("Quantity is too large: the investment can't hold that many units."),
+
+    /**
+     * The payment for a sale, or the book value, market value or gain of the investment after
+     * the order, would be too large to hold.
+     */
+    AMOUNT_OUT_OF_RANGE("Amount out of range: the order or the investment's value would be too large to hold."),
+
+    /** The type of a new investment was neither "Stock" nor "Mutual Fund". */
+    INVALID_TYPE("Invalid investment type. Must be 'Stock' or 'Mutual Fund'."),
+
+    /** The type didn't match the type of the investment already held under the symbol. */
+    TYPE_MISMATCH("The type selected doesn't match the type of the existing investment."),
+
+    /** The name didn't match the name of the investment already held under the symbol. */
+    NAME_MISMATCH("The name doesn't match the name of the investment held under the symbol."),
+
+    /** No investment is held under the symbol. */
+    NOT_FOUND("Investment not found."),
+
+    /** More units were to be sold than are held. */
+    INSUFFICIENT_QUANTITY("Not enough quantity to sell.");
+
+    // Attributes
+    private final String message;
+
+    OrderStatus(String message) {
+        this.message = message;
+    }
+
+    /**
+     * Returns a message describing the status, suitable for showing to the user.
+     * {@code Portfolio.buy} and {@code Portfolio.sell} add details such as the symbol.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,199 @@
+package ePortfolio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Loads a text portfolio file by memory-mapping it and parsing it in parallel.
+ * <p>
+ * The file is cut into chunks at blank lines, which is where records end, so every chunk
+ * holds whole records. Each chunk is mapped with {@code FileChannel.map} and parsed by its own
+ * {@code PortfolioRecordParser} on the common fork-join pool, and the investments of each
+ * chunk are then appended in file order.
+ * </p>
+ */
+final class ParallelPortfolioLoader {
+
+    /** Files smaller than this are not worth splitting. */
+    private static final long MIN_CHUNK_SIZE = 1L << 20;
+
+    /** The largest chunk to aim for, well below the 2 GB limit of a single mapping. */
+    private static final long MAX_CHUNK_SIZE = 256L << 20;
+
+    /** The number of bytes read at a time while looking for a blank line. */
+    private static final int PROBE_SIZE = 64 * 1024;
+
+    private ParallelPortfolioLoader() {
+    }
+
+    /**
+     * Reads all the investments of a file.
+     *
+     * @param fileName the name of the file to read
+     * @return the investments, in the order they appear in the file
+     * @throws IOException if the file can't be read
+     */
+    static ArrayList<Investment> load(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<long[]> chunks = split(channel, size);
+
+            // Fall back to the sequential reader if the file couldn't be cut into mappable chunks
+            if (chunks == null) {
+                return readSequentially(fileName);
+            }
+
+            // Parse every chunk in parallel
+            List<ChunkTask> tasks = new ArrayList<>();
+            for (long[] chunk : chunks) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]);
+                tasks.add(new ChunkTask(buffer));
+            }
+            ForkJoinTask.invokeAll(tasks);
+
+            // Merge in file order
+            ArrayList<Investment> investments = new ArrayList<>();
+            for (ChunkTask task : tasks) {
+                investments.addAll(task.join());
+            }
+            return investments;
+        }
+    }
+
+    /**
+     * Cuts a file into chunks that each end just after a blank line, or at the end of the file.
+     *
+     * @param channel the channel of the file
+     * @param size    the size of the file
+     * @return the start and end offset of each chunk, or {@code null} if a chunk would be too
+     *         large to map
+     * @throws IOException if the file can't be read
+     */
+    private static List<long[]> split(FileChannel channel, long size) throws IOException {
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        long target = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (parallelism * 4L)));
+
+        List<long[]> chunks = new ArrayList<>();
+        long start = 0;
+        while (start < size) {
+            long end = start + target < size ? findRecordBoundary(channel, start + target, size) : size;
+            if (end - start > Integer.MAX_VALUE) {
+                return null;
+            }
+            chunks.add(new long[] {start, end});
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Finds the first blank line at or after an offset, which is where a record ends.
+     *
+     * @param channel the channel of the file
+     * @param from    the offset to start looking at
+     * @param size    the size of the file
+     * @return the offset just past the blank line, or the size of the file if there is none
+     * @throws IOException if the file can't be read
+     */
+    private static long findRecordBoundary(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long offset = from;
+        while (offset < size) {
+            probe.clear();
+            int read = channel.read(probe, offset);
+            if (read <= 0) {
+                break;
+            }
+
+            // A line feed followed by an empty line, either \n or \r\n. Leave two bytes of
+            // overlap between probes so a match split across them isn't missed.
+            for (int i = 0; i + 1 < read; i++) {
+                if (probe.get(i) != '\n') {
+                    continue;
+                }
+                if (probe.get(i + 1) == '\n') {
+                    return offset + i + 2;
+                }
+                if (probe.get(i + 1) == '\r' && i + 2 < read && probe.get(i + 2) == '\n') {
+                    return offset + i + 3;
+                }
+            }
+            offset += Math.max(1, read - 2);
+        }
+        return size;
+    }
+
+    /**
+     * Reads a file with the sequential scanner.
+     *
+     * @param fileName the name of the file to read
+     * @return the investments, in the order they appear in the file
+     * @throws IOException if the file can't be read
+     */
+    private static ArrayList<Investment> readSequentially(String fileName) throws IOException {
+        ArrayList<Investment> investments = new ArrayList<>();
+        try (PortfolioFileScanner scanner = new PortfolioFileScanner(fileName)) {
+            Investment investment;
+            while ((investment = scanner.next()) != null) {
+                investments.add(investment);
+            }
+        }
+        return investments;
+    }
+
+    /**
+     * Parses the records of one mapped chunk of the file.
+     */
+    private static final class ChunkTask extends RecursiveTask<List<Investment>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+
+        ChunkTask(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        protected List<Investment> compute() {
+            List<Investment> investments = new ArrayList<>();
+            PortfolioRecordParser parser = new PortfolioRecordParser();
+            int end = buffer.limit();
+            int position = 0;
+
+            while (position < end) {
+                // Find the end of the line
+                int lineEnd = position;
+                while (lineEnd < end && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r') {
+                    lineEnd++;
+                }
+
+                Investment investment = parser.parseLine(buffer, position, lineEnd);
+                if (investment != null) {
+                    investments.add(investment);
+                }
+
+                // Step over the line terminator, \n, \r\n or \r
+                position = lineEnd + 1;
+                if (lineEnd < end && buffer.get(lineEnd) == '\r' && position < end && buffer.get(position) == '\n') {
+                    position++;
+                }
+            }
+
+            Investment last = parser.finish();
+            if (last != null) {
+                investments.add(last);
+            }
+            return investments;
+        }
+    }
+}
@@ -3,24 +3,56 @@ package ePortfolio;
 import java.util.Scanner;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.InputMismatchException;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 /**
  * The {@code Portfolio} class manages a collection of investments, including stocks and mutual funds.
  * It provides methods to buy, sell, update investments, calculate total gains, and search for investments
  * based on criteria like symbol, keywords, and price range.
  */
-public class Portfolio {
+public class Portfolio implements PortfolioOperations {
     
     // Attributes
     private ArrayList<Investment> investments;
-    private HashMap<String, ArrayList<Integer>> nameIndex;
+    private HashMap<String, PostingBitmap> nameIndex;
+    private HashMap<String, Integer> symbolIndex;
+    private HashMap<String, ArrayDeque<Integer>> duplicateSymbols;
+    private TreeMap<Double, PostingBitmap> priceIndex;
+
+    // Index slots: every investment is given a slot number that stays the same for as
+    // long as it is held, so index entries don't shift when the investments list does.
+    private ArrayList<Investment> slots;
+    private ArrayDeque<Integer> freeSlots;
+
+    // The position of each slot's investment in the investments list, as a number that only
+    // grows as investments are added, since removals never reorder the ones that remain
+    private long[] slotOrder = new long[16];
+    private long nextOrder;
+
+    // Running totals over every held investment, in Money units. They are kept with plain
+    // long arithmetic, so a total that overflows on the way still comes back exact.
+    private long totalBookValue;
+    private long totalMarketValue;
+    private long totalGain;
+
+    // The snapshot being built by the current operation, and the last one published to readers
+    private PortfolioSnapshot workingSnapshot = PortfolioSnapshot.EMPTY;
+    private volatile PortfolioSnapshot snapshot = PortfolioSnapshot.EMPTY;
+
+    // Records every change made through buy, sell and updatePrice, if set
+    private PortfolioJournal journal;
 
     /**
      * Constructs a new, empty {@code Portfolio} object.
@@ -28,6 +60,11 @@ public class Portfolio {
     public Portfolio() {
         investments = new ArrayList<>();
         nameIndex = new HashMap<>(); 
+        symbolIndex = new HashMap<>();
+        duplicateSymbols = new HashMap<>();
+        priceIndex = new TreeMap<>();
+        slots = new ArrayList<>();
+        freeSlots = new ArrayDeque<>();
     }
 
     /**
@@ -41,66 +78,116 @@ public class Portfolio {
      * @param quantityPurchase the quantity of units to purchase
      * @return a message indicating the result of the purchase operation
      */
+    @Override
     public String buy(String type, String investmentSymbol, String name, double price, int quantityPurchase) {
-        try {
-            // Validate input
-            if (investmentSymbol == null || investmentSymbol.trim().isEmpty()) {
-                throw new IllegalArgumentException("Investment symbol cannot be empty.");
-            }
-            if (name == null || name.trim().isEmpty()) {
-                throw new IllegalArgumentException("Investment name cannot be empty.");
-            }
-            if (quantityPurchase <= 0) {
-                throw new IllegalArgumentException("Quantity must be greater than zero.");
-            }
-            if (price <= 0) {
-                throw new IllegalArgumentException("Price must be greater than zero.");
-            }
+        // Look up the investment first, since the message depends on whether it was already owned
+        Investment existingInvestment = isBlank(investmentSymbol) ? null : findInvestment(investmentSymbol);
 
-            Investment existingInvestment = null;
+        OrderStatus status = tryBuy(type, investmentSymbol, name, price, quantityPurchase);
+        switch (status) {
+            case FILLED:
+                if (existingInvestment != null) {
+                    return "Successfully purchased an additional " + quantityPurchase + " " + type + "s of " + name + " (" + investmentSymbol + ")";
+                }
+                return "Successfully purchased " + quantityPurchase + " " + type + "s of " + name;
+            case INVALID_PRICE:
+                return "Error: " + (!(price <= 0) && isOutOfRange(price) ? "Amount out of range: " + price : status.getMessage());
+            case NAME_MISMATCH:
+                return "Error: The name of the investment corresponding to the given symbol is " + existingInvestment.getName() + " not " + name + ". Please try again with the correct name.";
+            default:
+                return "Error: " + status.getMessage();
+        }
+    }
 
-            // If investment exists:
-            for (Investment i : investments) {
-                if (i.getSymbol().equalsIgnoreCase(investmentSymbol)) {
-                    existingInvestment = i;
+    /**
+     * Buys an investment like {@link #buy}, but reports the outcome as a status instead of a
+     * message. A rejected order throws no exception and builds no strings, so callers placing
+     * many orders only pay for a message when they ask {@link OrderStatus#getMessage()} for one.
+     *
+     * @param type             the type of investment, either "Stock" or "Mutual Fund"
+     * @param investmentSymbol the symbol representing the investment (e.g., AAPL)
+     * @param name             the name of the investment
+     * @param price            the price per unit at the time of purchase
+     * @param quantityPurchase the quantity of units to purchase
+     * @return {@link OrderStatus#FILLED}, or the reason the order was rejected
+     */
+    public OrderStatus tryBuy(String type, String investmentSymbol, String name, double price, int quantityPurchase) {
+        long start = PortfolioMetrics.start();
+        PortfolioEvents.Order event = new PortfolioEvents.Order();
+        event.begin();
+        OrderStatus status = placeBuy(type, investmentSymbol, name, price, quantityPurchase);
+        event.commitOrder("buy", investmentSymbol, quantityPurchase, price, status);
+        PortfolioMetrics.record(PortfolioMetrics.Operation.BUY, start, status != OrderStatus.FILLED);
+        return status;
+    }
 
-                    // Check if the type matches
-                    if ((type.equalsIgnoreCase("STOCK") && !(i instanceof Stock)) ||
-                        (type.equalsIgnoreCase("MUTUAL FUND") && !(i instanceof MutualFund))) {
-                        throw new IllegalArgumentException("The type selected doesn't match the type of the existing investment.");
-                    }
+    /**
+     * Checks and carries out a buy order for {@link #tryBuy}.
+     *
+     * @param type             the type of investment, either "Stock" or "Mutual Fund"
+     * @param investmentSymbol the symbol representing the investment (e.g., AAPL)
+     * @param name             the name of the investment
+     * @param price            the price per unit at the time of purchase
+     * @param quantityPurchase the quantity of units to purchase
+     * @return {@link OrderStatus#FILLED}, or the reason the order was rejected
+     */
+    private OrderStatus placeBuy(String type, String investmentSymbol, String name, double price, int quantityPurchase) {
+        // Validate input
+        if (isBlank(investmentSymbol)) {
+            return OrderStatus.EMPTY_SYMBOL;
+        }
+        if (isBlank(name)) {
+            return OrderStatus.EMPTY_NAME;
+        }
+        if (quantityPurchase <= 0) {
+            return OrderStatus.INVALID_QUANTITY;
+        }
+        if (price <= 0) {
+            return OrderStatus.INVALID_PRICE;
+        }
 
-                    // Check if the name matches
-                    if (!i.getName().equalsIgnoreCase(name)) {
-                        throw new IllegalArgumentException("The name of the investment corresponding to the given symbol is " + existingInvestment.getName() + " not " + name + ". Please try again with the correct name.");
-                    }
+        // If investment exists:
+        Investment investment = findInvestment(investmentSymbol);
+        if (investment != null) {
 
-                    // Add more quantity to the existing investment
-                    existingInvestment.buy(quantityPurchase, price);
-                    return "Successfully purchased an additional " + quantityPurchase + " " + type + "s of " + name + " (" + investmentSymbol + ")"; 
-                } 
+            // Check if the type and name match
+            if ((type.equalsIgnoreCase("STOCK") && !(investment instanceof Stock)) ||
+                (type.equalsIgnoreCase("MUTUAL FUND") && !(investment instanceof MutualFund))) {
+                return OrderStatus.TYPE_MISMATCH;
+            }
+            if (!investment.getName().equalsIgnoreCase(name)) {
+                return OrderStatus.NAME_MISMATCH;
             }
+        } else if (!type.equalsIgnoreCase("STOCK") && !type.equalsIgnoreCase("MUTUAL FUND")) {
+            return OrderStatus.INVALID_TYPE;
+        }
 
-            // If investment doesn't exist:
-            if (existingInvestment == null) {
-                Investment newInvestment;
+        // Prices that round to nothing or are too large are only caught once the investment is known
+        long priceUnits = priceUnits(price);
+        if (priceUnits <= 0) {
+            return OrderStatus.INVALID_PRICE;
+        }
+        OrderStatus overflow = checkPurchase(investment, type.equalsIgnoreCase("MUTUAL FUND"), quantityPurchase, priceUnits);
+        if (overflow != null) {
+            return overflow;
+        }
 
-                if (type.equalsIgnoreCase("STOCK")) {
-                    newInvestment = new Stock(investmentSymbol, name, quantityPurchase, price);
-                } else if (type.equalsIgnoreCase("MUTUAL FUND")) {
-                    newInvestment = new MutualFund(investmentSymbol, name, quantityPurchase, price);
-                } else {
-                    throw new IllegalArgumentException("Invalid investment type. Must be 'Stock' or 'Mutual Fund'.");
-                }
+        if (investment != null) {
+            // Add more quantity to the existing investment
+            investment.buyUnits(quantityPurchase, priceUnits);
+        } else {
+            // If investment doesn't exist:
+            investment = type.equalsIgnoreCase("STOCK")
+                    ? new Stock(investmentSymbol, name, quantityPurchase, price)
+                    : new MutualFund(investmentSymbol, name, quantityPurchase, price);
+            addInvestment(investment);
+        }
 
-                // Add investment to ArrayList
-                investments.add(newInvestment);
-                return "Successfully purchased " + quantityPurchase + " " + type + "s of " + newInvestment.getName();
-            }
-        } catch (IllegalArgumentException ex) {
-            return "Error: " + ex.getMessage();
+        publishSnapshot();
+        if (journal != null) {
+            journal.recordBuy(investment, price, quantityPurchase);
         }
-        return null;
+        return OrderStatus.FILLED;
     }
 
     /**
@@ -111,49 +198,321 @@ public class Portfolio {
      * @param quantityToSell the quantity of units to sell
      * @return a message indicating the result of the sale operation
      */
+    @Override
     public String sell(String symbol, double sellingPrice, int quantityToSell) {
+        // Look up the investment first, since it is gone after a complete sale
+        Investment investmentToSell = isBlank(symbol) ? null : findInvestment(symbol);
+
+        OrderStatus status = trySell(symbol, sellingPrice, quantityToSell);
+        switch (status) {
+            case FILLED:
+                long priceUnits = Money.of(sellingPrice);
+                String message2 = investmentToSell instanceof MutualFund
+                        ? MutualFund.saleMessage(quantityToSell, priceUnits)
+                        : Stock.saleMessage(quantityToSell, priceUnits);
+                return "Successfully sold " + quantityToSell + " of " + symbol + "." + "\n" + message2;
+            case INVALID_QUANTITY:
+                return "Error: Quantity to sell must be greater than zero.";
+            case INVALID_PRICE:
+                return "Error: Selling price must be greater than zero.";
+            case NOT_FOUND:
+                return "Error: Investment " + symbol + " not found.";
+            case INSUFFICIENT_QUANTITY:
+                return "Error: Error: Not enough quantity to sell. You currently have " + investmentToSell.getQuantity() + "/" + quantityToSell;
+            default:
+                return "Error: " + status.getMessage();
+        }
+    }
+
+    /**
+     * Sells an investment like {@link #sell}, but reports the outcome as a status instead of a
+     * message. A rejected order throws no exception and builds no strings.
+     *
+     * @param symbol         the symbol of the investment to be sold
+     * @param sellingPrice   the price per unit at the time of sale
+     * @param quantityToSell the quantity of units to sell
+     * @return {@link OrderStatus#FILLED}, or the reason the order was rejected
+     */
+    public OrderStatus trySell(String symbol, double sellingPrice, int quantityToSell) {
+        long start = PortfolioMetrics.start();
+        PortfolioEvents.Order event = new PortfolioEvents.Order();
+        event.begin();
+        OrderStatus status = placeSell(symbol, sellingPrice, quantityToSell);
+        event.commitOrder("sell", symbol, quantityToSell, sellingPrice, status);
+        PortfolioMetrics.record(PortfolioMetrics.Operation.SELL, start, status != OrderStatus.FILLED);
+        return status;
+    }
+
+    /**
+     * Checks and carries out a sell order for {@link #trySell}.
+     *
+     * @param symbol         the symbol of the investment to be sold
+     * @param sellingPrice   the price per unit at the time of sale
+     * @param quantityToSell the quantity of units to sell
+     * @return {@link OrderStatus#FILLED}, or the reason the order was rejected
+     */
+    private OrderStatus placeSell(String symbol, double sellingPrice, int quantityToSell) {
+        // Validate input
+        if (isBlank(symbol)) {
+            return OrderStatus.EMPTY_SYMBOL;
+        }
+        if (quantityToSell <= 0) {
+            return OrderStatus.INVALID_QUANTITY;
+        }
+        long priceUnits = priceUnits(sellingPrice);
+        if (priceUnits <= 0) {
+            return OrderStatus.INVALID_PRICE;
+        }
+
+        // Search if investment exists based on symbol
+        Integer slot = symbolIndex.get(symbolKey(symbol));
+        if (slot == null) {
+            return OrderStatus.NOT_FOUND;
+        }
+        Investment investmentToSell = slots.get(slot);
+
+        // If quantity to be sold exceeds the available quantity
+        int currentQuantity = investmentToSell.getQuantity();
+        if (currentQuantity < quantityToSell) {
+            return OrderStatus.INSUFFICIENT_QUANTITY;
+        }
+
+        // Handle sale of entire or partial investment, which changes nothing if it can't be valued
         try {
-            // Validate input
-            if (symbol == null || symbol.trim().isEmpty()) {
-                throw new IllegalArgumentException("Investment symbol cannot be empty.");
-            }
-            if (quantityToSell <= 0) {
-                throw new IllegalArgumentException("Quantity to sell must be greater than zero.");
-            }
-            if (sellingPrice <= 0) {
-                throw new IllegalArgumentException("Selling price must be greater than zero.");
-            }
+            investmentToSell.sellUnits(quantityToSell, priceUnits);
+        } catch (ArithmeticException e) {
+            return OrderStatus.AMOUNT_OUT_OF_RANGE;
+        }
+        if (quantityToSell == currentQuantity) {
+            removeInvestment(slot);
+        }
+        publishSnapshot();
+        if (journal != null) {
+            journal.recordSell(symbol, sellingPrice, quantityToSell);
+        }
+        return OrderStatus.FILLED;
+    }
 
-            Investment investmentToSell = null;
+    /**
+     * Updates the price per unit of an investment.
+     *
+     * @param symbol the symbol of the investment to update
+     * @param price  the new price per unit
+     * @throws IllegalArgumentException if the portfolio doesn't hold the investment or the price is non-positive
+     */
+    @Override
+    public void updatePrice(String symbol, double price) {
+        Investment investment = findInvestment(symbol);
+        if (investment == null) {
+            throw new IllegalArgumentException("Investment " + symbol + " not found.");
+        }
+        investment.setPrice(price);
+        publishSnapshot();
+        if (journal != null) {
+            journal.recordPrice(symbol, price);
+        }
+    }
+
+    /**
+     * Buys many investments at once. Each order is checked and carried out as {@code buy} would
+     * if the orders were placed one after another, but the orders are first grouped by symbol,
+     * so each investment is looked up once and its place in the price index, the totals and the
+     * snapshot are updated once per batch rather than once per order. No messages are built.
+     * Investments that are new to the portfolio are added in the order of their first order.
+     *
+     * @param orders the buy orders to place, in order
+     * @return the status of each order, at the same index as the order
+     */
+    public OrderStatus[] buyAll(List<Order> orders) {
+        return placeAll(orders, true);
+    }
 
-            // Search if investment exists based on symbol
-            for (Investment i : investments) {
-                if (symbol.equalsIgnoreCase(i.getSymbol())) {
-                    investmentToSell = i;
-                    break;
+    /**
+     * Sells many investments at once. Each order is checked and carried out as {@code sell}
+     * would if the orders were placed one after another, grouped by symbol as in
+     * {@link #buyAll(List)}. Investments sold completely are removed in one pass at the end.
+     *
+     * @param orders the sell orders to place, in order
+     * @return the status of each order, at the same index as the order
+     */
+    public OrderStatus[] sellAll(List<Order> orders) {
+        return placeAll(orders, false);
+    }
+
+    /**
+     * Places a batch of buy or sell orders.
+     *
+     * @param orders the orders to place
+     * @param buying {@code true} to buy, {@code false} to sell
+     * @return the status of each order
+     */
+    private OrderStatus[] placeAll(List<Order> orders, boolean buying) {
+        PortfolioEvents.OrderBatch event = new PortfolioEvents.OrderBatch();
+        event.begin();
+        OrderStatus[] statuses = new OrderStatus[orders.size()];
+
+        // Check each order on its own and group the rest by symbol, keeping their order. Each
+        // group is a linked list through next[], with its first and last order kept in the map.
+        LinkedHashMap<String, int[]> groups = new LinkedHashMap<>();
+        int[] next = new int[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            Order order = orders.get(i);
+            statuses[i] = buying ? order.checkBuy() : order.checkSell();
+            if (statuses[i] == null) {
+                next[i] = -1;
+                int[] group = groups.get(symbolKey(order.getSymbol()));
+                if (group == null) {
+                    groups.put(symbolKey(order.getSymbol()), new int[] {i, i});
+                } else {
+                    next[group[1]] = i;
+                    group[1] = i;
                 }
             }
+        }
 
-            // If investment doesn't exist
-            if (investmentToSell == null) {
-                throw new IllegalArgumentException("Investment " + symbol + " not found.");
+        // The journal must not be compacted before the snapshot includes the whole batch
+        PortfolioJournal batchJournal = journal;
+        if (batchJournal != null) {
+            batchJournal.beginBatch();
+        }
+        try {
+            Set<Investment> soldOut = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int[] group : groups.values()) {
+                placeGroup(orders, group[0], next, buying, statuses, soldOut);
             }
 
-            // If quantity to be sold exceeds the available quantity
-            int currentQuantity = investmentToSell.getQuantity();
-            if (currentQuantity < quantityToSell) {
-                throw new IllegalArgumentException("Error: Not enough quantity to sell. You currently have " + currentQuantity + "/" + quantityToSell);
+            // Take the investments sold completely out of the list in one pass
+            if (!soldOut.isEmpty()) {
+                investments.removeIf(soldOut::contains);
             }
+            publishSnapshot();
+        } finally {
+            if (batchJournal != null) {
+                batchJournal.endBatch();
+            }
+        }
+        event.end();
 
-            // Handle sale of entire or partial investment
-            String message2 = investmentToSell.sell(quantityToSell, sellingPrice);
-            if (quantityToSell == currentQuantity) {
-                investments.remove(investmentToSell);
+        boolean commitEvent = event.shouldCommit();
+        if (PortfolioMetrics.ENABLED || commitEvent) {
+            int rejected = 0;
+            for (OrderStatus status : statuses) {
+                if (status != OrderStatus.FILLED) {
+                    rejected++;
+                }
+            }
+            PortfolioMetrics.count(buying ? PortfolioMetrics.Operation.BUY : PortfolioMetrics.Operation.SELL, statuses.length, rejected);
+            if (commitEvent) {
+                event.side = buying ? "buy" : "sell";
+                event.orders = statuses.length;
+                event.rejected = rejected;
+                event.commit();
             }
-            return "Successfully sold " + quantityToSell + " of " + symbol + "." + "\n" + message2;
+        }
+        return statuses;
+    }
 
-        } catch (IllegalArgumentException ex) {
-            return "Error: " + ex.getMessage();
+    /**
+     * Places the orders for one symbol, in order. The investment is detached from the price
+     * index and the totals while the orders change it, and attached again at the end.
+     *
+     * @param orders   all the orders of the batch
+     * @param first    the index of the first order for this symbol
+     * @param next     the index of the next order for the same symbol, or -1 after the last
+     * @param buying   {@code true} to buy, {@code false} to sell
+     * @param statuses the statuses to fill in
+     * @param soldOut  collects the investments sold completely
+     */
+    private void placeGroup(List<Order> orders, int first, int[] next, boolean buying,
+                            OrderStatus[] statuses, Set<Investment> soldOut) {
+        Integer heldSlot = symbolIndex.get(symbolKey(orders.get(first).getSymbol()));
+        int slot = heldSlot == null ? -1 : heldSlot;
+        Investment investment = heldSlot == null ? null : slots.get(slot);
+        if (investment != null) {
+            detachInvestment(slot, investment);
+        }
+
+        for (int i = first; i >= 0; i = next[i]) {
+            Order order = orders.get(i);
+            if (buying) {
+                if (investment == null) {
+                    // A new investment, indexed once the group is done
+                    if (!order.isStock() && !order.isMutualFund()) {
+                        statuses[i] = OrderStatus.INVALID_TYPE;
+                        continue;
+                    }
+                    OrderStatus overflow = checkPurchase(null, order.isMutualFund(), order.getQuantity(), order.getPriceUnits());
+                    if (overflow != null) {
+                        statuses[i] = overflow;
+                        continue;
+                    }
+                    investment = order.isStock()
+                            ? new Stock(order.getSymbol(), order.getName(), order.getQuantity(), order.getPrice())
+                            : new MutualFund(order.getSymbol(), order.getName(), order.getQuantity(), order.getPrice());
+                } else if ((order.isStock() && !(investment instanceof Stock)) ||
+                           (order.isMutualFund() && !(investment instanceof MutualFund))) {
+                    statuses[i] = OrderStatus.TYPE_MISMATCH;
+                    continue;
+                } else if (!investment.getName().equals(order.getName()) && !investment.getName().equalsIgnoreCase(order.getName())) {
+                    statuses[i] = OrderStatus.NAME_MISMATCH;
+                    continue;
+                } else {
+                    OrderStatus overflow = checkPurchase(investment, investment instanceof MutualFund,
+                            order.getQuantity(), order.getPriceUnits());
+                    if (overflow != null) {
+                        statuses[i] = overflow;
+                        continue;
+                    }
+                    investment.buyUnits(order.getQuantity(), order.getPriceUnits());
+                }
+                if (journal != null) {
+                    journal.recordBuy(investment, order.getPrice(), order.getQuantity());
+                }
+            } else {
+                if (investment == null) {
+                    statuses[i] = OrderStatus.NOT_FOUND;
+                    continue;
+                }
+                if (investment.getQuantity() < order.getQuantity()) {
+                    statuses[i] = OrderStatus.INSUFFICIENT_QUANTITY;
+                    continue;
+                }
+                try {
+                    investment.sellUnits(order.getQuantity(), order.getPriceUnits());
+                } catch (ArithmeticException e) {
+                    statuses[i] = OrderStatus.AMOUNT_OUT_OF_RANGE;
+                    continue;
+                }
+                if (journal != null) {
+                    journal.recordSell(order.getSymbol(), order.getPrice(), order.getQuantity());
+                }
+
+                // Sold completely: a later order for the symbol starts a new investment
+                if (investment.getQuantity() == 0) {
+                    if (slot >= 0) {
+                        unindexDetached(slot, investment);
+                        freeSlot(slot);
+                        soldOut.add(investment);
+                    }
+
+                    // Carry on with another investment holding the symbol in a different case, if any
+                    Integer remainingSlot = symbolIndex.get(symbolKey(order.getSymbol()));
+                    slot = remainingSlot == null ? -1 : remainingSlot;
+                    investment = remainingSlot == null ? null : slots.get(slot);
+                    if (investment != null) {
+                        detachInvestment(slot, investment);
+                    }
+                }
+            }
+            statuses[i] = OrderStatus.FILLED;
+        }
+
+        if (investment != null) {
+            if (slot >= 0) {
+                attachInvestment(slot, investment);
+            } else {
+                addInvestment(investment);
+            }
         }
     }
 
@@ -162,7 +521,9 @@ public class Portfolio {
      *
      * @return an {@code ArrayList} of {@code Double} representing the gain for each investment
      */ 
+    @Override
     public ArrayList<Double> getGain() {
+        long start = PortfolioMetrics.start();
         ArrayList<Double> individualGains = new ArrayList<>();
 
         // Calculate gain for all stocks
@@ -171,11 +532,70 @@ public class Portfolio {
             individualGains.add(i.getGain());
         }
 
+        PortfolioMetrics.record(PortfolioMetrics.Operation.GAIN, start, false);
         return individualGains;
     }
+
+    @Override
+    public double[] getGains() {
+        double[] gains = new double[investments.size()];
+        getGains(gains);
+        return gains;
+    }
+
+    @Override
+    public int getGains(double[] gains) {
+        long start = PortfolioMetrics.start();
+        if (gains.length < investments.size()) {
+            PortfolioMetrics.record(PortfolioMetrics.Operation.GAIN, start, true);
+            throw new IllegalArgumentException("The array holds " + gains.length + " gains but the portfolio has " + investments.size() + " investments.");
+        }
+        for (int i = 0; i < investments.size(); i++) {
+            gains[i] = investments.get(i).getGain();
+        }
+        PortfolioMetrics.record(PortfolioMetrics.Operation.GAIN, start, false);
+        return investments.size();
+    }
+
+    @Override
+    public double getTotalGain() {
+        return Money.toDouble(totalGain);
+    }
+
+    @Override
+    public double getTotalBookValue() {
+        return Money.toDouble(totalBookValue);
+    }
+
+    @Override
+    public double getTotalMarketValue() {
+        return Money.toDouble(totalMarketValue);
+    }
+
+    /**
+     * Values every investment from scratch, using every core for large portfolios. This is
+     * slower than reading the running totals, but recomputes each gain independently of them.
+     *
+     * @return the gain of each investment and the totals of the portfolio
+     */
+    public PortfolioValuation getValuation() {
+        return PortfolioValuation.of(investments);
+    }
+
+    @Override
+    public int size() {
+        return investments.size();
+    }
     
     /**
      * Searches for investments based on a symbol, keywords in the name, and a price range.
+     * <p>
+     * The search starts from whichever index narrows the candidates down the most: the symbol
+     * index when a symbol is given, otherwise the smaller of the rarest keyword's postings and
+     * the set of investments priced inside the range. The remaining criteria are then checked
+     * against those candidates only. Matches are returned in the order of the investments list,
+     * as a scan of the list would find them.
+     * </p>
      *
      * @param tickerSymbol the symbol of the investment to search for (optional)
      * @param keywords     the keywords in the investment name to search for (optional)
@@ -183,51 +603,178 @@ public class Portfolio {
      * @param highPrice    the maximum price range for search
      * @return an {@code ArrayList} of {@code String} representing matching investments, or {@code null} if no matches are found
      */
+    @Override
     public ArrayList<String> search(String tickerSymbol, String keywords, double lowPrice, double highPrice) {
-        updateKeywordIndex();
+        long start = PortfolioMetrics.start();
+        PortfolioEvents.Search event = new PortfolioEvents.Search();
+        event.begin();
+        ArrayList<String> resultList = searchIndexes(tickerSymbol, keywords, lowPrice, highPrice, event);
+        event.end();
+        if (event.shouldCommit()) {
+            event.results = resultList == null ? 0 : resultList.size();
+            event.commit();
+        }
+
+        // A search with an empty price range can never match, so it counts as an error
+        PortfolioMetrics.record(PortfolioMetrics.Operation.SEARCH, start, lowPrice > highPrice);
+        return resultList;
+    }
 
-        // Trim and split keywords
-        String[] nameKeywords = keywords.trim().split("\\s+");
-        Set<Integer> matchingIndexes = new HashSet<>();
+    /**
+     * Runs a search for {@link #search} against the indexes.
+     *
+     * @param tickerSymbol the symbol of the investment to search for (optional)
+     * @param keywords     the keywords in the investment name to search for (optional)
+     * @param lowPrice     the minimum price range for search
+     * @param highPrice    the maximum price range for search
+     * @param event        the flight recorder event to fill in with the number of keywords and candidates
+     * @return the matching investments, or {@code null} if no matches are found
+     */
+    private ArrayList<String> searchIndexes(String tickerSymbol, String keywords, double lowPrice, double highPrice,
+            PortfolioEvents.Search event) {
+        if (lowPrice > highPrice) {
+            return null;
+        }
 
-        // If keywords are provided, start filtering by the first keyword
+        // Look up the postings for each keyword, rarest first
+        ArrayList<PostingBitmap> keywordPostings = new ArrayList<>();
         if (!keywords.trim().isEmpty()) {
-            if (nameIndex.containsKey(nameKeywords[0].toLowerCase())) {
-                matchingIndexes.addAll(nameIndex.get(nameKeywords[0].toLowerCase()));
-
-                // For each subsequent keyword, perform an intersection with the matching indexes
-                for (int i = 1; i < nameKeywords.length; i++) {
-                    String keyword = nameKeywords[i].toLowerCase();
-                    if (nameIndex.containsKey(keyword)) {
-                        matchingIndexes.retainAll(nameIndex.get(keyword));
-                    } else {
-                        // If any keyword has no matches, return no results
-                        return null;
-                    }
+            String[] searched = nameKeywords(keywords.trim());
+            event.keywords = searched.length;
+            for (String keyword : searched) {
+                PostingBitmap postings = nameIndex.get(keyword);
+                if (postings == null) {
+                    // If any keyword has no matches, return no results
+                    return null;
                 }
-            } else {
-                // If the first keyword doesn't match anything, return no results
-                return null;
+                keywordPostings.add(postings);
             }
+            keywordPostings.sort((a, b) -> Integer.compare(a.cardinality(), b.cardinality()));
+        }
+        NavigableMap<Double, PostingBitmap> priceRange = priceIndex.subMap(lowPrice, true, highPrice, true);
+
+        // Pick the most selective starting point
+        PostingBitmap candidates;
+        boolean keywordsMatched = false;
+        if (!tickerSymbol.isEmpty()) {
+            candidates = new PostingBitmap();
+            String key = symbolKey(tickerSymbol);
+            Integer slot = symbolIndex.get(key);
+            if (slot != null) {
+                candidates.add(slot);
+                ArrayDeque<Integer> duplicates = duplicateSymbols.get(key);
+                if (duplicates != null) {
+                    duplicates.forEach(candidates::add);
+                }
+            }
+        } else if (!keywordPostings.isEmpty()
+                && keywordPostings.get(0).cardinality() <= countUpTo(priceRange, keywordPostings.get(0).cardinality())) {
+            // Intersect the postings of every keyword, starting from the rarest
+            candidates = keywordPostings.get(0);
+            for (int i = 1; i < keywordPostings.size() && !candidates.isEmpty(); i++) {
+                candidates = candidates.and(keywordPostings.get(i));
+            }
+            keywordsMatched = true;
         } else {
-            // If no keywords are provided, include all investments initially
-            for (int i = 0; i < investments.size(); i++) {
-                matchingIndexes.add(i);
+            candidates = new PostingBitmap();
+            for (PostingBitmap slotsAtPrice : priceRange.values()) {
+                slotsAtPrice.forEach(candidates::add);
             }
         }
 
-        // Now filter by symbol and price range
-        ArrayList<String> resultList = new ArrayList<>();
-        for (Integer index : matchingIndexes) {
-            Investment investment = investments.get(index);
-            if (matchesCriteria(investment, tickerSymbol, lowPrice, highPrice)) {
-                resultList.add(investment.toString());
+        event.candidates = candidates.cardinality();
+
+        // Now filter the candidates by the remaining criteria
+        boolean checkKeywords = !keywordsMatched;
+        int[] matches = candidates.toArray();
+        int count = 0;
+        for (int slot : matches) {
+            if ((!checkKeywords || containsAll(keywordPostings, slot)) && matchesCriteria(slots.get(slot), tickerSymbol, lowPrice, highPrice)) {
+                matches[count++] = slot;
             }
         }
+        if (count == 0) {
+            return null;
+        }
 
-        return resultList.isEmpty() ? null : resultList;
+        // Slots reused after a sale are out of list order, so put the matches back in it
+        if (!inListOrder(matches, count)) {
+            sortByListOrder(matches, count);
+        }
+        ArrayList<String> resultList = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            resultList.add(slots.get(matches[i]).toString());
+        }
+        return resultList;
     }
 
+    /**
+     * Checks whether slots are already in the order their investments appear in the list.
+     *
+     * @param matchingSlots the slots
+     * @param count         the number of slots at the start of the array to check
+     * @return {@code true} if each slot's investment comes after the one before it
+     */
+    private boolean inListOrder(int[] matchingSlots, int count) {
+        for (int i = 1; i < count; i++) {
+            if (slotOrder[matchingSlots[i - 1]] > slotOrder[matchingSlots[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts slots into the order their investments appear in the list.
+     *
+     * @param matchingSlots the slots
+     * @param count         the number of slots at the start of the array to sort
+     */
+    private void sortByListOrder(int[] matchingSlots, int count) {
+        Integer[] sorted = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            sorted[i] = matchingSlots[i];
+        }
+        Arrays.sort(sorted, (a, b) -> Long.compare(slotOrder[a], slotOrder[b]));
+        for (int i = 0; i < count; i++) {
+            matchingSlots[i] = sorted[i];
+        }
+    }
+
+    /**
+     * Counts the investments in a range of the price index, stopping once the count exceeds a limit.
+     * This is enough to compare the range against another candidate set without walking all of it.
+     *
+     * @param priceRange the range of the price index to count
+     * @param limit      the count after which to stop
+     * @return the number of investments in the range, or a number greater than {@code limit}
+     */
+    private static int countUpTo(NavigableMap<Double, PostingBitmap> priceRange, int limit) {
+        int count = 0;
+        for (PostingBitmap slotsAtPrice : priceRange.values()) {
+            count += slotsAtPrice.cardinality();
+            if (count > limit) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Checks whether a slot appears in every one of the given keyword postings.
+     *
+     * @param keywordPostings the postings of each keyword searched for
+     * @param slot            the index slot of the investment
+     * @return {@code true} if every keyword matches the investment
+     */
+    private static boolean containsAll(ArrayList<PostingBitmap> keywordPostings, int slot) {
+        for (PostingBitmap postings : keywordPostings) {
+            if (!postings.contains(slot)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     /**
      * Helper method to determine if an investment matches the specified search criteria.
@@ -247,46 +794,369 @@ public class Portfolio {
     }
 
     /**
-     * Updates the keyword index for investment names, mapping each unique keyword
-     * to the list of indexes where it appears within the portfolio. This facilitates
-     * faster searching by keywords.
+     * Rebuilds the symbol, keyword and price indexes from scratch. Every investment is given
+     * a new index slot, in portfolio order, and each unique keyword of its name is mapped
+     * to the slots of the investments whose names contain it.
+     * <p>
+     * {@code buy}, {@code sell} and {@code setInvestments} keep the indexes up to date as
+     * they go, so this is only needed if the list returned by {@link #getInvestments()}
+     * is modified directly.
+     * </p>
      */
     public void updateKeywordIndex() {
+        PortfolioEvents.IndexRebuild event = new PortfolioEvents.IndexRebuild();
+        event.begin();
 
-        nameIndex.clear(); // clear map and rebuild
+        // Stop listening to the investments that were indexed before
+        for (Investment investment : slots) {
+            if (investment != null) {
+                investment.setListener(null);
+            }
+        }
+
+        nameIndex.clear(); // clear maps and rebuild
+        symbolIndex.clear();
+        duplicateSymbols.clear();
+        priceIndex.clear();
+        slots.clear();
+        freeSlots.clear();
+        nextOrder = 0;
+        totalBookValue = 0;
+        totalMarketValue = 0;
+        totalGain = 0;
+        workingSnapshot = workingSnapshot.cleared();
 
         // Iterate through all investments
-        for (int i = 0; i < investments.size(); i++) {
-            
-            // Get their name and split it up into keywords
-            Investment investment = investments.get(i);
-            String name = investment.getName();
-            String[] keywords = name.split("\\s+");
-
-            // For each keyword
-            for (String keyword : keywords) {
-                keyword = keyword.toLowerCase(); // Normalize the keyword to lowercase
-                
-                // 1. Check if the keyword already exists in the map
-                if (nameIndex.containsKey(keyword)) {
-                    ArrayList<Integer> indexes = nameIndex.get(keyword);
-
-                    // If true check if the current index is already in the list
-                    // if it is, that would be an error
-                    if (!indexes.contains(i)) {
-                        indexes.add(i);
-                    }
-                } else {
-                    // If the keyword doesnt exist, create a new list and add the current index
-                    ArrayList<Integer> newIndexes = new ArrayList<>();
-                    newIndexes.add(i);
-                    nameIndex.put(keyword, newIndexes);
+        for (Investment investment : investments) {
+            int slot = slots.size();
+            slots.add(investment);
+            indexInvestment(slot, investment);
+        }
+        publishSnapshot();
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.investments = slots.size();
+            event.keywords = nameIndex.size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Adds a new investment to the portfolio and registers it in the symbol and keyword indexes.
+     *
+     * @param investment the investment to add
+     */
+    private void addInvestment(Investment investment) {
+        investments.add(investment);
+
+        // Reuse a slot freed by an earlier sale if there is one
+        int slot;
+        if (freeSlots.isEmpty()) {
+            slot = slots.size();
+            slots.add(investment);
+        } else {
+            slot = freeSlots.pop();
+            slots.set(slot, investment);
+        }
+        indexInvestment(slot, investment);
+    }
+
+    /**
+     * Removes the investment held in the given slot from the portfolio and from the indexes.
+     *
+     * @param slot the index slot of the investment to remove
+     */
+    private void removeInvestment(int slot) {
+        Investment investment = slots.get(slot);
+        investments.remove(investment);
+        unindexInvestment(slot, investment);
+        freeSlot(slot);
+    }
+
+    /**
+     * Empties a slot so a later purchase can reuse it.
+     *
+     * @param slot the index slot to free
+     */
+    private void freeSlot(int slot) {
+        slots.set(slot, null);
+        freeSlots.push(slot);
+    }
+
+    /**
+     * Adds an investment's symbol, name keywords and price to the indexes and its values to the
+     * totals, and starts listening for changes. If the symbol is already indexed, the first occurrence is kept,
+     * matching the order a linear scan would find them in, and this one waits in
+     * {@code duplicateSymbols} to take over when the first is removed.
+     *
+     * @param slot       the index slot of the investment
+     * @param investment the investment to index
+     */
+    private void indexInvestment(int slot, Investment investment) {
+        if (slot >= slotOrder.length) {
+            slotOrder = Arrays.copyOf(slotOrder, Math.max(slot + 1, slotOrder.length * 2));
+        }
+        slotOrder[slot] = nextOrder++;
+        String key = investment.getInstrument().getSymbolKey();
+        if (symbolIndex.putIfAbsent(key, slot) != null) {
+            duplicateSymbols.computeIfAbsent(key, k -> new ArrayDeque<>()).add(slot);
+        }
+
+        for (String keyword : investment.getInstrument().getKeywords()) {
+            nameIndex.computeIfAbsent(keyword, k -> new PostingBitmap()).add(slot);
+        }
+        attachInvestment(slot, investment);
+    }
+
+    /**
+     * Adds the parts of an investment that change as it is traded, its price and its values, to
+     * the price index, the totals and the snapshot, and starts listening for changes.
+     *
+     * @param slot       the index slot of the investment
+     * @param investment the investment to attach
+     */
+    private void attachInvestment(int slot, Investment investment) {
+        addToPriceIndex(slot, investment.getPrice());
+        addToTotals(investment, investment.getQuantity(), investment.getPriceUnits(), investment.getBookValueUnits(), 1);
+        workingSnapshot = workingSnapshot.with(slot, investment);
+        investment.setListener((changed, oldPrice, oldQuantity, oldBookValue) -> {
+            if (changed.getPriceUnits() != oldPrice) {
+                removeFromPriceIndex(slot, Money.toDouble(oldPrice));
+                addToPriceIndex(slot, changed.getPrice());
+            }
+            addToTotals(changed, oldQuantity, oldPrice, oldBookValue, -1);
+            addToTotals(changed, changed.getQuantity(), changed.getPriceUnits(), changed.getBookValueUnits(), 1);
+            workingSnapshot = workingSnapshot.with(slot, changed);
+        });
+    }
+
+    /**
+     * Stops listening to an investment and takes its price and values out of the price index and
+     * the totals, so it can be changed many times and attached again once.
+     *
+     * @param slot       the index slot of the investment
+     * @param investment the investment to detach
+     */
+    private void detachInvestment(int slot, Investment investment) {
+        investment.setListener(null);
+        removeFromPriceIndex(slot, investment.getPrice());
+        addToTotals(investment, investment.getQuantity(), investment.getPriceUnits(), investment.getBookValueUnits(), -1);
+    }
+
+    /**
+     * Removes an investment's symbol and name keywords from the indexes, and its values from
+     * the totals.
+     *
+     * @param slot       the index slot of the investment
+     * @param investment the investment to remove from the indexes
+     */
+    private void unindexInvestment(int slot, Investment investment) {
+        detachInvestment(slot, investment);
+        unindexDetached(slot, investment);
+    }
+
+    /**
+     * Removes a detached investment's symbol and name keywords from the indexes, and the
+     * investment from the snapshot.
+     *
+     * @param slot       the index slot of the investment
+     * @param investment the investment to remove from the indexes
+     */
+    private void unindexDetached(int slot, Investment investment) {
+        unindexSymbol(slot, investment.getInstrument().getSymbolKey());
+        workingSnapshot = workingSnapshot.without(slot);
+
+        for (String keyword : investment.getInstrument().getKeywords()) {
+            PostingBitmap slotsForKeyword = nameIndex.get(keyword);
+            if (slotsForKeyword != null) {
+                slotsForKeyword.remove(slot);
+
+                // Drop keywords no investment uses any more
+                if (slotsForKeyword.isEmpty()) {
+                    nameIndex.remove(keyword);
                 }
+            }
+        }
+    }
 
+    /**
+     * Makes the snapshot built up by the current operation visible to {@link #getSnapshot()}.
+     * Publishing once per operation, rather than on every change to an investment, means readers
+     * never see an operation half done, such as a stock bought without its commission.
+     */
+    private void publishSnapshot() {
+        snapshot = workingSnapshot;
+    }
+
+    /**
+     * Checks that a purchase leaves a position whose quantity, book value and gain can all be
+     * held, so that an order is rejected up front rather than failing halfway through changing
+     * an investment.
+     *
+     * @param investment the investment bought more of, or {@code null} for a new investment
+     * @param mutualFund {@code true} if the investment is a mutual fund, {@code false} for a stock
+     * @param quantity   the quantity to buy, which must be positive
+     * @param priceUnits the price per unit, in {@link Money} units, which must be positive
+     * @return {@link OrderStatus#QUANTITY_TOO_LARGE} if the quantity owned would overflow,
+     *         {@link OrderStatus#AMOUNT_OUT_OF_RANGE} if the book value or gain would, or
+     *         {@code null} if the purchase fits
+     */
+    private static OrderStatus checkPurchase(Investment investment, boolean mutualFund, int quantity, long priceUnits) {
+        int held = investment == null ? 0 : investment.getQuantity();
+        if (quantity > Integer.MAX_VALUE - held) {
+            return OrderStatus.QUANTITY_TOO_LARGE;
+        }
+        try {
+            long bookValue = investment != null
+                    ? investment.bookValueAfterBuying(quantity, priceUnits)
+                    : Money.add(Money.times(priceUnits, quantity), mutualFund ? 0 : Stock.COMISSION_UNITS);
+            if (mutualFund) {
+                MutualFund.gainUnits(held + quantity, priceUnits, bookValue);
+            } else {
+                Stock.gainUnits(held + quantity, priceUnits, bookValue);
             }
+        } catch (ArithmeticException e) {
+            return OrderStatus.AMOUNT_OUT_OF_RANGE;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the book value, market value and gain of an investment in the given state to the
+     * totals, or takes them away.
+     *
+     * @param investment the investment, which decides how the gain is calculated
+     * @param quantity   the quantity owned
+     * @param price      the price per unit, in {@link Money} units
+     * @param bookValue  the book value, in {@link Money} units
+     * @param sign       1 to add the values, -1 to take them away
+     */
+    private void addToTotals(Investment investment, int quantity, long price, long bookValue, int sign) {
+        long gain = investment instanceof MutualFund
+                ? MutualFund.gainUnits(quantity, price, bookValue)
+                : Stock.gainUnits(quantity, price, bookValue);
+        totalBookValue += sign * bookValue;
+        totalMarketValue += sign * price * quantity;
+        totalGain += sign * gain;
+    }
+
+    /**
+     * Adds a slot to the price index under the given price.
+     *
+     * @param slot  the index slot of the investment
+     * @param price the price per unit of the investment
+     */
+    private void addToPriceIndex(int slot, double price) {
+        priceIndex.computeIfAbsent(price, p -> new PostingBitmap()).add(slot);
+    }
+
+    /**
+     * Removes a slot from the price index entry for the given price.
+     *
+     * @param slot  the index slot of the investment
+     * @param price the price the investment was indexed under
+     */
+    private void removeFromPriceIndex(int slot, double price) {
+        PostingBitmap slotsAtPrice = priceIndex.get(price);
+        if (slotsAtPrice != null) {
+            slotsAtPrice.remove(slot);
+            if (slotsAtPrice.isEmpty()) {
+                priceIndex.remove(price);
+            }
+        }
+    }
+
+    /**
+     * Removes an investment's symbol from the symbol index. If another investment holds the same
+     * symbol in a different case, the symbol is pointed at the next of them instead.
+     *
+     * @param slot the index slot of the investment
+     * @param key  the symbol key of the investment
+     */
+    private void unindexSymbol(int slot, String key) {
+        ArrayDeque<Integer> duplicates = duplicateSymbols.get(key);
+        if (duplicates == null) {
+            symbolIndex.remove(key, slot);
+            return;
+        }
+
+        if (symbolIndex.get(key) == slot) {
+            symbolIndex.put(key, duplicates.poll());
+        } else {
+            duplicates.remove(slot);
+        }
+        if (duplicates.isEmpty()) {
+            duplicateSymbols.remove(key);
         }
     }
 
+    /**
+     * Looks up an investment by symbol, ignoring case.
+     *
+     * @param symbol the symbol of the investment
+     * @return the investment, or {@code null} if the portfolio doesn't hold it
+     */
+    private Investment findInvestment(String symbol) {
+        Integer slot = symbolIndex.get(symbolKey(symbol));
+        return slot == null ? null : slots.get(slot);
+    }
+
+    /**
+     * Splits an investment name into the lowercase keywords used by the keyword index.
+     *
+     * @param name the investment name
+     * @return the keywords of the name
+     */
+    static String[] nameKeywords(String name) {
+        String[] keywords = name.split("\\s+");
+        for (int i = 0; i < keywords.length; i++) {
+            keywords[i] = keywords[i].toLowerCase(); // Normalize the keyword to lowercase
+        }
+        return keywords;
+    }
+
+    /**
+     * Checks whether a symbol or name is missing or blank.
+     *
+     * @param text the text to check
+     * @return {@code true} if the text is {@code null} or only whitespace
+     */
+    private static boolean isBlank(String text) {
+        return text == null || text.trim().isEmpty();
+    }
+
+    /**
+     * Converts a price to {@link Money} units without throwing.
+     *
+     * @param price the price in dollars
+     * @return the price in units, or 0 if it is too large to hold or isn't a number
+     */
+    private static long priceUnits(double price) {
+        return isOutOfRange(price) ? 0 : Money.of(price);
+    }
+
+    /**
+     * Checks whether an amount is too large to hold in {@link Money} units, or isn't a number.
+     *
+     * @param amount the amount in dollars
+     * @return {@code true} if {@code Money.of} would reject it
+     */
+    private static boolean isOutOfRange(double amount) {
+        return !(Math.abs(Math.rint(amount * Money.ONE)) < 0x1p63);
+    }
+
+    /**
+     * Normalizes a symbol into the key used by the symbol index, so that lookups
+     * are case-insensitive.
+     *
+     * @param symbol the investment symbol
+     * @return the lowercase form of the symbol
+     */
+    private static String symbolKey(String symbol) {
+        return symbol.toLowerCase();
+    }
+
     // Getters
 
     /**
@@ -298,8 +1168,31 @@ public class Portfolio {
         return this.investments;
     }
 
+    /**
+     * Returns an immutable view of the portfolio as it was after the last completed operation.
+     * This takes constant time and can be called from any thread, and the view can be read for
+     * as long as needed without holding up changes to the portfolio. Changes made directly to
+     * the investments returned by {@link #getInvestments()} show up in the next snapshot
+     * published by {@code buy}, {@code sell}, {@code updatePrice} or {@code setInvestments}.
+     *
+     * @return the latest snapshot
+     */
+    public PortfolioSnapshot getSnapshot() {
+        return snapshot;
+    }
+
     // Setters
 
+    /**
+     * Sets the journal that changes made through {@code buy}, {@code sell} and
+     * {@code updatePrice} are recorded in.
+     *
+     * @param journal the journal, or {@code null} to stop recording changes
+     */
+    void setJournal(PortfolioJournal journal) {
+        this.journal = journal;
+    }
+
     /**
      * Sets the list of investments in the portfolio.
      *
@@ -307,6 +1200,7 @@ public class Portfolio {
      */
     public void setInvestments(ArrayList<Investment> investments) {
         this.investments = investments;
+        updateKeywordIndex();
     }
 }
 
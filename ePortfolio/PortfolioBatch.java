@@ -0,0 +1,388 @@
+package ePortfolio;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Locale;
+
+/**
+ * Runs a script of commands against a portfolio without the GUI, and writes the result of each
+ * command as a line of JSON, for bulk processing and benchmarks.
+ * <p>
+ * A script has one command per line. Words are separated by spaces, and a word holding spaces
+ * is put in double quotes. Blank lines and lines starting with {@code #} are skipped. The
+ * commands are:
+ * </p>
+ * <pre>
+ * buy stock|fund &lt;symbol&gt; &lt;name&gt; &lt;price&gt; &lt;quantity&gt;
+ * sell &lt;symbol&gt; &lt;price&gt; &lt;quantity&gt;
+ * update &lt;symbol&gt; &lt;price&gt;
+ * search [symbol=&lt;symbol&gt;] [keywords=&lt;keywords&gt;] [low=&lt;price&gt;] [high=&lt;price&gt;]
+ * gain
+ * save
+ * </pre>
+ * <p>
+ * For example, {@code buy stock AAPL "Apple Inc." 150.25 10}. Each result holds the line
+ * number of the command, the command, and a status: the {@code OrderStatus} of a buy or sell,
+ * {@code OK} for any other command that succeeded, or {@code ERROR} with a message if the
+ * command failed or couldn't be read. A command that fails never stops the script. Searches add the number of matches and the matches,
+ * and {@code gain} adds the number of investments and the total gain.
+ * </p>
+ * <p>
+ * Orders are placed with {@code tryBuy} and {@code trySell}, so rejected orders cost no
+ * exceptions or messages beyond the one written out.
+ * </p>
+ */
+public final class PortfolioBatch {
+
+    /**
+     * Receives the requests to save the portfolio made by the {@code save} command.
+     */
+    public interface Saver {
+
+        /**
+         * Saves the portfolio, now or in the background.
+         */
+        void requestSave();
+    }
+
+    // Attributes
+    private final Portfolio portfolio;
+    private final Saver saver;
+    private final StringBuilder result = new StringBuilder(256);
+    private long commands;
+    private long errors;
+
+    /**
+     * Constructs a {@code PortfolioBatch} that runs commands against a portfolio.
+     *
+     * @param portfolio the portfolio to run commands against
+     * @param saver     what the {@code save} command asks to save the portfolio, or {@code null}
+     *                  to reject the command
+     */
+    public PortfolioBatch(Portfolio portfolio, Saver saver) {
+        this.portfolio = portfolio;
+        this.saver = saver;
+    }
+
+    /**
+     * Runs every command of a script, writing each result as a line of JSON.
+     *
+     * @param script the script to read commands from
+     * @param out    the writer to write results to
+     * @throws IOException if the script can't be read or the results can't be written
+     */
+    public void run(BufferedReader script, Writer out) throws IOException {
+        String line;
+        int lineNumber = 0;
+        while ((line = script.readLine()) != null) {
+            lineNumber++;
+            String command = line.trim();
+            if (command.isEmpty() || command.startsWith("#")) {
+                continue;
+            }
+            out.append(execute(lineNumber, command)).append('\n');
+        }
+        out.flush();
+    }
+
+    /**
+     * Runs one command.
+     *
+     * @param lineNumber the line number of the command in its script
+     * @param command    the command, without surrounding spaces
+     * @return the result as a line of JSON, without the line separator
+     */
+    public String execute(int lineNumber, String command) {
+        commands++;
+        result.setLength(0);
+        result.append("{\"line\":").append(lineNumber);
+
+        ArrayList<String> words;
+        try {
+            words = split(command);
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        }
+        String name = words.get(0).toLowerCase(Locale.ROOT);
+        result.append(",\"command\":");
+        appendString(name);
+
+        try {
+            switch (name) {
+                case "buy":
+                    expect(words, 6);
+                    return order(words.get(2), portfolio.tryBuy(investmentType(words.get(1)), words.get(2), words.get(3),
+                            parseNumber(words.get(4)), parseQuantity(words.get(5))));
+                case "sell":
+                    expect(words, 4);
+                    return order(words.get(1), portfolio.trySell(words.get(1), parseNumber(words.get(2)),
+                            parseQuantity(words.get(3))));
+                case "update":
+                    expect(words, 3);
+                    portfolio.updatePrice(words.get(1), parseNumber(words.get(2)));
+                    result.append(",\"symbol\":");
+                    appendString(words.get(1));
+                    return ok();
+                case "search":
+                    return search(words);
+                case "gain":
+                    expect(words, 1);
+                    result.append(",\"investments\":").append(portfolio.size())
+                            .append(",\"totalGain\":").append(portfolio.getTotalGain());
+                    return ok();
+                case "save":
+                    expect(words, 1);
+                    if (saver == null) {
+                        throw new IllegalArgumentException("This portfolio can't be saved.");
+                    }
+                    saver.requestSave();
+                    return ok();
+                default:
+                    throw new IllegalArgumentException("Unknown command: " + words.get(0));
+            }
+        } catch (IllegalArgumentException e) {
+            return error(e.getMessage());
+        } catch (RuntimeException e) {
+            // Any other failure is reported like a rejected command, so the rest of the script still runs
+            return error("Unexpected error: " + e);
+        }
+    }
+
+    /**
+     * Returns the number of commands run so far.
+     *
+     * @return the number of commands
+     */
+    public long getCommands() {
+        return commands;
+    }
+
+    /**
+     * Returns the number of commands run so far that were rejected or failed.
+     *
+     * @return the number of errors
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Finishes the result of a buy or sell order.
+     *
+     * @param symbol the symbol of the order
+     * @param status the outcome of the order
+     * @return the result
+     */
+    private String order(String symbol, OrderStatus status) {
+        result.append(",\"symbol\":");
+        appendString(symbol);
+        result.append(",\"status\":\"").append(status.name()).append('"');
+        if (status != OrderStatus.FILLED) {
+            errors++;
+            result.append(",\"message\":");
+            appendString(status.getMessage());
+        }
+        return result.append('}').toString();
+    }
+
+    /**
+     * Runs a search command and finishes its result.
+     *
+     * @param words the words of the command
+     * @return the result
+     */
+    private String search(ArrayList<String> words) {
+        String symbol = "";
+        String keywords = "";
+        double low = 0;
+        double high = Double.MAX_VALUE;
+        for (int i = 1; i < words.size(); i++) {
+            String word = words.get(i);
+            int equals = word.indexOf('=');
+            String key = equals < 0 ? "" : word.substring(0, equals).toLowerCase(Locale.ROOT);
+            String value = word.substring(equals + 1);
+            switch (key) {
+                case "symbol":
+                    symbol = value.trim();
+                    break;
+                case "keywords":
+                    keywords = value;
+                    break;
+                case "low":
+                    low = parseNumber(value);
+                    break;
+                case "high":
+                    high = parseNumber(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown search criterion: " + word);
+            }
+        }
+
+        ArrayList<String> matches = portfolio.search(symbol, keywords, low, high);
+        int count = matches == null ? 0 : matches.size();
+        result.append(",\"count\":").append(count).append(",\"matches\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                result.append(',');
+            }
+            appendString(matches.get(i));
+        }
+        result.append(']');
+        return ok();
+    }
+
+    /**
+     * Finishes the result of a command that succeeded.
+     *
+     * @return the result
+     */
+    private String ok() {
+        return result.append(",\"status\":\"OK\"}").toString();
+    }
+
+    /**
+     * Finishes the result of a command that failed.
+     *
+     * @param message what went wrong
+     * @return the result
+     */
+    private String error(String message) {
+        errors++;
+        result.append(",\"status\":\"ERROR\",\"message\":");
+        appendString(message);
+        return result.append('}').toString();
+    }
+
+    /**
+     * Checks that a command has the right number of words.
+     *
+     * @param words the words of the command, starting with its name
+     * @param count the number of words expected
+     * @throws IllegalArgumentException if the count is wrong
+     */
+    private static void expect(ArrayList<String> words, int count) {
+        if (words.size() != count) {
+            throw new IllegalArgumentException("Expected " + (count - 1) + " arguments to " + words.get(0)
+                    + " but found " + (words.size() - 1) + ".");
+        }
+    }
+
+    /**
+     * Turns the type word of a buy command into the type {@code Portfolio.tryBuy} expects.
+     *
+     * @param type {@code stock}, {@code fund}, or a type as the GUI gives it
+     * @return the type of investment
+     */
+    private static String investmentType(String type) {
+        if (type.equalsIgnoreCase("fund") || type.equalsIgnoreCase("mutualfund")) {
+            return "Mutual Fund";
+        }
+        return type;
+    }
+
+    /**
+     * Reads a number.
+     *
+     * @param word the number
+     * @return the number
+     * @throws IllegalArgumentException if the word is not a number
+     */
+    private static double parseNumber(String word) {
+        try {
+            return Double.parseDouble(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number: " + word);
+        }
+    }
+
+    /**
+     * Reads a quantity.
+     *
+     * @param word the quantity
+     * @return the quantity
+     * @throws IllegalArgumentException if the word is not a whole number
+     */
+    private static int parseQuantity(String word) {
+        try {
+            return Integer.parseInt(word);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid quantity: " + word);
+        }
+    }
+
+    /**
+     * Splits a command into words at spaces, keeping the text between double quotes together.
+     *
+     * @param command the command
+     * @return the words, of which there is at least one
+     * @throws IllegalArgumentException if a quote is not closed
+     */
+    static ArrayList<String> split(String command) {
+        ArrayList<String> words = new ArrayList<>();
+        StringBuilder word = new StringBuilder();
+        boolean inWord = false;
+        boolean quoted = false;
+        for (int i = 0; i < command.length(); i++) {
+            char c = command.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                inWord = true;
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (inWord) {
+                    words.add(word.toString());
+                    word.setLength(0);
+                    inWord = false;
+                }
+            } else {
+                word.append(c);
+                inWord = true;
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Missing closing quote.");
+        }
+        if (inWord) {
+            words.add(word.toString());
+        }
+        return words;
+    }
+
+    /**
+     * Appends a string to the result as a JSON string.
+     *
+     * @param text the string
+     */
+    private void appendString(String text) {
+        result.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        result.append('"');
+    }
+}
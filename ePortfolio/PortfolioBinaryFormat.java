@@ -0,0 +1,327 @@
+package ePortfolio;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes portfolio snapshots in a compact binary format.
+ * <p>
+ * A snapshot starts with the magic bytes {@code EPFB}, a version byte and the {@link Money}
+ * scale amounts are stored at. Next comes a string table holding each distinct symbol and name
+ * once, then the investments, and finally a CRC-32 of everything before it. Each investment is
+ * written as
+ * </p>
+ * <pre>
+ * type        1 byte, 0 for a stock and 1 for a mutual fund
+ * symbol      varint, index into the string table
+ * name        varint, index into the string table
+ * quantity    varint
+ * price       varint, in Money units
+ * bookValue   varint, in Money units
+ * </pre>
+ * Counts and string lengths are varints too, and strings are UTF-8. Prices and book values
+ * are stored as their exact units, so they never go through decimal text.
+ */
+final class PortfolioBinaryFormat {
+
+    /** The bytes every binary snapshot starts with. */
+    static final byte[] MAGIC = {'E', 'P', 'F', 'B'};
+
+    /** The version of the format written by this class. */
+    static final int VERSION = 2;
+
+    private static final int TYPE_STOCK = 0;
+    private static final int TYPE_MUTUAL_FUND = 1;
+
+    private PortfolioBinaryFormat() {
+    }
+
+    /**
+     * Checks whether a file is a binary snapshot by looking at its first bytes.
+     *
+     * @param fileName the name of the file to check
+     * @return {@code true} if the file starts with the snapshot magic bytes
+     * @throws IOException if the file exists but can't be read
+     */
+    static boolean isBinary(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is full or the file ends
+            }
+            return !header.hasRemaining() && header.flip().equals(ByteBuffer.wrap(MAGIC));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a list of investments to a file as a binary snapshot, replacing the file. The file
+     * is written in place; {@code PortfolioFileReader} writes snapshots to a temporary file and
+     * moves it over the portfolio file.
+     *
+     * @param fileName    the name of the file to write
+     * @param investments the investments to write
+     * @throws IOException if the file can't be written
+     */
+    static void write(String fileName, List<Investment> investments) throws IOException {
+        // Give each distinct symbol and name an index in the string table
+        HashMap<String, Integer> stringIds = new HashMap<>();
+        ArrayList<String> strings = new ArrayList<>();
+        int[] symbolIds = new int[investments.size()];
+        int[] nameIds = new int[investments.size()];
+        for (int i = 0; i < investments.size(); i++) {
+            Investment investment = investments.get(i);
+            symbolIds[i] = stringId(investment.getSymbol(), stringIds, strings);
+            nameIds[i] = stringId(investment.getName(), stringIds, strings);
+        }
+
+        try (OutputStream file = new FileOutputStream(fileName)) {
+            Writer out = new Writer(file);
+
+            out.writeBytes(MAGIC);
+            out.writeByte(VERSION);
+            out.writeByte(Money.SCALE);
+
+            out.writeVarint(strings.size());
+            for (String string : strings) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                out.writeVarint(bytes.length);
+                out.writeBytes(bytes);
+            }
+
+            out.writeVarint(investments.size());
+            for (int i = 0; i < investments.size(); i++) {
+                Investment investment = investments.get(i);
+                out.writeByte(investment instanceof MutualFund ? TYPE_MUTUAL_FUND : TYPE_STOCK);
+                out.writeVarint(symbolIds[i]);
+                out.writeVarint(nameIds[i]);
+                out.writeVarint(investment.getQuantity());
+                out.writeVarint(investment.getPriceUnits());
+                out.writeVarint(investment.getBookValueUnits());
+            }
+            out.finish();
+        }
+    }
+
+    /**
+     * Returns the string table index of a string, adding it to the table if it's new.
+     *
+     * @param string    the string to look up
+     * @param stringIds the index of each string already in the table
+     * @param strings   the string table
+     * @return the index of the string in the table
+     */
+    private static int stringId(String string, HashMap<String, Integer> stringIds, ArrayList<String> strings) {
+        Integer id = stringIds.get(string);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(string, id);
+            strings.add(string);
+        }
+        return id;
+    }
+
+    /**
+     * Reads a varint written as by {@code Writer.writeVarint}.
+     *
+     * @param buffer the buffer to read from, positioned at the varint
+     * @return the number read
+     * @throws IOException if the varint is longer than an {@code int}
+     */
+    static int readVarint(ByteBuffer buffer) throws IOException {
+        long value = readVarlong(buffer);
+        if (value != (int) value) {
+            throw new IOException("Malformed varint.");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a varint written as by {@code Writer.writeVarint} that can hold a {@code long}.
+     *
+     * @param buffer the buffer to read from, positioned at the varint
+     * @return the number read
+     * @throws IOException if the varint is longer than a {@code long}
+     */
+    static long readVarlong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint.");
+    }
+
+    /**
+     * Buffers the bytes of a snapshot and keeps a running checksum of them as the buffer is
+     * written out.
+     */
+    private static final class Writer {
+
+        private final OutputStream out;
+        private final CRC32 checksum = new CRC32();
+        private final byte[] buffer = new byte[64 * 1024];
+        private int position;
+
+        Writer(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeByte(int value) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            for (byte b : bytes) {
+                writeByte(b);
+            }
+        }
+
+        /**
+         * Writes a non-negative number as a varint: seven bits per byte, low bits first, with
+         * the top bit set on every byte except the last.
+         *
+         * @param value the number to write
+         * @throws IOException if the stream can't be written
+         */
+        void writeVarint(long value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                writeByte((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+        /**
+         * Writes out the buffered bytes followed by the checksum, which covers everything
+         * written before it but not itself.
+         *
+         * @throws IOException if the stream can't be written
+         */
+        void finish() throws IOException {
+            flush();
+            int value = (int) checksum.getValue();
+            out.write(new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+        }
+
+        private void flush() throws IOException {
+            checksum.update(buffer, 0, position);
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * Reads the investments of a binary snapshot one at a time. The file is memory-mapped and
+     * its checksum verified when it is opened; the investments themselves are decoded lazily.
+     */
+    static final class Reader implements InvestmentSource {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final int scale;
+        private final String[] strings;
+        private final int count;
+        private int read;
+
+        /**
+         * Opens a binary snapshot and reads its string table.
+         *
+         * @param fileName the name of the file to read
+         * @throws IOException if the file can't be read or isn't a valid snapshot
+         */
+        Reader(String fileName) throws IOException {
+            channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException("Snapshot " + fileName + " is too large to read.");
+                }
+                if (size < MAGIC.length + 1 + Integer.BYTES) {
+                    throw new IOException("Snapshot " + fileName + " is truncated.");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+                // Verify the checksum before trusting anything else in the file
+                int end = (int) size - Integer.BYTES;
+                CRC32 checksum = new CRC32();
+                checksum.update(buffer.duplicate().limit(end));
+                if ((int) checksum.getValue() != buffer.getInt(end)) {
+                    throw new IOException("Snapshot " + fileName + " is corrupt: checksum mismatch.");
+                }
+                buffer.limit(end);
+
+                buffer.position(MAGIC.length);
+                int version = buffer.get();
+                if (version != VERSION) {
+                    throw new IOException("Snapshot " + fileName + " has unsupported version " + version + ".");
+                }
+                scale = buffer.get();
+
+                strings = new String[readVarint(buffer)];
+                for (int i = 0; i < strings.length; i++) {
+                    byte[] bytes = new byte[readVarint(buffer)];
+                    buffer.get(bytes);
+                    strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                count = readVarint(buffer);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e instanceof IOException ? (IOException) e : new IOException("Snapshot " + fileName + " is corrupt.", e);
+            }
+        }
+
+        @Override
+        public Investment next() throws IOException {
+            if (read == count) {
+                return null;
+            }
+            read++;
+
+            try {
+                int type = buffer.get();
+                String symbol = strings[readVarint(buffer)];
+                String name = strings[readVarint(buffer)];
+                int quantity = readVarint(buffer);
+
+                // Amounts saved at another scale are rounded to the current one
+                long price = Money.rescale(readVarlong(buffer), scale);
+                long bookValue = Money.rescale(readVarlong(buffer), scale);
+                Investment investment;
+                if (type == TYPE_MUTUAL_FUND) {
+                    investment = new MutualFund(symbol, name, quantity, Money.toDouble(price), Money.toDouble(bookValue));
+                } else {
+                    investment = new Stock(symbol, name, quantity, Money.toDouble(price), Money.toDouble(bookValue));
+                }
+                investment.setUnits(price, bookValue);
+                return investment;
+            } catch (RuntimeException e) {
+                throw new IOException("Snapshot is corrupt.", e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ePortfolio;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The Java Flight Recorder events of {@code Portfolio} and {@code PortfolioFileReader}, so that
+ * a recording shows which orders, searches, index rebuilds and file transfers were running when
+ * the CPU, allocation, lock and GC events around them were recorded.
+ * <p>
+ * Every event is disabled unless the recording's settings enable it, as the
+ * {@code ePortfolio.jfc} settings file at the top of the repository does. The instrumented
+ * methods only fill in and commit an event when {@code shouldCommit()} says the recording wants
+ * it, so with no recording, or with the events disabled, they cost nothing beyond an event
+ * object the JIT compiler removes.
+ * </p>
+ */
+final class PortfolioEvents {
+
+    private PortfolioEvents() {
+    }
+
+    /**
+     * A buy or sell order, placed with {@code buy}, {@code sell}, {@code tryBuy} or
+     * {@code trySell}.
+     */
+    @Name("ePortfolio.Order")
+    @Label("Order")
+    @Category({"ePortfolio", "Orders"})
+    @Description("A buy or sell order placed on a portfolio")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Order extends Event {
+
+        @Label("Side")
+        @Description("buy or sell")
+        String side;
+
+        @Label("Symbol")
+        String symbol;
+
+        @Label("Quantity")
+        int quantity;
+
+        @Label("Price")
+        double price;
+
+        @Label("Outcome")
+        @Description("FILLED, or the reason the order was rejected")
+        String outcome;
+
+        /**
+         * Ends the event and commits it with the details of the order, if the recording wants it.
+         *
+         * @param side     {@code "buy"} or {@code "sell"}
+         * @param symbol   the symbol of the order
+         * @param quantity the quantity of the order
+         * @param price    the price of the order
+         * @param status   the outcome of the order
+         */
+        void commitOrder(String side, String symbol, int quantity, double price, OrderStatus status) {
+            end();
+            if (shouldCommit()) {
+                this.side = side;
+                this.symbol = symbol;
+                this.quantity = quantity;
+                this.price = price;
+                this.outcome = status.name();
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A batch of orders, placed with {@code buyAll} or {@code sellAll}.
+     */
+    @Name("ePortfolio.OrderBatch")
+    @Label("Order Batch")
+    @Category({"ePortfolio", "Orders"})
+    @Description("A batch of buy or sell orders placed on a portfolio")
+    @Enabled(false)
+    static final class OrderBatch extends Event {
+
+        @Label("Side")
+        @Description("buy or sell")
+        String side;
+
+        @Label("Orders")
+        int orders;
+
+        @Label("Rejected")
+        @Description("The number of orders that were not filled")
+        int rejected;
+    }
+
+    /**
+     * A search of a portfolio.
+     */
+    @Name("ePortfolio.Search")
+    @Label("Search")
+    @Category({"ePortfolio", "Search"})
+    @Description("A search of a portfolio by symbol, keywords and price range")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Search extends Event {
+
+        @Label("Keywords")
+        @Description("The number of keywords searched for")
+        int keywords;
+
+        @Label("Candidates")
+        @Description("The number of investments the indexes narrowed the search down to")
+        int candidates;
+
+        @Label("Results")
+        @Description("The number of investments that matched")
+        int results;
+    }
+
+    /**
+     * A rebuild of a portfolio's symbol, keyword and price indexes.
+     */
+    @Name("ePortfolio.IndexRebuild")
+    @Label("Index Rebuild")
+    @Category({"ePortfolio", "Search"})
+    @Description("A rebuild of the symbol, keyword and price indexes of a portfolio")
+    @Enabled(false)
+    static final class IndexRebuild extends Event {
+
+        @Label("Investments")
+        int investments;
+
+        @Label("Keywords")
+        @Description("The number of unique keywords indexed")
+        int keywords;
+    }
+
+    /**
+     * A portfolio file read or written.
+     */
+    @Name("ePortfolio.FileTransfer")
+    @Label("Portfolio File")
+    @Category({"ePortfolio", "Files"})
+    @Description("A portfolio file read or written")
+    @Enabled(false)
+    static final class FileTransfer extends Event {
+
+        @Label("Operation")
+        @Description("load or save")
+        String operation;
+
+        @Label("Path")
+        String path;
+
+        @Label("Records")
+        @Description("The number of investments read or written")
+        int records;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Label("Succeeded")
+        boolean succeeded;
+    }
+}
@@ -1,13 +1,16 @@
 package ePortfolio;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 
 /**
  * The {@code PortfolioFileReader} class provides file I/O operations for managing investment data.
@@ -15,10 +18,47 @@ import java.io.FileWriter;
  */
 public class PortfolioFileReader {
 
+    /**
+     * The ways a text portfolio file can be loaded.
+     */
+    public enum LoadMode {
+
+        /** Reads the file front to back on the calling thread. */
+        SEQUENTIAL,
+
+        /**
+         * Memory-maps the file, cuts it into chunks at blank lines and parses the chunks in
+         * parallel on the common fork-join pool, which makes loading large files scale with
+         * the number of cores. Since chunks are cut at blank lines, a record missing one of its
+         * fields is never completed by fields found after the next blank line, which the
+         * sequential reader allows; files written by this program are read identically.
+         */
+        PARALLEL_MAPPED
+    }
+
+    /**
+     * The formats a portfolio can be saved in. Files of either format are recognized
+     * automatically when they are read.
+     */
+    public enum FileFormat {
+
+        /** The readable {@code key = "value"} text format. */
+        TEXT,
+
+        /**
+         * A compact binary snapshot with a string table, exact binary prices and book values,
+         * and a checksum. It is several times smaller than the text format and much faster
+         * to read and write.
+         */
+        BINARY
+    }
+
     /**
      * Reads investments from a specified file. This method parses the file line by line,
      * creates {@code Stock} or {@code MutualFund} objects based on the parsed investment type,
-     * and populates an {@code ArrayList} with the investment objects.
+     * and populates an {@code ArrayList} with the investment objects. The file is parsed
+     * directly from its bytes by a {@code PortfolioRecordParser}, without building a
+     * {@code String} for every line.
      * <p>
      * The file should contain each investment's attributes (e.g., type, symbol, name, quantity, price, book value),
      * formatted as key-value pairs, separated by an equals sign.
@@ -40,107 +80,166 @@ public class PortfolioFileReader {
      * @return an {@code ArrayList} containing the investments read from the file
      */
     public static ArrayList<Investment> readInvestmentsFromFile(String fileName) {
+        return readInvestmentsFromFile(fileName, LoadMode.SEQUENTIAL);
+    }
+
+    /**
+     * Reads investments from a specified file using the given load mode. The file format and
+     * the handling of missing or unreadable files are the same as for
+     * {@link #readInvestmentsFromFile(String)}. Binary snapshots are recognized automatically
+     * and always read the same way, whatever the load mode.
+     *
+     * @param fileName the name of the file to read investments from
+     * @param mode     how to read the file
+     * @return an {@code ArrayList} containing the investments read from the file
+     */
+    public static ArrayList<Investment> readInvestmentsFromFile(String fileName, LoadMode mode) {
         ArrayList<Investment> investments = new ArrayList<>();
     
-        // open file
-        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) { 
-            String investType = null, investSymbol = null, investName = null;
-            int investQuantity = 0;
-            double investPrice = 0.0, investBookValue = 0.0;
-    
-            // for each line, take the input and split into two at the = sign
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (line.isEmpty()) {
-                    // Check if all fields are populated to create an investment object
-                    if (investType != null && investSymbol != null && investName != null && investQuantity > 0 &&
-                        investPrice > 0.0 && investBookValue >= 0.0) {
-                        Investment investment = null;
-                        if ("stock".equalsIgnoreCase(investType)) {
-                            investment = new Stock(investSymbol, investName, investQuantity, investPrice, investBookValue);
-                        } else if ("mutualfund".equalsIgnoreCase(investType)) {
-                            investment = new MutualFund(investSymbol, investName, investQuantity, investPrice, investBookValue);
-                        }
-    
-                        // Add investment to list and reset fields for the next investment
-                        if (investment != null) {
-                            investments.add(investment);
-                        }
-                            
-                        // Reset fields for the next investment
-                        investType = investSymbol = investName = null;
-                        investQuantity = 0;
-                        investPrice = investBookValue = 0.0;
-                    }
-                    continue;
-                }
-                String[] words = line.split("=", 2);
-    
-                if (words.length == 2) {
-    
-                    String key = words[0].trim().toLowerCase();
-                    String value = words[1].trim().replaceAll("[\"\"]", "");
-                    
-                    // create the investment based on the key
-                    switch (key) {
-                        case "type":
-                            investType = value;
-                            break;
-                        case "symbol":
-                            investSymbol = value;
-                            break;
-                        case "name":
-                            investName = value;
-                            break;
-                        case "quantity":
-                            try {
-                                investQuantity = Integer.parseInt(value);
-                            } catch (NumberFormatException e) {
-                                System.err.println("Invalid quantity format: " + value);
-                            }
-                            break;
-                        case "price":
-                            try {
-                                investPrice = Double.parseDouble(value);
-                            } catch (NumberFormatException e) {
-                                System.err.println("Invalid price format: " + value);
-                            }
-                            break;
-                        case "bookvalue":
-                            try {
-                                investBookValue = Double.parseDouble(value);
-                            } catch (NumberFormatException e) {
-                                System.err.println("Invalid book value format: " + value);
-                            }
-                            break;
-                    }
-                }
-            }
-    
-            // After the loop, check if any pending investment (in case there's no empty line at the end)
-            if (investType != null && investSymbol != null && investName != null && investQuantity > 0 &&
-                investPrice > 0.0 && investBookValue >= 0.0) {
-                System.out.println(investBookValue);
-                Investment investment = null;
-                if ("stock".equalsIgnoreCase(investType)) {
-                    investment = new Stock(investSymbol, investName, investQuantity, investPrice, investBookValue);
-                } else if ("mutualfund".equalsIgnoreCase(investType)) {
-                    investment = new MutualFund(investSymbol, investName, investQuantity, investPrice, investBookValue);
-                }
-    
-                // Add investment to list
-                if (investment != null) {
-                    investments.add(investment);
-                }
-            }
-        } catch (FileNotFoundException e) {
+        try {
+            investments = readInvestments(fileName, mode);
+        } catch (NoSuchFileException e) {
             System.err.println("File does not exist. It will be created upon saving.");
         } catch (IOException e) {
             System.out.println("An error occurred while reading the file");
         } 
         return investments;
     }     
+
+    /**
+     * Reads investments from a file using the given load mode, and leaves reporting any error
+     * to the caller. The investments of the file that hold the same instrument share one copy
+     * of it.
+     *
+     * @param fileName the name of the file to read investments from
+     * @param mode     how to read the file
+     * @return the investments in the file, in file order
+     * @throws NoSuchFileException if the file doesn't exist
+     * @throws IOException         if the file can't be read
+     */
+    static ArrayList<Investment> readInvestments(String fileName, LoadMode mode) throws IOException {
+        return readInvestments(fileName, mode, new InstrumentDictionary());
+    }
+
+    /**
+     * Reads investments from a file using the given load mode, moving them over to a
+     * dictionary's copies of their instruments, and leaves reporting any error to the caller.
+     *
+     * @param fileName    the name of the file to read investments from
+     * @param mode        how to read the file
+     * @param instruments the dictionary of the load session
+     * @return the investments in the file, in file order
+     * @throws NoSuchFileException if the file doesn't exist
+     * @throws IOException         if the file can't be read
+     */
+    static ArrayList<Investment> readInvestments(String fileName, LoadMode mode, InstrumentDictionary instruments)
+            throws IOException {
+        long start = PortfolioMetrics.start();
+        PortfolioEvents.FileTransfer event = new PortfolioEvents.FileTransfer();
+        event.begin();
+        try {
+            ArrayList<Investment> investments = loadInvestments(fileName, mode);
+            for (Investment investment : investments) {
+                investment.internInstrument(instruments);
+            }
+            event.end();
+            boolean commitEvent = event.shouldCommit();
+            if (PortfolioMetrics.ENABLED || commitEvent) {
+                long bytes = Files.size(Path.of(fileName));
+                PortfolioMetrics.countRead(bytes, investments.size());
+                if (commitEvent) {
+                    commitTransfer(event, "load", fileName, investments.size(), bytes, true);
+                }
+            }
+            PortfolioMetrics.record(PortfolioMetrics.Operation.LOAD, start, false);
+            return investments;
+        } catch (IOException e) {
+            // A missing file is a new portfolio, not a failed load
+            boolean failed = !(e instanceof NoSuchFileException);
+            event.end();
+            if (failed && event.shouldCommit()) {
+                commitTransfer(event, "load", fileName, 0, 0, false);
+            }
+            PortfolioMetrics.record(PortfolioMetrics.Operation.LOAD, start, failed);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads investments from a file for {@link #readInvestments}, with the reader that suits
+     * the load mode and the format of the file.
+     *
+     * @param fileName the name of the file to read investments from
+     * @param mode     how to read the file
+     * @return the investments in the file, in file order
+     * @throws IOException if the file doesn't exist or can't be read
+     */
+    private static ArrayList<Investment> loadInvestments(String fileName, LoadMode mode) throws IOException {
+        if (mode == LoadMode.PARALLEL_MAPPED && !PortfolioBinaryFormat.isBinary(fileName)) {
+            return ParallelPortfolioLoader.load(fileName);
+        }
+
+        // open file and parse it record by record
+        ArrayList<Investment> investments = new ArrayList<>();
+        try (InvestmentSource source = openSource(fileName)) { 
+            Investment investment;
+            while ((investment = source.next()) != null) {
+                investments.add(investment);
+            }
+        }
+        return investments;
+    }
     
+    /**
+     * Opens a file as a stream of investments, parsed one record at a time as the stream is
+     * consumed. Only the record being parsed is held in memory, so aggregates such as the total
+     * gain can be computed over files larger than the heap:
+     * <pre>
+     * try (Stream&lt;Investment&gt; investments = PortfolioFileReader.streamInvestmentsFromFile(fileName)) {
+     *     double totalGain = investments.mapToDouble(Investment::getGain).sum();
+     * }
+     * </pre>
+     * Both text files and binary snapshots can be streamed. The stream
+     * must be closed to release the file; an error while reading it is thrown as an
+     * {@code UncheckedIOException}.
+     *
+     * @param fileName the name of the file to read investments from
+     * @return a stream of the investments in the file, in file order
+     * @throws IOException if the file can't be opened
+     */
+    public static Stream<Investment> streamInvestmentsFromFile(String fileName) throws IOException {
+        return openSource(fileName).stream();
+    }
+
+    /**
+     * Detects the format of an existing portfolio file.
+     *
+     * @param fileName the name of the file
+     * @return the format of the file, or {@code TEXT} if it doesn't exist or can't be read
+     */
+    public static FileFormat detectFileFormat(String fileName) {
+        try {
+            return PortfolioBinaryFormat.isBinary(fileName) ? FileFormat.BINARY : FileFormat.TEXT;
+        } catch (IOException e) {
+            return FileFormat.TEXT;
+        }
+    }
+
+    /**
+     * Opens a portfolio file for reading one investment at a time, picking the reader that
+     * matches the format of the file.
+     *
+     * @param fileName the name of the file
+     * @return the opened file
+     * @throws IOException if the file can't be opened
+     */
+    private static InvestmentSource openSource(String fileName) throws IOException {
+        if (PortfolioBinaryFormat.isBinary(fileName)) {
+            return new PortfolioBinaryFormat.Reader(fileName);
+        }
+        return new PortfolioFileScanner(fileName);
+    }
+
     /**
      * Saves a list of investments to a specified file. Each investment is formatted for easy reading,
      * and the file is created if it does not exist.
@@ -153,30 +252,126 @@ public class PortfolioFileReader {
      * @param investments the {@code ArrayList} of investments to save
      */
     public static void saveInvestmentsToFile(String fileName, ArrayList<Investment> investments) {
-        File newFile = new File(fileName);
-        
+        saveInvestmentsToFile(fileName, investments, FileFormat.TEXT);
+    }
+
+    /**
+     * Saves a list of investments to a specified file in the given format, replacing the file.
+     * Either format can be read back with {@link #readInvestmentsFromFile(String)}.
+     *
+     * @param fileName    the name of the file to save investments to
+     * @param investments the {@code ArrayList} of investments to save
+     * @param format      the format to write the file in
+     */
+    public static void saveInvestmentsToFile(String fileName, ArrayList<Investment> investments, FileFormat format) {
         try {
-            // create new file if doesnt exist
-            if (!newFile.exists() && !newFile.createNewFile()) {
-                System.out.println("failed to create new file.");
-                return;
+            writeInvestments(fileName, investments, format);
+            System.out.println("Data saved successfully.");
+        } catch (IOException e) {
+            System.out.println(" an error occured while writing to file");
+        }
+    }
+
+    /**
+     * Writes a list of investments to a file in the given format, replacing the file, and
+     * leaves reporting any error to the caller.
+     *
+     * @param fileName    the name of the file to write
+     * @param investments the investments to write
+     * @param format      the format to write the file in
+     * @throws IOException if the file can't be written
+     */
+    static void writeInvestments(String fileName, List<Investment> investments, FileFormat format) throws IOException {
+        long start = PortfolioMetrics.start();
+        PortfolioEvents.FileTransfer event = new PortfolioEvents.FileTransfer();
+        event.begin();
+        try {
+            storeInvestments(fileName, investments, format);
+            event.end();
+            boolean commitEvent = event.shouldCommit();
+            if (PortfolioMetrics.ENABLED || commitEvent) {
+                long bytes = Files.size(Path.of(fileName));
+                PortfolioMetrics.countWritten(bytes, investments.size());
+                if (commitEvent) {
+                    commitTransfer(event, "save", fileName, investments.size(), bytes, true);
+                }
+            }
+            PortfolioMetrics.record(PortfolioMetrics.Operation.SAVE, start, false);
+        } catch (IOException e) {
+            event.end();
+            if (event.shouldCommit()) {
+                commitTransfer(event, "save", fileName, 0, 0, false);
             }
+            PortfolioMetrics.record(PortfolioMetrics.Operation.SAVE, start, true);
+            throw e;
+        }
+    }
 
-            // write to the file
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(newFile))) {
+    /**
+     * Fills in and commits the flight recorder event of a file read or written.
+     *
+     * @param event     the event, already ended
+     * @param operation {@code "load"} or {@code "save"}
+     * @param fileName  the name of the file
+     * @param records   the number of investments read or written
+     * @param bytes     the size of the file
+     * @param succeeded whether the file was read or written
+     */
+    private static void commitTransfer(PortfolioEvents.FileTransfer event, String operation, String fileName,
+            int records, long bytes, boolean succeeded) {
+        event.operation = operation;
+        event.path = Path.of(fileName).toAbsolutePath().toString();
+        event.records = records;
+        event.bytes = bytes;
+        event.succeeded = succeeded;
+        event.commit();
+    }
+
+    /**
+     * Writes a list of investments to a file for {@link #writeInvestments}. The investments are
+     * written next to the file and moved into place, so a failed write leaves the old file intact.
+     *
+     * @param fileName    the name of the file to write
+     * @param investments the investments to write
+     * @param format      the format to write the file in
+     * @throws IOException if the file can't be written
+     */
+    private static void storeInvestments(String fileName, List<Investment> investments, FileFormat format) throws IOException {
+        Path temp = Path.of(fileName + ".tmp");
+        try {
+            if (format == FileFormat.BINARY) {
+                PortfolioBinaryFormat.write(temp.toString(), investments);
+            } else {
+                // write to the file, creating it if it doesn't exist, in UTF-8 as the readers expect
+                try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
 
-                // for ea investment, add it to file
-                for (Investment i : investments) {
-                    writer.write(i.toFileFormat());
-                    writer.newLine();
+                    // for ea investment, add it to file
+                    for (Investment i : investments) {
+                        writer.write(i.toFileFormat());
+                        writer.newLine();
+                    }
                 }
-                
-                System.out.println("Data saved successfully.");
-            } catch (IOException e) {
-                System.out.println(" an error occured while writing to file");
             }
-        } catch (IOException e) {
-            System.out.println(" an error occured while creating the file");
+            replaceFile(temp, Path.of(fileName));
+        } finally {
+            // Left behind only if the write failed
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Moves a file over another one, atomically where the file system allows it, so the
+     * target is never left half written.
+     *
+     * @param source the file to move
+     * @param target the file to replace
+     * @throws IOException if the file can't be moved
+     */
+    static void replaceFile(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 }
@@ -0,0 +1,131 @@
+package ePortfolio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the investments of a text portfolio file one at a time. The file is read in blocks
+ * into a reusable buffer and split into lines in place, which are then handed to a
+ * {@code PortfolioRecordParser}. Lines may end in {@code \n}, {@code \r\n} or {@code \r},
+ * as with {@code BufferedReader.readLine}.
+ */
+final class PortfolioFileScanner implements InvestmentSource {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    // Attributes
+    private final FileChannel channel;
+    private final PortfolioRecordParser parser;
+    private ByteBuffer buffer;
+    private int position;
+    private boolean endOfFile;
+    private boolean finished;
+    private boolean skipLineFeed;
+
+    /**
+     * Opens a portfolio file for scanning.
+     *
+     * @param fileName the name of the file to read
+     * @throws IOException if the file can't be opened
+     */
+    PortfolioFileScanner(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ);
+        parser = new PortfolioRecordParser();
+        buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        buffer.limit(0);
+    }
+
+    /**
+     * Reads the next investment in the file.
+     *
+     * @return the next investment, or {@code null} once the end of the file is reached
+     * @throws IOException if the file can't be read
+     */
+    @Override
+    public Investment next() throws IOException {
+        while (!finished) {
+            int limit = buffer.limit();
+
+            // Skip the \n of a \r\n split across two blocks
+            if (skipLineFeed && position < limit) {
+                if (buffer.get(position) == '\n') {
+                    position++;
+                }
+                skipLineFeed = false;
+            }
+
+            // Find the end of the next line in the buffer
+            int lineEnd = position;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n' && buffer.get(lineEnd) != '\r') {
+                lineEnd++;
+            }
+
+            Investment investment;
+            if (lineEnd < limit) {
+                int lineStart = position;
+                position = lineEnd + 1;
+                if (buffer.get(lineEnd) == '\r') {
+                    skipLineFeed = true;
+                }
+                investment = parser.parseLine(buffer, lineStart, lineEnd);
+            } else if (!endOfFile) {
+                fill();
+                continue;
+            } else {
+                // Last line without a line terminator, then whatever record is still pending
+                investment = position < limit ? parser.parseLine(buffer, position, limit) : null;
+                position = limit;
+                if (investment == null) {
+                    investment = parser.finish();
+                    finished = true;
+                }
+            }
+
+            if (investment != null) {
+                return investment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves the unread part of the buffer to the front and reads the next block of the file
+     * after it, growing the buffer if a single line doesn't fit.
+     *
+     * @throws IOException if the file can't be read
+     */
+    private void fill() throws IOException {
+        int remaining = buffer.limit() - position;
+        if (remaining == buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+            larger.put(buffer.array(), position, remaining);
+            buffer = larger;
+        } else {
+            System.arraycopy(buffer.array(), position, buffer.array(), 0, remaining);
+            buffer.clear();
+            buffer.position(remaining);
+        }
+        position = 0;
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                endOfFile = true;
+                break;
+            }
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
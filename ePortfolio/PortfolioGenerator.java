@@ -0,0 +1,468 @@
+package ePortfolio;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Generates synthetic portfolios of any size, for load and scale testing.
+ * <p>
+ * Positions are written one at a time in the layout of {@link Investment#toFileFormat()}, so a
+ * file of a hundred million positions can be generated without holding any of them in memory,
+ * and read back with {@link PortfolioFileReader}. Every position has its own symbol. The mix
+ * of stocks and mutual funds, how skewed the words of the names are, and how prices are spread
+ * can all be set.
+ * </p>
+ * <p>
+ * Names are made of tokens drawn from a fixed vocabulary with a Zipf distribution: token
+ * {@code i} is picked with a weight of {@code 1 / (i + 1)^skew}. The most common tokens are
+ * ones like {@code Inc.}, {@code Fund} and {@code Class}, as in real instrument names, so with
+ * the default skew of 1 a few keywords appear in most names and most appear in very few. A skew
+ * of 0 makes every token equally likely.
+ * </p>
+ * <p>
+ * The output only depends on the seed and the settings: two generators created with the same
+ * seed and given the same settings and calls produce exactly the same positions.
+ * </p>
+ */
+public class PortfolioGenerator {
+
+    /**
+     * How prices are spread between the lowest and highest price.
+     */
+    public enum PriceDistribution {
+        /** Every price in the range is equally likely. */
+        UNIFORM,
+        /** Every order of magnitude in the range is equally likely, so cheap prices are common. */
+        LOG_UNIFORM,
+        /** Prices cluster around the geometric middle of the range, with a long tail both ways. */
+        LOG_NORMAL,
+        /** Most prices are near the lowest price, with a heavy tail of expensive ones. */
+        PARETO
+    }
+
+    private static final String[] COMMON_TOKENS = {
+        "Inc.", "Fund", "Class", "Corp.", "Trust", "Growth", "Income", "Holdings", "Index", "Global",
+        "Capital", "Group", "Equity", "Bond", "Ltd.", "International", "Value", "Energy", "Bank", "A",
+        "Select", "Financial", "Technologies", "Markets", "Dividend", "Series", "Portfolio", "Health", "B", "Partners"
+    };
+    private static final String[] SYLLABLES = {
+        "ka", "lo", "mi", "ne", "ru", "sa", "ti", "vo", "ba", "de", "fi", "go", "ha", "ju", "pe", "zo"
+    };
+
+    /** The Pareto index of the {@code PARETO} distribution, the 80/20 rule. */
+    private static final double PARETO_INDEX = 1.16;
+
+    // Attributes
+    private final SplittableRandom random;
+    private double stockFraction = 0.75;
+    private double nameSkew = 1;
+    private int vocabularySize = 5000;
+    private int minTokens = 2;
+    private int maxTokens = 4;
+    private PriceDistribution priceDistribution = PriceDistribution.LOG_UNIFORM;
+    private double lowPrice = 1;
+    private double highPrice = 1000;
+    private int maxQuantity = 1000;
+
+    // The vocabulary and the cumulative weight of each token, built on first use
+    private String[] vocabulary;
+    private double[] cumulativeWeights;
+
+    // The position being generated
+    private boolean stock;
+    private int quantity;
+    private long price;
+
+    /**
+     * Constructs a generator with the default settings: three stocks for every mutual fund,
+     * names of two to four tokens from a vocabulary of 5000 with a skew of 1, log-uniform prices
+     * from 1 to 1000, and quantities from 1 to 1000.
+     *
+     * @param seed the seed of the random numbers
+     */
+    public PortfolioGenerator(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    // Setters
+
+    /**
+     * Sets the share of positions that are stocks; the rest are mutual funds.
+     *
+     * @param stockFraction the share of stocks, from 0 to 1
+     * @throws IllegalArgumentException if the share is outside that range
+     */
+    public void setStockFraction(double stockFraction) {
+        if (!(stockFraction >= 0 && stockFraction <= 1)) {
+            throw new IllegalArgumentException("Stock fraction must be from 0 to 1.");
+        }
+        this.stockFraction = stockFraction;
+    }
+
+    /**
+     * Sets how skewed the choice of name tokens is.
+     *
+     * @param nameSkew the Zipf exponent, 0 for uniform
+     * @throws IllegalArgumentException if the exponent is negative
+     */
+    public void setNameSkew(double nameSkew) {
+        if (!(nameSkew >= 0)) {
+            throw new IllegalArgumentException("Name skew cannot be negative.");
+        }
+        this.nameSkew = nameSkew;
+        this.vocabulary = null;
+    }
+
+    /**
+     * Sets the number of distinct tokens names are made of.
+     *
+     * @param vocabularySize the number of tokens
+     * @throws IllegalArgumentException if the number is less than one
+     */
+    public void setVocabularySize(int vocabularySize) {
+        if (vocabularySize < 1) {
+            throw new IllegalArgumentException("Vocabulary size must be at least 1.");
+        }
+        this.vocabularySize = vocabularySize;
+        this.vocabulary = null;
+    }
+
+    /**
+     * Sets the number of tokens in each name.
+     *
+     * @param minTokens the fewest tokens in a name
+     * @param maxTokens the most tokens in a name
+     * @throws IllegalArgumentException if the minimum is less than one or more than the maximum
+     */
+    public void setTokensPerName(int minTokens, int maxTokens) {
+        if (minTokens < 1 || minTokens > maxTokens) {
+            throw new IllegalArgumentException("Tokens per name must be at least 1, and the minimum no more than the maximum.");
+        }
+        this.minTokens = minTokens;
+        this.maxTokens = maxTokens;
+    }
+
+    /**
+     * Sets how prices are drawn. Prices are rounded to the cent.
+     *
+     * @param priceDistribution how prices are spread
+     * @param lowPrice          the lowest price
+     * @param highPrice         the highest price
+     * @throws IllegalArgumentException if the lowest price is less than a cent or more than the highest
+     */
+    public void setPriceDistribution(PriceDistribution priceDistribution, double lowPrice, double highPrice) {
+        if (!(lowPrice >= 0.01 && lowPrice <= highPrice) || Double.isInfinite(highPrice)) {
+            throw new IllegalArgumentException("Prices must be at least 0.01, and the lowest no more than the highest.");
+        }
+        this.priceDistribution = priceDistribution;
+        this.lowPrice = lowPrice;
+        this.highPrice = highPrice;
+    }
+
+    /**
+     * Sets the largest quantity of a position. Quantities are drawn evenly from 1 to this.
+     *
+     * @param maxQuantity the largest quantity
+     * @throws IllegalArgumentException if the quantity is less than one
+     */
+    public void setMaxQuantity(int maxQuantity) {
+        if (maxQuantity < 1) {
+            throw new IllegalArgumentException("Quantity must be greater than zero.");
+        }
+        this.maxQuantity = maxQuantity;
+    }
+
+    // Generating
+
+    /**
+     * Writes a portfolio file with the given number of positions, replacing the file.
+     *
+     * @param fileName  the name of the file to write
+     * @param positions the number of positions
+     * @throws IOException if the file can't be written
+     */
+    public void write(String fileName, long positions) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(Paths.get(fileName)), StandardCharsets.UTF_8), 1 << 16)) {
+            write(writer, positions);
+        }
+    }
+
+    /**
+     * Writes positions to a writer, each followed by a blank line, as
+     * {@link PortfolioFileReader#saveInvestmentsToFile} does.
+     *
+     * @param writer    the writer to write to
+     * @param positions the number of positions
+     * @throws IOException if the writer fails
+     */
+    public void write(Writer writer, long positions) throws IOException {
+        StringBuilder record = new StringBuilder(256);
+        for (long i = 0; i < positions; i++) {
+            record.setLength(0);
+            nextPosition();
+            record.append(stock ? "type = \"stock\"\n" : "type = \"mutualfund\"\n")
+                  .append("symbol = \"").append(symbol(i)).append("\"\n")
+                  .append("name = \"");
+            appendName(record);
+            record.append("\"\nquantity = \"").append(quantity).append("\"\n")
+                  .append("price = \"").append(Money.toString(price)).append("\"\n")
+                  .append("bookValue = \"").append(Money.toString(bookValue())).append("\"\n")
+                  .append(System.lineSeparator());
+            writer.append(record);
+        }
+    }
+
+    /**
+     * Returns a stream of new investments, drawn the same way as the positions written to a
+     * file. The investments are created as the stream is read and nothing holds on to them, so
+     * streams of any length can be consumed in constant memory.
+     *
+     * @param positions the number of positions
+     * @return a sequential stream of investments
+     */
+    public Stream<Investment> investments(long positions) {
+        return LongStream.range(0, positions).mapToObj(i -> {
+            nextPosition();
+            StringBuilder name = new StringBuilder(32);
+            appendName(name);
+            Investment investment = stock
+                    ? new Stock(symbol(i), name.toString(), quantity, 0.01)
+                    : new MutualFund(symbol(i), name.toString(), quantity, 0.01);
+            investment.setUnits(price, bookValue());
+            return investment;
+        });
+    }
+
+    /**
+     * Draws a single token from the name vocabulary, such as a keyword to search for that is as
+     * common as the words in the generated names.
+     *
+     * @return the token
+     */
+    public String nextKeyword() {
+        return vocabulary()[nextTokenIndex()];
+    }
+
+    /**
+     * Draws a price from the price distribution.
+     *
+     * @return the price, rounded to the cent
+     */
+    public double nextPrice() {
+        return Money.toDouble(nextPriceUnits());
+    }
+
+    /**
+     * Returns the symbol of the position at the given index: {@code S} followed by the index in
+     * base 36.
+     *
+     * @param index the index of the position
+     * @return the symbol
+     */
+    public static String symbol(long index) {
+        return "S" + Long.toString(index, 36).toUpperCase();
+    }
+
+    /**
+     * Draws the type, quantity and price of the next position. Its name is drawn after them.
+     */
+    private void nextPosition() {
+        stock = random.nextDouble() < stockFraction;
+        quantity = 1 + random.nextInt(maxQuantity);
+        price = nextPriceUnits();
+    }
+
+    /**
+     * Calculates the book value of the current position, as if it had been bought in one
+     * purchase at its price.
+     *
+     * @return the book value, in {@link Money} units
+     */
+    private long bookValue() {
+        long cost = Money.times(price, quantity);
+        return stock ? Money.add(cost, Stock.COMISSION_UNITS) : cost;
+    }
+
+    /**
+     * Draws a name and appends it.
+     *
+     * @param text the text to append the name to
+     */
+    private void appendName(StringBuilder text) {
+        String[] words = vocabulary();
+        int tokens = minTokens + random.nextInt(maxTokens - minTokens + 1);
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(words[nextTokenIndex()]);
+        }
+    }
+
+    /**
+     * Draws the index of a token, by looking a random number up in the cumulative weights.
+     *
+     * @return the index of the token
+     */
+    private int nextTokenIndex() {
+        vocabulary();
+        int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, vocabularySize - 1);
+    }
+
+    /**
+     * Draws a price in {@link Money} units.
+     *
+     * @return the price, rounded to the cent and within the price range
+     */
+    private long nextPriceUnits() {
+        double u = random.nextDouble();
+        double drawn;
+        switch (priceDistribution) {
+            case UNIFORM:
+                drawn = lowPrice + u * (highPrice - lowPrice);
+                break;
+            case LOG_UNIFORM:
+                drawn = lowPrice * Math.exp(u * Math.log(highPrice / lowPrice));
+                break;
+            case LOG_NORMAL:
+                // The range spans six standard deviations either side of its geometric middle
+                double sigma = Math.log(highPrice / lowPrice) / 6;
+                drawn = Math.sqrt(lowPrice * highPrice) * Math.exp(sigma * nextGaussian());
+                break;
+            default:
+                drawn = lowPrice / Math.pow(1 - u, 1 / PARETO_INDEX);
+                break;
+        }
+        double cents = Math.round(Math.min(Math.max(drawn, lowPrice), highPrice) * 100);
+        return Money.of(Math.max(cents, 1) / 100);
+    }
+
+    /**
+     * Draws a number from the standard normal distribution, with the Box-Muller transform.
+     *
+     * @return the number
+     */
+    private double nextGaussian() {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    /**
+     * Returns the vocabulary, building it and the cumulative weights of its tokens if the
+     * settings have changed.
+     *
+     * @return the tokens, most common first
+     */
+    private String[] vocabulary() {
+        if (vocabulary == null) {
+            String[] words = new String[vocabularySize];
+            double[] weights = new double[vocabularySize];
+            double total = 0;
+            for (int i = 0; i < vocabularySize; i++) {
+                words[i] = i < COMMON_TOKENS.length ? COMMON_TOKENS[i] : word(i);
+                total += 1 / Math.pow(i + 1, nameSkew);
+                weights[i] = total;
+            }
+            for (int i = 0; i < vocabularySize; i++) {
+                weights[i] /= total;
+            }
+            cumulativeWeights = weights;
+            vocabulary = words;
+        }
+        return vocabulary;
+    }
+
+    /**
+     * Makes up a word for a token of the vocabulary, by writing its index in base 16 with a
+     * syllable for each digit. Different indexes give different words.
+     *
+     * @param index the index of the token
+     * @return the word, capitalized
+     */
+    private static String word(int index) {
+        StringBuilder word = new StringBuilder();
+        for (int n = index; n > 0; n /= SYLLABLES.length) {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+        }
+        word.setCharAt(0, Character.toUpperCase(word.charAt(0)));
+        return word.toString();
+    }
+
+    /**
+     * Writes a synthetic portfolio file from the command line.
+     * <p>
+     * Usage: {@code java ePortfolio.PortfolioGenerator <file> <positions> [--seed n]
+     * [--stocks fraction] [--skew exponent] [--vocabulary tokens] [--tokens min max]
+     * [--prices UNIFORM|LOG_UNIFORM|LOG_NORMAL|PARETO low high] [--max-quantity n]}
+     * </p>
+     *
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java ePortfolio.PortfolioGenerator <file> <positions> [--seed n] [--stocks fraction]"
+                    + " [--skew exponent] [--vocabulary tokens] [--tokens min max]"
+                    + " [--prices UNIFORM|LOG_UNIFORM|LOG_NORMAL|PARETO low high] [--max-quantity n]");
+            System.exit(2);
+        }
+        try {
+            long positions = Long.parseLong(args[1]);
+            long seed = 1;
+            for (int i = 2; i < args.length; i++) {
+                if (args[i].equals("--seed")) {
+                    seed = Long.parseLong(args[++i]);
+                }
+            }
+
+            PortfolioGenerator generator = new PortfolioGenerator(seed);
+            for (int i = 2; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--seed":
+                        i++;
+                        break;
+                    case "--stocks":
+                        generator.setStockFraction(Double.parseDouble(args[++i]));
+                        break;
+                    case "--skew":
+                        generator.setNameSkew(Double.parseDouble(args[++i]));
+                        break;
+                    case "--vocabulary":
+                        generator.setVocabularySize(Integer.parseInt(args[++i]));
+                        break;
+                    case "--tokens":
+                        generator.setTokensPerName(Integer.parseInt(args[++i]), Integer.parseInt(args[++i]));
+                        break;
+                    case "--prices":
+                        generator.setPriceDistribution(PriceDistribution.valueOf(args[++i].toUpperCase()),
+                                Double.parseDouble(args[++i]), Double.parseDouble(args[++i]));
+                        break;
+                    case "--max-quantity":
+                        generator.setMaxQuantity(Integer.parseInt(args[++i]));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+
+            long start = System.nanoTime();
+            generator.write(args[0], positions);
+            System.out.printf("Wrote %d positions to %s in %.1f s.%n", positions, args[0], (System.nanoTime() - start) / 1e9);
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println("Error: " + (e instanceof ArrayIndexOutOfBoundsException ? "Missing option value." : e.getMessage()));
+            System.exit(2);
+        } catch (IOException e) {
+            System.err.println("Error: Could not write " + args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
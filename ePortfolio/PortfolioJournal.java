@@ -0,0 +1,697 @@
+package ePortfolio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Keeps a portfolio file up to date by appending every change to a journal next to it, rather
+ * than rewriting the whole file each time the portfolio is saved.
+ * <p>
+ * The journal is kept in {@code <fileName>.journal}. It starts with a header identifying the
+ * snapshot it applies to, the portfolio file, by its size and CRC-32. After the header comes
+ * one record for every buy, sell and price update made through the portfolio since that
+ * snapshot was written. A record is written out as soon as its change is made, so saving takes
+ * time in proportion to the change, not to the size of the portfolio.
+ * </p>
+ * <p>
+ * Once the journal grows larger than the snapshot it is compacted: the portfolio is written to
+ * a new snapshot, in the format of the old one, and the journal starts over with only the
+ * changes made since. Compaction can be handed to a {@code PortfolioSaver}, which writes the
+ * snapshot on a background thread while changes keep being journaled. Opening a journal loads
+ * the snapshot and replays the journal on top of it. A journal written against a
+ * different snapshot is discarded, and a record cut short by a crash is dropped together with
+ * anything after it.
+ * </p>
+ * <p>
+ * Records reach the operating system as soon as they are written, so they survive the program
+ * crashing but are not forced to disk one by one.
+ * </p>
+ * <p>
+ * If a record can't be written, the journal is broken: it stops taking records, since replaying
+ * the ones after a gap would give the wrong portfolio, reports the error, and asks for a
+ * compaction. A compaction of a copy that holds every change made so far writes them all to the
+ * new snapshot and mends the journal; until then {@link #getFailure()} returns the error.
+ * </p>
+ */
+public final class PortfolioJournal implements Closeable {
+
+    /** The bytes every journal starts with. */
+    static final byte[] MAGIC = {'E', 'P', 'F', 'J'};
+
+    /** The version of the journal format written by this class. */
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = MAGIC.length + 1 + Long.BYTES + Integer.BYTES;
+
+    /** Each record starts with the length and the checksum of its contents. */
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    /** Journals smaller than this are never compacted, however small the snapshot. */
+    private static final long MIN_COMPACTION_SIZE = 1L << 20;
+
+    // Record types
+    private static final int BUY = 1;
+    private static final int SELL = 2;
+    private static final int PRICE = 3;
+
+    private static final int TYPE_STOCK = 0;
+    private static final int TYPE_MUTUAL_FUND = 1;
+
+    // Attributes
+    private final String fileName;
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path pendingJournalPath;
+    private final PortfolioFileReader.FileFormat format;
+    private final Portfolio portfolio;
+    private final Object compactionLock = new Object();
+    private FileChannel channel;
+    private ByteBuffer record;
+    private long snapshotSize;
+    private long journalSize;
+
+    // Every record has a position in the history of the journal, which keeps growing across
+    // compactions; this is the position of the first record in the current journal file.
+    private long firstPosition;
+
+    private boolean compactionRequested;
+    private boolean inBatch;
+    private Runnable compactor;
+
+    // The error that broke the journal, and the number of changes left out of it since; the
+    // changes still count towards the position, so a copy can be told to hold them or not
+    private IOException failure;
+    private long skipped;
+    private Consumer<IOException> failureListener;
+
+    private PortfolioJournal(String fileName, Portfolio portfolio) {
+        this.fileName = fileName;
+        this.portfolio = portfolio;
+        snapshotPath = Paths.get(fileName);
+        journalPath = Paths.get(fileName + ".journal");
+        pendingJournalPath = Paths.get(fileName + ".journal.tmp");
+        format = PortfolioFileReader.detectFileFormat(fileName);
+        record = ByteBuffer.allocate(256);
+    }
+
+    /**
+     * Loads a portfolio from its file and journal, and starts journaling the changes made to
+     * it. Any investments the portfolio already holds are replaced.
+     *
+     * @param fileName  the name of the portfolio file
+     * @param portfolio the portfolio to load into and journal
+     * @return the opened journal
+     * @throws IOException if the portfolio file or the journal can't be read or written
+     */
+    public static PortfolioJournal open(String fileName, Portfolio portfolio) throws IOException {
+        PortfolioJournal journal = new PortfolioJournal(fileName, portfolio);
+        Fingerprint snapshot = Fingerprint.of(journal.snapshotPath);
+
+        // Load the snapshot; a missing file is an empty portfolio that hasn't been saved yet
+        ArrayList<Investment> investments;
+        try {
+            investments = PortfolioFileReader.readInvestments(fileName, PortfolioFileReader.LoadMode.SEQUENTIAL);
+        } catch (NoSuchFileException e) {
+            investments = new ArrayList<>();
+        }
+        portfolio.setInvestments(investments);
+
+        journal.snapshotSize = Math.max(0, snapshot.size);
+        journal.recover(snapshot);
+        portfolio.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Finds the journal that belongs to the snapshot, replays it and opens it for appending.
+     * Compaction writes the next journal to a temporary file before it replaces the snapshot,
+     * so if the program stopped halfway through, the temporary journal is the one that matches.
+     *
+     * @param snapshot the fingerprint of the snapshot that was loaded
+     * @throws IOException if the journal can't be read or written
+     */
+    private void recover(Fingerprint snapshot) throws IOException {
+        if (snapshot.equals(readHeader(journalPath))) {
+            Files.deleteIfExists(pendingJournalPath);
+        } else if (snapshot.equals(readHeader(pendingJournalPath))) {
+            PortfolioFileReader.replaceFile(pendingJournalPath, journalPath);
+        } else {
+            if (Files.exists(journalPath)) {
+                System.err.println("The journal " + journalPath + " doesn't match " + fileName + " and was discarded.");
+            }
+            writeJournal(pendingJournalPath, snapshot, null, 0, 0);
+            PortfolioFileReader.replaceFile(pendingJournalPath, journalPath);
+        }
+
+        long end = replay();
+        channel = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        // Cut off a record left incomplete by a crash, so new records follow the last good one
+        channel.truncate(end);
+        channel.position(end);
+        journalSize = end;
+    }
+
+    /**
+     * Applies the records of the journal to the portfolio, stopping at the first one that is
+     * incomplete or doesn't match its checksum.
+     *
+     * @return the offset just past the last record applied
+     * @throws IOException if the journal can't be read
+     */
+    private long replay() throws IOException {
+        try (FileChannel in = FileChannel.open(journalPath, StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Journal " + journalPath + " is too large to read.");
+            }
+
+            // Read the journal into memory rather than mapping it, since it is truncated afterwards
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && in.read(buffer) >= 0) {
+                // keep reading until the whole journal is in the buffer
+            }
+            buffer.flip();
+            buffer.position(HEADER_SIZE);
+
+            int end = HEADER_SIZE;
+            CRC32 checksum = new CRC32();
+            while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+                int length = buffer.getInt();
+                int expected = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    break;
+                }
+                ByteBuffer contents = buffer.slice();
+                contents.limit(length);
+
+                checksum.reset();
+                checksum.update(contents.duplicate());
+                if ((int) checksum.getValue() != expected) {
+                    break;
+                }
+
+                apply(contents);
+                end += RECORD_HEADER_SIZE + length;
+                buffer.position(end);
+            }
+            return end;
+        }
+    }
+
+    /**
+     * Applies one journal record to the portfolio.
+     *
+     * @param contents the contents of the record
+     * @throws IOException if the record is malformed
+     */
+    private void apply(ByteBuffer contents) throws IOException {
+        try {
+            int recordType = contents.get();
+            if (recordType == BUY) {
+                String type = contents.get() == TYPE_MUTUAL_FUND ? "Mutual Fund" : "Stock";
+                String symbol = getString(contents);
+                String name = getString(contents);
+                double price = contents.getDouble();
+                int quantity = PortfolioBinaryFormat.readVarint(contents);
+                portfolio.buy(type, symbol, name, price, quantity);
+            } else if (recordType == SELL) {
+                String symbol = getString(contents);
+                double price = contents.getDouble();
+                int quantity = PortfolioBinaryFormat.readVarint(contents);
+                portfolio.sell(symbol, price, quantity);
+            } else if (recordType == PRICE) {
+                String symbol = getString(contents);
+                double price = contents.getDouble();
+                portfolio.updatePrice(symbol, price);
+            } else {
+                throw new IOException("Journal " + journalPath + " has an unknown record type " + recordType + ".");
+            }
+        } catch (RuntimeException e) {
+            throw new IOException("Journal " + journalPath + " is corrupt.", e);
+        }
+    }
+
+    /**
+     * Records a purchase made through the portfolio.
+     *
+     * @param investment the investment bought, after the purchase
+     * @param price      the price per unit paid
+     * @param quantity   the quantity of units bought
+     */
+    void recordBuy(Investment investment, double price, int quantity) {
+        synchronized (this) {
+            byte[] symbol = investment.getSymbol().getBytes(StandardCharsets.UTF_8);
+            byte[] name = investment.getName().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer contents = startRecord(2 + 2 * 5 + symbol.length + name.length + Double.BYTES + 5);
+            contents.put((byte) BUY);
+            contents.put((byte) (investment instanceof MutualFund ? TYPE_MUTUAL_FUND : TYPE_STOCK));
+            putBytes(contents, symbol);
+            putBytes(contents, name);
+            contents.putDouble(price);
+            putVarint(contents, quantity);
+            append();
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Records a sale made through the portfolio.
+     *
+     * @param symbol   the symbol of the investment sold
+     * @param price    the price per unit received
+     * @param quantity the quantity of units sold
+     */
+    void recordSell(String symbol, double price, int quantity) {
+        synchronized (this) {
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer contents = startRecord(1 + 5 + bytes.length + Double.BYTES + 5);
+            contents.put((byte) SELL);
+            putBytes(contents, bytes);
+            contents.putDouble(price);
+            putVarint(contents, quantity);
+            append();
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Records a price update made through the portfolio.
+     *
+     * @param symbol the symbol of the investment
+     * @param price  the new price per unit
+     */
+    void recordPrice(String symbol, double price) {
+        synchronized (this) {
+            byte[] bytes = symbol.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer contents = startRecord(1 + 5 + bytes.length + Double.BYTES);
+            contents.put((byte) PRICE);
+            putBytes(contents, bytes);
+            contents.putDouble(price);
+            append();
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Clears the record buffer, making sure it can hold a record of the given size.
+     *
+     * @param maxSize the largest size the contents of the record can have
+     * @return the buffer, positioned where the contents of the record start
+     */
+    private ByteBuffer startRecord(int maxSize) {
+        if (record.capacity() < RECORD_HEADER_SIZE + maxSize) {
+            record = ByteBuffer.allocate(Math.max(record.capacity() * 2, RECORD_HEADER_SIZE + maxSize));
+        }
+        record.clear();
+        record.position(RECORD_HEADER_SIZE);
+        return record;
+    }
+
+    /**
+     * Fills in the length and checksum of the record in the buffer and appends it to the
+     * journal. A broken journal only counts the change, and a record that can't be written
+     * breaks the journal.
+     */
+    private void append() {
+        if (failure != null) {
+            skipped++;
+            return;
+        }
+
+        int length = record.position() - RECORD_HEADER_SIZE;
+        CRC32 checksum = new CRC32();
+        checksum.update(record.array(), RECORD_HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(Integer.BYTES, (int) checksum.getValue());
+        record.flip();
+
+        try {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+            journalSize += RECORD_HEADER_SIZE + length;
+        } catch (IOException e) {
+            failure = e;
+            skipped++;
+            report(e);
+        }
+    }
+
+    /**
+     * Tells the failure listener about an error, or prints it if there is no listener.
+     *
+     * @param e the error
+     */
+    private void report(IOException e) {
+        Consumer<IOException> listener;
+        synchronized (this) {
+            listener = failureListener;
+        }
+        if (listener != null) {
+            listener.accept(e);
+        } else {
+            System.err.println("An error occurred while writing to the journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Compacts the journal once it has grown larger than the snapshot or has broken, or asks the
+     * compactor to. Compaction is only started once; if it fails, the journal keeps growing, or
+     * stays broken, until the next {@link #compact()}.
+     */
+    private void compactIfNeeded() {
+        Runnable requestCompaction;
+        synchronized (this) {
+            if (inBatch || compactionRequested
+                    || failure == null && journalSize <= Math.max(MIN_COMPACTION_SIZE, snapshotSize)) {
+                return;
+            }
+            compactionRequested = true;
+            requestCompaction = compactor;
+        }
+
+        if (requestCompaction != null) {
+            requestCompaction.run();
+        } else {
+            try {
+                compact();
+            } catch (IOException e) {
+                report(e);
+            }
+        }
+    }
+
+    /**
+     * Holds off compaction while a batch of orders is applied. The portfolio only publishes its
+     * snapshot once the whole batch is in, so a compaction started halfway would copy a
+     * portfolio that lacks orders already journaled, and then drop their records.
+     */
+    synchronized void beginBatch() {
+        inBatch = true;
+    }
+
+    /**
+     * Ends a batch started with {@link #beginBatch()}, and compacts the journal if it grew large
+     * enough during the batch. It must be called once the portfolio is consistent again.
+     */
+    void endBatch() {
+        synchronized (this) {
+            inBatch = false;
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Sets what to run, instead of compacting right away, once the journal has grown large
+     * enough to compact. It runs on the thread that changes the portfolio, and is expected to
+     * call {@link #compact(List, long)} later with a copy of the portfolio.
+     *
+     * @param compactor what to run when the journal should be compacted, or {@code null} to
+     *                  compact on the spot
+     */
+    synchronized void setCompactor(Runnable compactor) {
+        this.compactor = compactor;
+    }
+
+    /**
+     * Sets what to tell when a record can't be written, or a compaction started by the journal
+     * itself fails. It is called on the thread that changes the portfolio.
+     *
+     * @param failureListener what to tell about each error, or {@code null} to print it to
+     *                        standard error
+     */
+    synchronized void setFailureListener(Consumer<IOException> failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Returns the error that broke the journal. While it is broken, changes to the portfolio are
+     * not saved until the journal is compacted.
+     *
+     * @return the error that stopped a record from being written, or {@code null} if every
+     *         change since the last compaction is in the journal
+     */
+    public synchronized IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the position of the next record in the history of the journal. A copy of the
+     * portfolio taken together with this position can be compacted later, while more changes
+     * are journaled.
+     *
+     * @return the position of the next record
+     */
+    synchronized long position() {
+        return firstPosition + journalSize - HEADER_SIZE + skipped;
+    }
+
+    /**
+     * Writes the whole portfolio to a new snapshot and empties the journal. This happens on its
+     * own once the journal grows larger than the snapshot. It must be called from the thread
+     * that changes the portfolio.
+     *
+     * @throws IOException if the snapshot or the journal can't be written
+     */
+    public void compact() throws IOException {
+        compact(portfolio.getInvestments(), position());
+    }
+
+    /**
+     * Writes a copy of the portfolio to a new snapshot, and starts a new journal holding only
+     * the changes made after the copy was taken. This can run on any thread, while changes are
+     * still being journaled; compactions are run one at a time.
+     * <p>
+     * The snapshot and the new journal are both written to temporary files first and then moved
+     * into place, the snapshot first, so that whenever the program stops the files on disk still
+     * describe either the old or the new state of the portfolio.
+     * </p>
+     * <p>
+     * A broken journal can only be compacted from a copy that holds every change made so far,
+     * since the changes made after the copy are not in the journal to carry over.
+     * </p>
+     *
+     * @param investments the investments of the portfolio, copied when {@link #position()}
+     *                    returned {@code position}
+     * @param position    the position of the first change not included in the copy
+     * @throws IOException if the snapshot or the journal can't be written, or the journal is
+     *                     broken and changes were made after the copy was taken
+     */
+    void compact(List<Investment> investments, long position) throws IOException {
+        synchronized (compactionLock) {
+            // Skip a copy older than the snapshot already written
+            synchronized (this) {
+                if (position < firstPosition) {
+                    return;
+                }
+            }
+
+            Path snapshotTemp = Paths.get(fileName + ".tmp");
+            PortfolioFileReader.writeInvestments(snapshotTemp.toString(), investments, format);
+            force(snapshotTemp);
+            Fingerprint snapshot = Fingerprint.of(snapshotTemp);
+
+            // Carry the changes made while the snapshot was written over to the new journal
+            synchronized (this) {
+                if (failure != null && position != position()) {
+                    Files.deleteIfExists(snapshotTemp);
+                    throw new IOException("The journal " + journalPath
+                            + " is missing changes made after the portfolio was copied.", failure);
+                }
+
+                // A broken journal has nothing after the copy to carry over
+                long from = Math.min(HEADER_SIZE + position - firstPosition, journalSize);
+                writeJournal(pendingJournalPath, snapshot, channel, from, journalSize);
+
+                PortfolioFileReader.replaceFile(snapshotTemp, snapshotPath);
+                channel.close();
+                PortfolioFileReader.replaceFile(pendingJournalPath, journalPath);
+
+                channel = FileChannel.open(journalPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                journalSize = channel.size();
+                channel.position(journalSize);
+                firstPosition = position;
+                snapshotSize = snapshot.size;
+                compactionRequested = false;
+                failure = null;
+                skipped = 0;
+            }
+        }
+    }
+
+    /**
+     * Stops journaling the portfolio and closes the journal. Every change made until now is
+     * already in the journal, so nothing is lost by not compacting first, unless the journal is
+     * broken.
+     *
+     * @throws IOException if the journal can't be closed, or is broken and the changes made since
+     *                     it broke were lost
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (compactionLock) {
+            synchronized (this) {
+                portfolio.setJournal(null);
+                channel.close();
+                if (failure != null) {
+                    throw new IOException(skipped + " changes could not be saved to " + journalPath + ".", failure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a journal, replacing the file, and forces it to disk.
+     *
+     * @param path     the file to write
+     * @param snapshot the fingerprint of the snapshot the journal applies to
+     * @param records  the journal to copy records from, or {@code null} for an empty journal
+     * @param from     the offset of the first record to copy
+     * @param to       the offset just past the last record to copy
+     * @throws IOException if the file can't be written
+     */
+    private static void writeJournal(Path path, Fingerprint snapshot, FileChannel records, long from, long to) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.put(MAGIC);
+        header.put((byte) VERSION);
+        header.putLong(snapshot.size);
+        header.putInt(snapshot.checksum);
+        header.flip();
+
+        try (FileChannel out = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (long position = from; position < to; ) {
+                position += records.transferTo(position, to - position, out);
+            }
+            out.force(true);
+        }
+    }
+
+    /**
+     * Reads the header of a journal.
+     *
+     * @param path the journal file
+     * @return the fingerprint of the snapshot the journal applies to, or {@code null} if the
+     *         file doesn't exist or isn't a journal this class can read
+     * @throws IOException if the file exists but can't be read
+     */
+    private static Fingerprint readHeader(Path path) throws IOException {
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && in.read(header) >= 0) {
+                // keep reading until the header is full or the file ends
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE) {
+                return null;
+            }
+
+            byte[] magic = new byte[MAGIC.length];
+            header.get(magic);
+            if (!ByteBuffer.wrap(magic).equals(ByteBuffer.wrap(MAGIC)) || header.get() != VERSION) {
+                return null;
+            }
+            return new Fingerprint(header.getLong(), header.getInt());
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Forces a file that was just written to disk, so it is complete before it is moved into place.
+     *
+     * @param path the file
+     * @throws IOException if the file can't be written
+     */
+    private static void force(Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            file.force(true);
+        }
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        putVarint(buffer, bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static String getString(ByteBuffer buffer) throws IOException {
+        byte[] bytes = new byte[PortfolioBinaryFormat.readVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Identifies the exact contents of a snapshot by its size and CRC-32.
+     */
+    private static final class Fingerprint {
+
+        private final long size;
+        private final int checksum;
+
+        Fingerprint(long size, int checksum) {
+            this.size = size;
+            this.checksum = checksum;
+        }
+
+        /**
+         * Computes the fingerprint of a file.
+         *
+         * @param path the file
+         * @return the fingerprint of the file, with a size of -1 if it doesn't exist
+         * @throws IOException if the file exists but can't be read
+         */
+        static Fingerprint of(Path path) throws IOException {
+            try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+                CRC32 checksum = new CRC32();
+                ByteBuffer block = ByteBuffer.allocate(64 * 1024);
+                long size = 0;
+                int read;
+                while ((read = in.read(block)) >= 0) {
+                    block.flip();
+                    checksum.update(block);
+                    block.clear();
+                    size += read;
+                }
+                return new Fingerprint(size, (int) checksum.getValue());
+            } catch (NoSuchFileException e) {
+                return new Fingerprint(-1, 0);
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Fingerprint
+                    && ((Fingerprint) other).size == size
+                    && ((Fingerprint) other).checksum == checksum;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(size) * 31 + checksum;
+        }
+    }
+}
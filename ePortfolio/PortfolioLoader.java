@@ -0,0 +1,61 @@
+package ePortfolio;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+
+/**
+ * Reads several portfolio files in one load session, so that the investments read from all of
+ * them share one copy of each instrument's symbol, name and keywords.
+ * <p>
+ * {@code PortfolioFileReader} shares instruments only within the file it reads. A program that
+ * loads many portfolios drawn from the same instruments, such as the accounts of one firm, can
+ * read them through one {@code PortfolioLoader} instead, and keeps a single copy of the strings
+ * of an instrument however many portfolios hold it:
+ * </p>
+ * <pre>
+ * PortfolioLoader loader = new PortfolioLoader();
+ * for (String fileName : fileNames) {
+ *     Portfolio portfolio = new Portfolio();
+ *     portfolio.setInvestments(loader.readInvestments(fileName));
+ *     portfolios.add(portfolio);
+ * }
+ * </pre>
+ * <p>
+ * The loader holds every instrument it has read until it is dropped; the investments keep their
+ * shared strings after that. Files can be read from several threads at once. Streaming a file
+ * with {@link PortfolioFileReader#streamInvestmentsFromFile} doesn't go through a loader.
+ * </p>
+ */
+public final class PortfolioLoader {
+
+    // Attributes
+    private final InstrumentDictionary instruments = new InstrumentDictionary();
+
+    /**
+     * Reads the investments of a file front to back.
+     *
+     * @param fileName the name of the file to read investments from
+     * @return the investments in the file, in file order
+     * @throws NoSuchFileException if the file doesn't exist
+     * @throws IOException         if the file can't be read
+     */
+    public ArrayList<Investment> readInvestments(String fileName) throws IOException {
+        return readInvestments(fileName, PortfolioFileReader.LoadMode.SEQUENTIAL);
+    }
+
+    /**
+     * Reads the investments of a file using the given load mode, as
+     * {@link PortfolioFileReader#readInvestmentsFromFile(String, PortfolioFileReader.LoadMode)}
+     * does, but leaves reporting any error to the caller.
+     *
+     * @param fileName the name of the file to read investments from
+     * @param mode     how to read the file
+     * @return the investments in the file, in file order
+     * @throws NoSuchFileException if the file doesn't exist
+     * @throws IOException         if the file can't be read
+     */
+    public ArrayList<Investment> readInvestments(String fileName, PortfolioFileReader.LoadMode mode) throws IOException {
+        return PortfolioFileReader.readInvestments(fileName, mode, instruments);
+    }
+}
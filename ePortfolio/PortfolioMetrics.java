@@ -0,0 +1,377 @@
+package ePortfolio;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times the operations of {@code Portfolio} and {@code PortfolioFileReader}: how many
+ * buys, sells, searches, gain calculations, loads and saves there were, how many failed, how
+ * long they took, and how many bytes and records were read and written.
+ * <p>
+ * Metrics are off unless the JVM is started with {@code -DePortfolio.metrics=true}. The switch
+ * is a {@code static final} constant, so when it is off the JIT compiler removes the
+ * measurements altogether and the instrumented methods run as if they had none. When it is on,
+ * every measurement is a clock read and a few lock-free additions, so operations on many
+ * threads don't contend.
+ * </p>
+ * <p>
+ * {@link #snapshot()} returns the current values at any time. Setting
+ * {@code -DePortfolio.metrics.file=<file>} also appends a snapshot to that file every
+ * {@code ePortfolio.metrics.interval} seconds, 60 by default.
+ * </p>
+ */
+public final class PortfolioMetrics {
+
+    /** Whether metrics are being collected. */
+    public static final boolean ENABLED = Boolean.getBoolean("ePortfolio.metrics");
+
+    /**
+     * The operations that are counted and timed.
+     */
+    public enum Operation {
+        /** A buy order, placed alone or in a batch. */
+        BUY,
+        /** A sell order, placed alone or in a batch. */
+        SELL,
+        /** A search of the portfolio. */
+        SEARCH,
+        /** A calculation of the gain of every investment. */
+        GAIN,
+        /** A portfolio file read. */
+        LOAD,
+        /** A portfolio file written. */
+        SAVE
+    }
+
+    // Metrics of each operation, by ordinal
+    private static final LongAdder[] COUNTS = new LongAdder[Operation.values().length];
+    private static final LongAdder[] ERRORS = new LongAdder[Operation.values().length];
+    private static final LatencyHistogram[] LATENCIES = new LatencyHistogram[Operation.values().length];
+    private static final LongAdder BYTES_READ = new LongAdder();
+    private static final LongAdder BYTES_WRITTEN = new LongAdder();
+    private static final LongAdder RECORDS_READ = new LongAdder();
+    private static final LongAdder RECORDS_WRITTEN = new LongAdder();
+
+    private static ScheduledExecutorService dumper;
+    private static ScheduledFuture<?> dump;
+
+    static {
+        for (int i = 0; i < COUNTS.length; i++) {
+            COUNTS[i] = new LongAdder();
+            ERRORS[i] = new LongAdder();
+            LATENCIES[i] = new LatencyHistogram();
+        }
+        String file = System.getProperty("ePortfolio.metrics.file");
+        if (ENABLED && file != null) {
+            startDump(file, Long.getLong("ePortfolio.metrics.interval", 60));
+        }
+    }
+
+    private PortfolioMetrics() {
+    }
+
+    /**
+     * Starts timing an operation.
+     *
+     * @return the start time to pass to {@link #record}, or 0 if metrics are off
+     */
+    static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Counts an operation and records how long it took since {@link #start()}.
+     *
+     * @param operation the operation
+     * @param start     the time it started
+     * @param failed    whether it failed or was rejected
+     */
+    static void record(Operation operation, long start, boolean failed) {
+        if (ENABLED) {
+            LATENCIES[operation.ordinal()].record(System.nanoTime() - start);
+            count(operation, 1, failed ? 1 : 0);
+        }
+    }
+
+    /**
+     * Counts operations without timing them, such as the orders of a batch, which are only
+     * timed as a whole.
+     *
+     * @param operation the operation
+     * @param count     the number of operations
+     * @param failed    how many of them failed or were rejected
+     */
+    static void count(Operation operation, long count, long failed) {
+        if (ENABLED) {
+            COUNTS[operation.ordinal()].add(count);
+            if (failed > 0) {
+                ERRORS[operation.ordinal()].add(failed);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes and records of a file that was read.
+     *
+     * @param bytes   the size of the file
+     * @param records the number of investments read from it
+     */
+    static void countRead(long bytes, long records) {
+        if (ENABLED) {
+            BYTES_READ.add(bytes);
+            RECORDS_READ.add(records);
+        }
+    }
+
+    /**
+     * Counts the bytes and records of a file that was written.
+     *
+     * @param bytes   the size of the file
+     * @param records the number of investments written to it
+     */
+    static void countWritten(long bytes, long records) {
+        if (ENABLED) {
+            BYTES_WRITTEN.add(bytes);
+            RECORDS_WRITTEN.add(records);
+        }
+    }
+
+    /**
+     * Returns the current values of every metric. They are all zero if metrics are off.
+     *
+     * @return the snapshot
+     */
+    public static Snapshot snapshot() {
+        return new Snapshot();
+    }
+
+    /**
+     * Sets every metric back to zero. Operations that finish while this runs may be counted
+     * before or after the reset.
+     */
+    public static void reset() {
+        for (int i = 0; i < COUNTS.length; i++) {
+            COUNTS[i].reset();
+            ERRORS[i].reset();
+            LATENCIES[i].reset();
+        }
+        BYTES_READ.reset();
+        BYTES_WRITTEN.reset();
+        RECORDS_READ.reset();
+        RECORDS_WRITTEN.reset();
+    }
+
+    /**
+     * Starts appending a snapshot to a file at a fixed interval, on a background thread,
+     * replacing any dump already running. Nothing is written if metrics are off.
+     *
+     * @param fileName        the file to append to
+     * @param intervalSeconds the number of seconds between snapshots
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public static synchronized void startDump(String fileName, long intervalSeconds) {
+        if (intervalSeconds <= 0) {
+            throw new IllegalArgumentException("Interval must be greater than zero.");
+        }
+        stopDump();
+        if (!ENABLED) {
+            return;
+        }
+        if (dumper == null) {
+            dumper = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "ePortfolio-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        dump = dumper.scheduleAtFixedRate(() -> {
+            try {
+                dumpTo(fileName);
+            } catch (IOException e) {
+                System.err.println("Error: Could not write metrics to " + fileName + ": " + e.getMessage());
+            }
+        }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops appending snapshots to a file, if a dump is running.
+     */
+    public static synchronized void stopDump() {
+        if (dump != null) {
+            dump.cancel(false);
+            dump = null;
+        }
+    }
+
+    /**
+     * Appends a snapshot to a file, headed by the time it was taken.
+     *
+     * @param fileName the file to append to
+     * @throws IOException if the file can't be written
+     */
+    public static void dumpTo(String fileName) throws IOException {
+        String text = "# " + Instant.now() + System.lineSeparator() + snapshot() + System.lineSeparator();
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(fileName), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(text);
+        }
+    }
+
+    /**
+     * The values of every metric at one point in time. Latencies are in nanoseconds.
+     */
+    public static final class Snapshot {
+
+        private final EnumMap<Operation, Long> counts = new EnumMap<>(Operation.class);
+        private final EnumMap<Operation, Long> errors = new EnumMap<>(Operation.class);
+        private final EnumMap<Operation, LatencyHistogram.Summary> latencies = new EnumMap<>(Operation.class);
+        private final long bytesRead;
+        private final long bytesWritten;
+        private final long recordsRead;
+        private final long recordsWritten;
+
+        private Snapshot() {
+            for (Operation operation : Operation.values()) {
+                counts.put(operation, COUNTS[operation.ordinal()].sum());
+                errors.put(operation, ERRORS[operation.ordinal()].sum());
+                latencies.put(operation, LATENCIES[operation.ordinal()].summarize());
+            }
+            bytesRead = BYTES_READ.sum();
+            bytesWritten = BYTES_WRITTEN.sum();
+            recordsRead = RECORDS_READ.sum();
+            recordsWritten = RECORDS_WRITTEN.sum();
+        }
+
+        /**
+         * Returns the number of times an operation ran, including the times it failed.
+         *
+         * @param operation the operation
+         * @return the count
+         */
+        public long getCount(Operation operation) {
+            return counts.get(operation);
+        }
+
+        /**
+         * Returns the number of times an operation failed or was rejected.
+         *
+         * @param operation the operation
+         * @return the error count
+         */
+        public long getErrors(Operation operation) {
+            return errors.get(operation);
+        }
+
+        /**
+         * Returns the number of times an operation was timed. Orders placed in a batch are
+         * counted but not timed one by one.
+         *
+         * @param operation the operation
+         * @return the number of latencies recorded
+         */
+        public long getTimedCount(Operation operation) {
+            return latencies.get(operation).getCount();
+        }
+
+        /**
+         * Returns the latency of an operation at a percentile, to within about 3%.
+         *
+         * @param operation  the operation
+         * @param percentile the percentile, from 0 to 100
+         * @return the latency in nanoseconds
+         */
+        public long getLatency(Operation operation, double percentile) {
+            return latencies.get(operation).getPercentile(percentile);
+        }
+
+        /**
+         * Returns the mean latency of an operation.
+         *
+         * @param operation the operation
+         * @return the mean in nanoseconds
+         */
+        public double getMeanLatency(Operation operation) {
+            return latencies.get(operation).getMean();
+        }
+
+        /**
+         * Returns the longest latency of an operation.
+         *
+         * @param operation the operation
+         * @return the maximum in nanoseconds
+         */
+        public long getMaxLatency(Operation operation) {
+            return latencies.get(operation).getMax();
+        }
+
+        /**
+         * Returns the number of bytes of portfolio files read.
+         *
+         * @return the bytes read
+         */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /**
+         * Returns the number of bytes of portfolio files written.
+         *
+         * @return the bytes written
+         */
+        public long getBytesWritten() {
+            return bytesWritten;
+        }
+
+        /**
+         * Returns the number of investments read from portfolio files.
+         *
+         * @return the records read
+         */
+        public long getRecordsRead() {
+            return recordsRead;
+        }
+
+        /**
+         * Returns the number of investments written to portfolio files.
+         *
+         * @return the records written
+         */
+        public long getRecordsWritten() {
+            return recordsWritten;
+        }
+
+        /**
+         * Formats the snapshot as a table, one operation per line, with latencies in
+         * microseconds.
+         *
+         * @return the table
+         */
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("%-7s %12s %10s %10s %10s %10s %10s %10s%n",
+                    "op", "count", "errors", "mean us", "p50 us", "p99 us", "p99.9 us", "max us"));
+            for (Operation operation : Operation.values()) {
+                text.append(String.format("%-7s %12d %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                        operation.name().toLowerCase(), getCount(operation), getErrors(operation),
+                        getMeanLatency(operation) / 1e3, getLatency(operation, 50) / 1e3,
+                        getLatency(operation, 99) / 1e3, getLatency(operation, 99.9) / 1e3,
+                        getMaxLatency(operation) / 1e3));
+            }
+            text.append(String.format("read %d bytes, %d records; wrote %d bytes, %d records%n",
+                    bytesRead, recordsRead, bytesWritten, recordsWritten));
+            return text.toString();
+        }
+    }
+}
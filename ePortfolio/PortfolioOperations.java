@@ -0,0 +1,111 @@
+package ePortfolio;
+
+import java.util.ArrayList;
+
+/**
+ * The operations a portfolio supports: buying, selling, updating prices, computing gains and
+ * searching. {@code Portfolio} keeps an object for every investment, while
+ * {@code ColumnarPortfolio} keeps the same data in primitive arrays; both give the same
+ * results and messages.
+ */
+public interface PortfolioOperations {
+
+    /**
+     * Buys an investment by adding to the existing quantity if already owned,
+     * or creating a new investment if not owned.
+     *
+     * @param type             the type of investment, either "Stock" or "Mutual Fund"
+     * @param investmentSymbol the symbol representing the investment (e.g., AAPL)
+     * @param name             the name of the investment
+     * @param price            the price per unit at the time of purchase
+     * @param quantityPurchase the quantity of units to purchase
+     * @return a message indicating the result of the purchase operation
+     */
+    String buy(String type, String investmentSymbol, String name, double price, int quantityPurchase);
+
+    /**
+     * Sells a specified quantity of an investment, updating its quantity or removing it if sold completely.
+     *
+     * @param symbol         the symbol of the investment to be sold
+     * @param sellingPrice   the price per unit at the time of sale
+     * @param quantityToSell the quantity of units to sell
+     * @return a message indicating the result of the sale operation
+     */
+    String sell(String symbol, double sellingPrice, int quantityToSell);
+
+    /**
+     * Updates the price per unit of an investment.
+     *
+     * @param symbol the symbol of the investment to update
+     * @param price  the new price per unit
+     * @throws IllegalArgumentException if the portfolio doesn't hold the investment or the price is non-positive
+     */
+    void updatePrice(String symbol, double price);
+
+    /**
+     * Calculates and returns the gain for each investment individually.
+     *
+     * @return an {@code ArrayList} of {@code Double} representing the gain for each investment
+     */
+    ArrayList<Double> getGain();
+
+    /**
+     * Calculates the gain for each investment individually, in the same order as
+     * {@link #getGain()}, without boxing them.
+     *
+     * @return an array holding the gain for each investment
+     */
+    double[] getGains();
+
+    /**
+     * Writes the gain for each investment into an array supplied by the caller, so the array
+     * can be reused between calls.
+     *
+     * @param gains the array to fill, which must hold at least {@link #size()} values
+     * @return the number of gains written
+     * @throws IllegalArgumentException if the array is too small
+     */
+    int getGains(double[] gains);
+
+    /**
+     * Returns the total gain of the portfolio. The total is kept up to date as investments
+     * change, so this takes constant time. The gains are added as exact {@code Money} amounts,
+     * so the total doesn't depend on the order of the investments.
+     *
+     * @return the total gain
+     */
+    double getTotalGain();
+
+    /**
+     * Returns the total book value of the portfolio, in constant time.
+     *
+     * @return the sum of the book values of every investment
+     */
+    double getTotalBookValue();
+
+    /**
+     * Returns the total market value of the portfolio, in constant time. The market value of an
+     * investment is its price times its quantity, before any commission or redemption fee.
+     *
+     * @return the sum of the market values of every investment
+     */
+    double getTotalMarketValue();
+
+    /**
+     * Returns the number of investments in the portfolio.
+     *
+     * @return the number of investments
+     */
+    int size();
+
+    /**
+     * Searches for investments based on a symbol, keywords in the name, and a price range.
+     *
+     * @param tickerSymbol the symbol of the investment to search for (optional)
+     * @param keywords     the keywords in the investment name to search for (optional)
+     * @param lowPrice     the minimum price range for search
+     * @param highPrice    the maximum price range for search
+     * @return an {@code ArrayList} of {@code String} representing matching investments, or {@code null} if no matches are found
+     */
+    ArrayList<String> search(String tickerSymbol, String keywords, double lowPrice, double highPrice);
+}
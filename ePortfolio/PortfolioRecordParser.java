@@ -0,0 +1,514 @@
+package ePortfolio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses the {@code key = "value"} records of a portfolio file directly from bytes.
+ * <p>
+ * The parser is fed one line at a time, without its line terminator, and keeps the fields
+ * of the record being read until a blank line completes it. Keys are matched and values are
+ * unquoted in place, and quantities and prices are parsed straight from the bytes, so only
+ * the symbol and name of each investment are turned into {@code String}s. Anything the fast
+ * number parsers don't recognize is handed to {@code Integer.parseInt} or
+ * {@code Double.parseDouble}, so the accepted format is the same as before.
+ * </p>
+ * Text is decoded as UTF-8.
+ */
+final class PortfolioRecordParser {
+
+    // Record types
+    private static final int TYPE_NONE = 0;
+    private static final int TYPE_STOCK = 1;
+    private static final int TYPE_MUTUAL_FUND = 2;
+    private static final int TYPE_OTHER = 3;
+
+    // Keys, in lowercase
+    private static final byte[] KEY_TYPE = ascii("type");
+    private static final byte[] KEY_SYMBOL = ascii("symbol");
+    private static final byte[] KEY_NAME = ascii("name");
+    private static final byte[] KEY_QUANTITY = ascii("quantity");
+    private static final byte[] KEY_PRICE = ascii("price");
+    private static final byte[] KEY_BOOK_VALUE = ascii("bookvalue");
+    private static final byte[] VALUE_STOCK = ascii("stock");
+    private static final byte[] VALUE_MUTUAL_FUND = ascii("mutualfund");
+
+    /** Exact powers of ten, used to parse decimals that fit in a double without rounding twice. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    // Fields of the record being read
+    private int investType = TYPE_NONE;
+    private String investSymbol;
+    private String investName;
+    private int investQuantity;
+    private double investPrice;
+    private double investBookValue;
+
+    // Value bytes with the quotes taken out, used when a value has quotes in the middle
+    private byte[] scratch = new byte[64];
+
+    /**
+     * Parses one line of a portfolio file. A blank line ends the current record: if all of
+     * its fields have been read, the investment is returned and the fields are reset.
+     *
+     * @param buffer the buffer holding the line
+     * @param start  the index of the first byte of the line
+     * @param end    the index just past the last byte of the line, excluding the line terminator
+     * @return the investment completed by this line, or {@code null} if the line didn't complete one
+     */
+    Investment parseLine(ByteBuffer buffer, int start, int end) {
+        if (start == end) {
+            return completeRecord();
+        }
+
+        // Split the line in two at the first = sign
+        int equals = indexOf(buffer, start, end, (byte) '=');
+        if (equals < 0) {
+            return null;
+        }
+
+        int keyStart = trimStart(buffer, start, equals);
+        int keyEnd = trimEnd(buffer, keyStart, equals);
+        int valueStart = trimStart(buffer, equals + 1, end);
+        int valueEnd = trimEnd(buffer, valueStart, end);
+
+        if (keyMatches(buffer, keyStart, keyEnd, KEY_TYPE)) {
+            investType = parseType(buffer, valueStart, valueEnd);
+        } else if (keyMatches(buffer, keyStart, keyEnd, KEY_SYMBOL)) {
+            investSymbol = valueString(buffer, valueStart, valueEnd);
+        } else if (keyMatches(buffer, keyStart, keyEnd, KEY_NAME)) {
+            investName = valueString(buffer, valueStart, valueEnd);
+        } else if (keyMatches(buffer, keyStart, keyEnd, KEY_QUANTITY)) {
+            parseQuantity(buffer, valueStart, valueEnd);
+        } else if (keyMatches(buffer, keyStart, keyEnd, KEY_PRICE)) {
+            parsePrice(buffer, valueStart, valueEnd);
+        } else if (keyMatches(buffer, keyStart, keyEnd, KEY_BOOK_VALUE)) {
+            parseBookValue(buffer, valueStart, valueEnd);
+        }
+        return null;
+    }
+
+    /**
+     * Completes the record still pending at the end of the input, in case the file doesn't
+     * end with a blank line.
+     *
+     * @return the last investment of the file, or {@code null} if there is none
+     */
+    Investment finish() {
+        return completeRecord();
+    }
+
+    /**
+     * Creates the investment for the current record if all of its fields are populated,
+     * and resets the fields for the next investment.
+     *
+     * @return the investment, or {@code null} if the record is incomplete, of an unknown type,
+     *         or holds amounts an investment can't have
+     */
+    private Investment completeRecord() {
+        if (investType == TYPE_NONE || investSymbol == null || investName == null || investQuantity <= 0
+                || !(investPrice > 0.0) || !(investBookValue >= 0.0)) {
+            return null;
+        }
+        int type = investType;
+        String symbol = investSymbol;
+        String name = investName;
+        int quantity = investQuantity;
+        double price = investPrice;
+        double bookValue = investBookValue;
+
+        // Reset fields for the next investment
+        investType = TYPE_NONE;
+        investSymbol = investName = null;
+        investQuantity = 0;
+        investPrice = investBookValue = 0.0;
+
+        // A price that rounds to nothing or an amount too large to hold skips the record, like
+        // any other malformed record, rather than failing the whole file
+        try {
+            if (type == TYPE_STOCK) {
+                return new Stock(symbol, name, quantity, price, bookValue);
+            } else if (type == TYPE_MUTUAL_FUND) {
+                return new MutualFund(symbol, name, quantity, price, bookValue);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Skipped investment " + symbol + ": " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Parses the value of a {@code type} field.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     * @return the record type the value names
+     */
+    private int parseType(ByteBuffer buffer, int start, int end) {
+        if (isPlainQuoted(buffer, start, end)) {
+            if (keyMatches(buffer, start + 1, end - 1, VALUE_STOCK)) {
+                return TYPE_STOCK;
+            }
+            if (keyMatches(buffer, start + 1, end - 1, VALUE_MUTUAL_FUND)) {
+                return TYPE_MUTUAL_FUND;
+            }
+            return TYPE_OTHER;
+        }
+
+        String type = valueString(buffer, start, end);
+        if ("stock".equalsIgnoreCase(type)) {
+            return TYPE_STOCK;
+        }
+        if ("mutualfund".equalsIgnoreCase(type)) {
+            return TYPE_MUTUAL_FUND;
+        }
+        return TYPE_OTHER;
+    }
+
+    /**
+     * Parses the value of a {@code quantity} field.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     */
+    private void parseQuantity(ByteBuffer buffer, int start, int end) {
+        if (isUnquotable(buffer, start, end)) {
+            long quantity = parseInt(buffer, unquotedStart(buffer, start, end), unquotedEnd(buffer, start, end));
+            if (quantity != Long.MIN_VALUE) {
+                investQuantity = (int) quantity;
+                return;
+            }
+        }
+
+        String value = valueString(buffer, start, end);
+        try {
+            investQuantity = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid quantity format: " + value);
+        }
+    }
+
+    /**
+     * Parses the value of a {@code price} field.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     */
+    private void parsePrice(ByteBuffer buffer, int start, int end) {
+        if (isUnquotable(buffer, start, end)) {
+            double price = parseDouble(buffer, unquotedStart(buffer, start, end), unquotedEnd(buffer, start, end));
+            if (!Double.isNaN(price)) {
+                investPrice = price;
+                return;
+            }
+        }
+
+        String value = valueString(buffer, start, end);
+        try {
+            investPrice = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid price format: " + value);
+        }
+    }
+
+    /**
+     * Parses the value of a {@code bookValue} field.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     */
+    private void parseBookValue(ByteBuffer buffer, int start, int end) {
+        if (isUnquotable(buffer, start, end)) {
+            double bookValue = parseDouble(buffer, unquotedStart(buffer, start, end), unquotedEnd(buffer, start, end));
+            if (!Double.isNaN(bookValue)) {
+                investBookValue = bookValue;
+                return;
+            }
+        }
+
+        String value = valueString(buffer, start, end);
+        try {
+            investBookValue = Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid book value format: " + value);
+        }
+    }
+
+    /**
+     * Parses a plain decimal integer, such as {@code 450} or {@code -3}.
+     *
+     * @param buffer the buffer holding the number
+     * @param start  the index of the first byte of the number
+     * @param end    the index just past the number
+     * @return the number, or {@code Long.MIN_VALUE} if it isn't a plain decimal {@code int}
+     */
+    static long parseInt(ByteBuffer buffer, int start, int end) {
+        boolean negative = false;
+        int i = start;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 10) {
+            return Long.MIN_VALUE;
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        return value < Integer.MIN_VALUE || value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+    }
+
+    /**
+     * Parses a plain decimal number, such as {@code 139.0}, {@code 49544.991} or {@code 1.5E7}.
+     * Only numbers with at most 15 significant digits and a small exponent are handled; their
+     * digits and power of ten are both exact as doubles, so a single division or multiplication
+     * gives the correctly rounded result, the same as {@code Double.parseDouble}.
+     *
+     * @param buffer the buffer holding the number
+     * @param start  the index of the first byte of the number
+     * @param end    the index just past the number
+     * @return the number, or {@code NaN} if it has to be parsed by {@code Double.parseDouble}
+     */
+    static double parseDouble(ByteBuffer buffer, int start, int end) {
+        boolean negative = false;
+        int i = start;
+        if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')) {
+            negative = buffer.get(i) == '-';
+            i++;
+        }
+
+        long digits = 0;
+        int significantDigits = 0;
+        int digitCount = 0;
+        int exponent = 0;
+        boolean seenPoint = false;
+
+        for (; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b >= '0' && b <= '9') {
+                digitCount++;
+                if (digits != 0 || b != '0') {
+                    if (++significantDigits > 15) {
+                        return Double.NaN;
+                    }
+                    digits = digits * 10 + (b - '0');
+                }
+                if (seenPoint) {
+                    exponent--;
+                }
+            } else if (b == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                break;
+            }
+        }
+        if (digitCount == 0) {
+            return Double.NaN;
+        }
+
+        // Optional exponent
+        if (i < end && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            long explicitExponent = parseInt(buffer, i + 1, end);
+            if (explicitExponent == Long.MIN_VALUE) {
+                return Double.NaN;
+            }
+            exponent += (int) explicitExponent;
+        } else if (i < end) {
+            return Double.NaN;
+        }
+
+        double value;
+        if (digits == 0) {
+            value = 0.0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = digits * POWERS_OF_TEN[exponent];
+
+            // Only exact if the product still fits in the 53 bits of a double
+            if (value >= 0x1p53) {
+                return Double.NaN;
+            }
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = digits / POWERS_OF_TEN[-exponent];
+        } else {
+            return Double.NaN;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Checks whether a value is wrapped in quotes and has no other quotes inside it, which
+     * means the value is simply the bytes between the quotes.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     * @return {@code true} if the value is a plain quoted value
+     */
+    private static boolean isPlainQuoted(ByteBuffer buffer, int start, int end) {
+        if (end - start < 2 || buffer.get(start) != '"' || buffer.get(end - 1) != '"') {
+            return false;
+        }
+        return indexOf(buffer, start + 1, end - 1, (byte) '"') < 0;
+    }
+
+    /**
+     * Checks whether a value is either a plain quoted value or has no quotes at all, so that its
+     * text can be read in place between {@link #unquotedStart} and {@link #unquotedEnd}.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     * @return {@code true} if the value can be read without removing quotes from the middle
+     */
+    private static boolean isUnquotable(ByteBuffer buffer, int start, int end) {
+        return isPlainQuoted(buffer, start, end) || indexOf(buffer, start, end, (byte) '"') < 0;
+    }
+
+    /**
+     * Returns the start of a value's text, past its opening quote if it has one.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     * @return the index of the first byte of the text
+     */
+    private static int unquotedStart(ByteBuffer buffer, int start, int end) {
+        return end - start >= 2 && buffer.get(start) == '"' ? start + 1 : start;
+    }
+
+    /**
+     * Returns the end of a value's text, before its closing quote if it has one.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     * @return the index just past the last byte of the text
+     */
+    private static int unquotedEnd(ByteBuffer buffer, int start, int end) {
+        return end - start >= 2 && buffer.get(end - 1) == '"' ? end - 1 : end;
+    }
+
+    /**
+     * Decodes a value into a {@code String}, with every double quote removed.
+     *
+     * @param buffer the buffer holding the value
+     * @param start  the index of the first byte of the value
+     * @param end    the index just past the value
+     * @return the value without quotes
+     */
+    private String valueString(ByteBuffer buffer, int start, int end) {
+        if (isPlainQuoted(buffer, start, end)) {
+            start++;
+            end--;
+        }
+
+        if (end - start > scratch.length) {
+            scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        }
+        int length = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b != '"') {
+                scratch[length++] = b;
+            }
+        }
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares a key with an expected lowercase key, ignoring case.
+     *
+     * @param buffer   the buffer holding the key
+     * @param start    the index of the first byte of the key
+     * @param end      the index just past the key
+     * @param expected the expected key, in lowercase ASCII
+     * @return {@code true} if the key matches
+     */
+    private static boolean keyMatches(ByteBuffer buffer, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            int b = buffer.get(start + i);
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first occurrence of a byte.
+     *
+     * @param buffer the buffer to search
+     * @param start  the index to start searching at
+     * @param end    the index to stop searching at
+     * @param target the byte to look for
+     * @return the index of the byte, or -1 if it doesn't occur
+     */
+    private static int indexOf(ByteBuffer buffer, int start, int end, byte target) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == target) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips leading whitespace and control characters, like {@code String.trim}.
+     *
+     * @param buffer the buffer holding the text
+     * @param start  the index of the first byte of the text
+     * @param end    the index just past the text
+     * @return the index of the first byte that isn't whitespace
+     */
+    private static int trimStart(ByteBuffer buffer, int start, int end) {
+        while (start < end && (buffer.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    /**
+     * Skips trailing whitespace and control characters, like {@code String.trim}.
+     *
+     * @param buffer the buffer holding the text
+     * @param start  the index of the first byte of the text
+     * @param end    the index just past the text
+     * @return the index just past the last byte that isn't whitespace
+     */
+    private static int trimEnd(ByteBuffer buffer, int start, int end) {
+        while (end > start && (buffer.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Encodes an ASCII string as bytes.
+     *
+     * @param text the text to encode
+     * @return the bytes of the text
+     */
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,192 @@
+package ePortfolio;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves a portfolio on a background thread, so the thread that changes the portfolio, such as
+ * the Swing event dispatch thread, never waits for a full write.
+ * <p>
+ * Each call to {@link #requestSave()} takes the portfolio's current snapshot, which costs nothing,
+ * and hands it to a single writer thread, which copies the investments out of it and writes them. Requests made while a write is running
+ * collapse into one follow-up write of the latest snapshot. When the portfolio has a
+ * {@code PortfolioJournal}, a save compacts the journal into a new snapshot, and the journal
+ * hands its own compactions over to the saver as well, and reports the changes it fails to
+ * record to the saver's listener.
+ * </p>
+ */
+public final class PortfolioSaver implements Closeable {
+
+    /**
+     * Receives the outcome of each background write. Methods are called on the writer thread,
+     * except for a change the journal fails to record, which is reported on the thread that
+     * changes the portfolio.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a save has been written.
+         *
+         * @param investments the number of investments written
+         */
+        void saveCompleted(int investments);
+
+        /**
+         * Called when a save, or a change to a journaled portfolio, could not be written.
+         *
+         * @param e the error that stopped the write
+         */
+        void saveFailed(IOException e);
+    }
+
+    // Attributes
+    private final Portfolio portfolio;
+    private final String fileName;
+    private final PortfolioFileReader.FileFormat format;
+    private final PortfolioJournal journal;
+    private final Listener listener;
+    private final ExecutorService writer;
+
+    // The latest snapshot waiting to be written, and whether the writer thread is busy
+    private Copy pending;
+    private boolean writing;
+
+    /**
+     * Constructs a {@code PortfolioSaver} that writes the whole portfolio to its file, in the
+     * format the file already has.
+     *
+     * @param portfolio the portfolio to save
+     * @param fileName  the name of the file to save to
+     * @param listener  the listener to tell about each write
+     */
+    public PortfolioSaver(Portfolio portfolio, String fileName, Listener listener) {
+        this(portfolio, fileName, null, listener);
+    }
+
+    /**
+     * Constructs a {@code PortfolioSaver} for a journaled portfolio, which saves by compacting the
+     * journal and also takes over the journal's own compactions.
+     *
+     * @param portfolio the portfolio to save
+     * @param fileName  the name of the file to save to
+     * @param journal   the journal of the portfolio, or {@code null} if it has none
+     * @param listener  the listener to tell about each write
+     */
+    public PortfolioSaver(Portfolio portfolio, String fileName, PortfolioJournal journal, Listener listener) {
+        this.portfolio = portfolio;
+        this.fileName = fileName;
+        this.format = PortfolioFileReader.detectFileFormat(fileName);
+        this.journal = journal;
+        this.listener = listener;
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "portfolio-saver");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (journal != null) {
+            journal.setCompactor(this::requestSave);
+            journal.setFailureListener(listener::saveFailed);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the portfolio and schedules it to be written. This must be called from
+     * the thread that changes the portfolio, so the snapshot and the journal position agree.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the saver has been closed
+     */
+    public void requestSave() {
+        // The position is taken with the snapshot, so the journal knows which changes it holds
+        long position = journal == null ? 0 : journal.position();
+        Copy copy = new Copy(portfolio.getSnapshot(), position);
+
+        synchronized (this) {
+            pending = copy;
+            if (!writing) {
+                writer.execute(this::writePending);
+                writing = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the pending snapshot, and keeps going for as long as new ones arrive.
+     */
+    private void writePending() {
+        while (true) {
+            Copy copy;
+            synchronized (this) {
+                copy = pending;
+                pending = null;
+                if (copy == null) {
+                    writing = false;
+                    return;
+                }
+            }
+
+            try {
+                write(copy);
+                listener.saveCompleted(copy.snapshot.size());
+            } catch (IOException e) {
+                listener.saveFailed(e);
+            }
+        }
+    }
+
+    /**
+     * Writes one snapshot of the portfolio.
+     *
+     * @param copy the snapshot to write, with its journal position
+     * @throws IOException if the file can't be written
+     */
+    private void write(Copy copy) throws IOException {
+        List<Investment> investments = copy.snapshot.getInvestments();
+        if (journal != null) {
+            journal.compact(investments, copy.position);
+            return;
+        }
+
+        // Written next to the file and moved into place, so a failed write leaves the old file intact
+        PortfolioFileReader.writeInvestments(fileName, investments, format);
+    }
+
+    /**
+     * Waits for the pending writes to finish and stops the writer thread. A journal stops
+     * handing its compactions and failures over to this saver.
+     *
+     * @throws IOException if the wait is interrupted
+     */
+    @Override
+    public void close() throws IOException {
+        if (journal != null) {
+            journal.setCompactor(null);
+            journal.setFailureListener(null);
+        }
+        writer.shutdown();
+        try {
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the portfolio to be saved.", e);
+        }
+    }
+
+    /**
+     * A snapshot of the portfolio waiting to be written, with the journal position it was taken at.
+     */
+    private static final class Copy {
+
+        private final PortfolioSnapshot snapshot;
+        private final long position;
+
+        Copy(PortfolioSnapshot snapshot, long position) {
+            this.snapshot = snapshot;
+            this.position = position;
+        }
+    }
+}
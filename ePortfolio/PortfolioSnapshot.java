@@ -0,0 +1,343 @@
+package ePortfolio;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An immutable, point-in-time view of a {@code Portfolio}.
+ * <p>
+ * {@code Portfolio} publishes a new snapshot at the end of every operation that changes it, and
+ * {@link Portfolio#getSnapshot()} returns the latest one without copying anything. A snapshot
+ * never changes after it is published, so it can be read from any thread, for as long as
+ * needed, while the portfolio keeps trading; readers take no locks and never hold up writers.
+ * </p>
+ * <p>
+ * The investments are kept in a persistent hash array mapped trie keyed by the portfolio's index
+ * slots. A change copies only the path from the root to the investment, at most seven small
+ * nodes, and shares the rest of the trie with the previous snapshot. Each investment in the trie
+ * is a private copy that is never modified; the methods that return investments return fresh
+ * copies of them.
+ * </p>
+ */
+public final class PortfolioSnapshot {
+
+    /** A snapshot of an empty portfolio. */
+    static final PortfolioSnapshot EMPTY = new PortfolioSnapshot(Node.EMPTY, 0, 0, 0, 0, 0, 0);
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    // Attributes
+    private final Node root;
+    private final int size;
+    private final long version;
+    private final long nextSequence;
+    private final long totalBookValue;
+    private final long totalMarketValue;
+    private final long totalGain;
+
+    private PortfolioSnapshot(Node root, int size, long version, long nextSequence,
+                              long totalBookValue, long totalMarketValue, long totalGain) {
+        this.root = root;
+        this.size = size;
+        this.version = version;
+        this.nextSequence = nextSequence;
+        this.totalBookValue = totalBookValue;
+        this.totalMarketValue = totalMarketValue;
+        this.totalGain = totalGain;
+    }
+
+    /**
+     * Returns an empty snapshot whose version follows this one.
+     *
+     * @return the new snapshot
+     */
+    PortfolioSnapshot cleared() {
+        return new PortfolioSnapshot(Node.EMPTY, 0, version + 1, 0, 0, 0, 0);
+    }
+
+    /**
+     * Returns a snapshot with the investment in the given slot set to a copy of the given one.
+     * An investment new to the slot goes after every other investment in purchase order.
+     *
+     * @param slot       the index slot of the investment
+     * @param investment the investment in its current state
+     * @return the new snapshot
+     */
+    PortfolioSnapshot with(int slot, Investment investment) {
+        Entry old = root.find(slot, 0);
+        Entry entry = new Entry(slot, old == null ? nextSequence : old.sequence, investment.copy());
+
+        long bookValue = totalBookValue + entry.bookValue();
+        long marketValue = totalMarketValue + entry.marketValue();
+        long gain = totalGain + entry.gain();
+        if (old != null) {
+            bookValue -= old.bookValue();
+            marketValue -= old.marketValue();
+            gain -= old.gain();
+        }
+        return new PortfolioSnapshot(root.with(entry, 0), old == null ? size + 1 : size, version + 1,
+                old == null ? nextSequence + 1 : nextSequence, bookValue, marketValue, gain);
+    }
+
+    /**
+     * Returns a snapshot without the investment in the given slot.
+     *
+     * @param slot the index slot of the investment
+     * @return the new snapshot, or this one if the slot is empty
+     */
+    PortfolioSnapshot without(int slot) {
+        Entry old = root.find(slot, 0);
+        if (old == null) {
+            return this;
+        }
+        return new PortfolioSnapshot(root.without(slot, 0), size - 1, version + 1, nextSequence,
+                totalBookValue - old.bookValue(), totalMarketValue - old.marketValue(), totalGain - old.gain());
+    }
+
+    /**
+     * Returns the number of investments in the snapshot.
+     *
+     * @return the number of investments
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the version of the snapshot, which goes up by one with every change to the
+     * portfolio.
+     *
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns copies of the investments, in the order they were bought, as in
+     * {@link Portfolio#getInvestments()} at the time of the snapshot.
+     *
+     * @return an {@code ArrayList} of new {@code Investment} objects
+     */
+    public ArrayList<Investment> getInvestments() {
+        ArrayList<Investment> investments = new ArrayList<>(size);
+        for (Entry entry : entries()) {
+            investments.add(entry.investment.copy());
+        }
+        return investments;
+    }
+
+    /**
+     * Returns the gain of each investment, in the same order as {@link #getInvestments()}.
+     *
+     * @return the gains, one for each investment
+     */
+    public double[] getGains() {
+        List<Entry> entries = entries();
+        double[] gains = new double[entries.size()];
+        for (int i = 0; i < gains.length; i++) {
+            gains[i] = Money.toDouble(entries.get(i).gain());
+        }
+        return gains;
+    }
+
+    /**
+     * Returns the total gain of the investments, in constant time.
+     *
+     * @return the total gain
+     */
+    public double getTotalGain() {
+        return Money.toDouble(totalGain);
+    }
+
+    /**
+     * Returns the total book value of the investments, in constant time.
+     *
+     * @return the sum of the book values
+     */
+    public double getTotalBookValue() {
+        return Money.toDouble(totalBookValue);
+    }
+
+    /**
+     * Returns the total market value of the investments, in constant time.
+     *
+     * @return the sum of the prices times the quantities
+     */
+    public double getTotalMarketValue() {
+        return Money.toDouble(totalMarketValue);
+    }
+
+    /**
+     * Searches the snapshot for investments based on a symbol, keywords in the name, and a price
+     * range, with the same rules as {@link Portfolio#search}. Every investment is checked, so
+     * this is slower than searching the portfolio's indexes, but it doesn't touch the portfolio.
+     *
+     * @param tickerSymbol the symbol of the investment to search for (optional)
+     * @param keywords     the keywords in the investment name to search for (optional)
+     * @param lowPrice     the minimum price range for search
+     * @param highPrice    the maximum price range for search
+     * @return an {@code ArrayList} of {@code String} representing matching investments, or {@code null} if no matches are found
+     */
+    public ArrayList<String> search(String tickerSymbol, String keywords, double lowPrice, double highPrice) {
+        if (lowPrice > highPrice) {
+            return null;
+        }
+        List<String> wanted = keywords.trim().isEmpty() ? List.of() : Arrays.asList(Portfolio.nameKeywords(keywords.trim()));
+
+        // A symbol matches every investment held under it in any case, as in the portfolio's symbol index
+        ArrayList<String> resultList = new ArrayList<>();
+        for (Entry entry : entries()) {
+            Investment investment = entry.investment;
+            if (!tickerSymbol.isEmpty() && !investment.getSymbol().equalsIgnoreCase(tickerSymbol)) {
+                continue;
+            }
+            double price = investment.getPrice();
+            if (price >= lowPrice && price <= highPrice
+                    && Arrays.asList(investment.getInstrument().getKeywords()).containsAll(wanted)) {
+                resultList.add(investment.toString());
+            }
+        }
+        return resultList.isEmpty() ? null : resultList;
+    }
+
+    /**
+     * Collects the entries of the trie in the order they were bought.
+     *
+     * @return the entries, sorted by sequence number
+     */
+    private List<Entry> entries() {
+        ArrayList<Entry> entries = new ArrayList<>(size);
+        root.forEach(entries::add);
+        entries.sort(Comparator.comparingLong(entry -> entry.sequence));
+        return entries;
+    }
+
+    /**
+     * An investment held in the trie: its slot, its place in purchase order, and a copy of it
+     * that is never modified.
+     */
+    private static final class Entry {
+
+        private final int slot;
+        private final long sequence;
+        private final Investment investment;
+
+        Entry(int slot, long sequence, Investment investment) {
+            this.slot = slot;
+            this.sequence = sequence;
+            this.investment = investment;
+        }
+
+        long bookValue() {
+            return investment.getBookValueUnits();
+        }
+
+        long marketValue() {
+            return investment.getPriceUnits() * investment.getQuantity();
+        }
+
+        long gain() {
+            return investment.getGainUnits();
+        }
+    }
+
+    /**
+     * A node of the trie. Each level uses the next five bits of the slot to pick one of 32
+     * children, and only the children that are present are stored, in order, with a bitmap
+     * saying which they are. A child is either an {@code Entry} or another {@code Node}.
+     */
+    private static final class Node {
+
+        static final Node EMPTY = new Node(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] children;
+
+        Node(int bitmap, Object[] children) {
+            this.bitmap = bitmap;
+            this.children = children;
+        }
+
+        Entry find(int slot, int shift) {
+            int bit = 1 << ((slot >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object child = children[index(bit)];
+            if (child instanceof Node) {
+                return ((Node) child).find(slot, shift + BITS);
+            }
+            Entry entry = (Entry) child;
+            return entry.slot == slot ? entry : null;
+        }
+
+        Node with(Entry entry, int shift) {
+            int bit = 1 << ((entry.slot >>> shift) & MASK);
+            int index = index(bit);
+
+            // A free position: insert the entry
+            if ((bitmap & bit) == 0) {
+                Object[] newChildren = new Object[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, index);
+                newChildren[index] = entry;
+                System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+                return new Node(bitmap | bit, newChildren);
+            }
+
+            Object child = children[index];
+            Object newChild;
+            if (child instanceof Node) {
+                newChild = ((Node) child).with(entry, shift + BITS);
+            } else if (((Entry) child).slot == entry.slot) {
+                newChild = entry;
+            } else {
+                // Two slots share these bits: push both down a level
+                newChild = EMPTY.with((Entry) child, shift + BITS).with(entry, shift + BITS);
+            }
+            Object[] newChildren = children.clone();
+            newChildren[index] = newChild;
+            return new Node(bitmap, newChildren);
+        }
+
+        Node without(int slot, int shift) {
+            int bit = 1 << ((slot >>> shift) & MASK);
+            int index = index(bit);
+            Object child = children[index];
+
+            if (child instanceof Node) {
+                Node newChild = ((Node) child).without(slot, shift + BITS);
+                Object[] newChildren = children.clone();
+
+                // Pull a lone entry back up, so removed slots don't leave chains of nodes behind
+                newChildren[index] = newChild.children.length == 1 && newChild.children[0] instanceof Entry
+                        ? newChild.children[0]
+                        : newChild;
+                return new Node(bitmap, newChildren);
+            }
+
+            Object[] newChildren = new Object[children.length - 1];
+            System.arraycopy(children, 0, newChildren, 0, index);
+            System.arraycopy(children, index + 1, newChildren, index, children.length - index - 1);
+            return new Node(bitmap & ~bit, newChildren);
+        }
+
+        void forEach(Consumer<Entry> action) {
+            for (Object child : children) {
+                if (child instanceof Node) {
+                    ((Node) child).forEach(action);
+                } else {
+                    action.accept((Entry) child);
+                }
+            }
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ePortfolio;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * A valuation of every investment in a portfolio, computed from scratch: the gain of each
+ * investment and the total book value, market value and gain.
+ * <p>
+ * Large portfolios are split into ranges that are valued in parallel on a fork-join pool, and
+ * the partial totals are added together as they come back. Totals are added as exact
+ * {@link Money} units rather than as {@code double}s, so the result is the same however the
+ * work was split and whatever order the ranges finished in. Portfolios smaller than
+ * {@link #PARALLEL_THRESHOLD} are valued on the calling thread, where splitting would cost more
+ * than it saves.
+ * </p>
+ * <p>
+ * The investments must not be changed while they are being valued.
+ * </p>
+ */
+public final class PortfolioValuation {
+
+    /**
+     * The number of investments below which a valuation runs on the calling thread. It can be
+     * set with the {@code ePortfolio.parallelThreshold} system property.
+     */
+    public static final int PARALLEL_THRESHOLD = Integer.getInteger("ePortfolio.parallelThreshold", 8192);
+
+    // Attributes
+    private final double[] gains;
+    private final long totalBookValue;
+    private final long totalMarketValue;
+    private final long totalGain;
+
+    private PortfolioValuation(double[] gains, Totals totals) {
+        this.gains = gains;
+        this.totalBookValue = totals.bookValue;
+        this.totalMarketValue = totals.marketValue;
+        this.totalGain = totals.gain;
+    }
+
+    /**
+     * Values a list of investments, in parallel on the common fork-join pool if the list is
+     * large enough.
+     *
+     * @param investments the investments to value
+     * @return the valuation
+     */
+    public static PortfolioValuation of(List<Investment> investments) {
+        return of(investments, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Values a list of investments, in parallel on the given pool if the list is large enough.
+     *
+     * @param investments the investments to value, which should allow fast random access
+     * @param pool        the pool to run on
+     * @return the valuation
+     */
+    public static PortfolioValuation of(List<Investment> investments, ForkJoinPool pool) {
+        int size = investments.size();
+        double[] gains = new double[size];
+        if (size < PARALLEL_THRESHOLD || pool.getParallelism() == 1) {
+            return new PortfolioValuation(gains, valueRange(investments, gains, 0, size));
+        }
+
+        // Aim for a few ranges per thread, so a slow range doesn't hold the others up
+        int rangeSize = Math.max(PARALLEL_THRESHOLD / 4, size / (pool.getParallelism() * 4));
+        Totals totals = pool.invoke(new ValuationTask(investments, gains, 0, size, rangeSize));
+        return new PortfolioValuation(gains, totals);
+    }
+
+    /**
+     * Returns the gain of each investment, in the order of the list that was valued.
+     *
+     * @return the gains, one for each investment
+     */
+    public double[] getGains() {
+        return gains.clone();
+    }
+
+    /**
+     * Returns the total gain of the investments.
+     *
+     * @return the total gain
+     */
+    public double getTotalGain() {
+        return Money.toDouble(totalGain);
+    }
+
+    /**
+     * Returns the total book value of the investments.
+     *
+     * @return the sum of the book values
+     */
+    public double getTotalBookValue() {
+        return Money.toDouble(totalBookValue);
+    }
+
+    /**
+     * Returns the total market value of the investments, their prices times their quantities.
+     *
+     * @return the sum of the market values
+     */
+    public double getTotalMarketValue() {
+        return Money.toDouble(totalMarketValue);
+    }
+
+    /**
+     * Values a range of investments on the calling thread.
+     *
+     * @param investments the investments to value
+     * @param gains       the array to write each gain into
+     * @param from        the index of the first investment, inclusive
+     * @param to          the index of the last investment, exclusive
+     * @return the totals of the range
+     */
+    private static Totals valueRange(List<Investment> investments, double[] gains, int from, int to) {
+        Totals totals = new Totals();
+        for (int i = from; i < to; i++) {
+            Investment investment = investments.get(i);
+            long gain = investment.getGainUnits();
+            gains[i] = Money.toDouble(gain);
+
+            // Plain long arithmetic, so an overflow on the way cancels out in the final total
+            totals.bookValue += investment.getBookValueUnits();
+            totals.marketValue += investment.getPriceUnits() * investment.getQuantity();
+            totals.gain += gain;
+        }
+        return totals;
+    }
+
+    /**
+     * The totals of a range of investments, in {@link Money} units.
+     */
+    private static final class Totals {
+
+        private long bookValue;
+        private long marketValue;
+        private long gain;
+    }
+
+    /**
+     * Values a range of investments, splitting it in half until the pieces are small enough.
+     */
+    private static final class ValuationTask extends RecursiveTask<Totals> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Investment> investments;
+        private final double[] gains;
+        private final int from;
+        private final int to;
+        private final int rangeSize;
+
+        ValuationTask(List<Investment> investments, double[] gains, int from, int to, int rangeSize) {
+            this.investments = investments;
+            this.gains = gains;
+            this.from = from;
+            this.to = to;
+            this.rangeSize = rangeSize;
+        }
+
+        @Override
+        protected Totals compute() {
+            if (to - from <= rangeSize) {
+                return valueRange(investments, gains, from, to);
+            }
+
+            int middle = (from + to) >>> 1;
+            ValuationTask left = new ValuationTask(investments, gains, from, middle, rangeSize);
+            left.fork();
+            Totals totals = new ValuationTask(investments, gains, middle, to, rangeSize).compute();
+            Totals leftTotals = left.join();
+
+            totals.bookValue += leftTotals.bookValue;
+            totals.marketValue += leftTotals.marketValue;
+            totals.gain += leftTotals.gain;
+            return totals;
+        }
+    }
+}
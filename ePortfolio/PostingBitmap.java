@@ -0,0 +1,439 @@
+package ePortfolio;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A compressed set of non-negative {@code int} values, used by {@code Portfolio} for the
+ * postings of its search indexes.
+ * <p>
+ * Values are split by their upper 16 bits into containers that each hold the lower 16 bits
+ * of up to 65536 values, in the style of a roaring bitmap. A container with few values is a
+ * sorted {@code char} array; once it holds more than {@value #ARRAY_LIMIT} values it becomes a
+ * plain 65536-bit bitmap. Intersections work container by container, so two dense postings
+ * are intersected one 64-bit word at a time, and no values are ever boxed.
+ * </p>
+ */
+final class PostingBitmap {
+
+    /** The largest number of values an array container holds before it becomes a bitmap. */
+    static final int ARRAY_LIMIT = 4096;
+
+    // Attributes
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+    private int cardinality;
+
+    /**
+     * Constructs a new, empty {@code PostingBitmap}.
+     */
+    PostingBitmap() {
+        keys = new char[4];
+        containers = new Container[4];
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value the value to add, which must not be negative
+     */
+    void add(int value) {
+        char high = (char) (value >>> 16);
+        int index = indexOf(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new ArrayContainer());
+        }
+
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add((char) value);
+        cardinality += containers[index].cardinality() - before;
+    }
+
+    /**
+     * Removes a value from the set, if it is present.
+     *
+     * @param value the value to remove
+     */
+    void remove(int value) {
+        int index = indexOf((char) (value >>> 16));
+        if (index < 0) {
+            return;
+        }
+
+        Container container = containers[index];
+        int before = container.cardinality();
+        container = container.remove((char) value);
+        cardinality += container.cardinality() - before;
+
+        if (container.cardinality() == 0) {
+            removeContainer(index);
+        } else {
+            containers[index] = container;
+        }
+    }
+
+    /**
+     * Checks whether a value is in the set.
+     *
+     * @param value the value to look for
+     * @return {@code true} if the set contains the value
+     */
+    boolean contains(int value) {
+        int index = indexOf((char) (value >>> 16));
+        return index >= 0 && containers[index].contains((char) value);
+    }
+
+    /**
+     * Returns the number of values in the set.
+     *
+     * @return the number of values in the set
+     */
+    int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Checks whether the set is empty.
+     *
+     * @return {@code true} if the set holds no values
+     */
+    boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Computes the intersection of this set and another one. Neither set is modified.
+     *
+     * @param other the set to intersect with
+     * @return a new set holding the values found in both sets
+     */
+    PostingBitmap and(PostingBitmap other) {
+        PostingBitmap result = new PostingBitmap();
+        int i = 0;
+        int j = 0;
+
+        // Only containers with the same upper bits can have values in common
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertContainer(result.size, keys[i], container);
+                    result.cardinality += container.cardinality();
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Passes every value in the set to a consumer, in ascending order.
+     *
+     * @param consumer the consumer to call for each value
+     */
+    void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    /**
+     * Returns every value in the set, in ascending order.
+     *
+     * @return a new array of the values
+     */
+    int[] toArray() {
+        int[] values = new int[cardinality];
+        int[] count = new int[1];
+        forEach(value -> values[count[0]++] = value);
+        return values;
+    }
+
+    /**
+     * Finds the container for the given upper bits.
+     *
+     * @param high the upper 16 bits of a value
+     * @return the index of the container, or {@code -(insertion point) - 1} if there is none
+     */
+    private int indexOf(char high) {
+        // Values are usually added in ascending order, so check the last container first
+        if (size > 0 && keys[size - 1] == high) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, high);
+    }
+
+    /**
+     * Inserts a container at the given position, growing the arrays if needed.
+     *
+     * @param index     the position to insert at
+     * @param high      the upper 16 bits shared by the container's values
+     * @param container the container to insert
+     */
+    private void insertContainer(int index, char high, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = high;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * Removes the container at the given position.
+     *
+     * @param index the position of the container to remove
+     */
+    private void removeContainer(int index) {
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+        size--;
+        containers[size] = null;
+    }
+
+    /**
+     * Holds the lower 16 bits of the values that share the same upper 16 bits. Operations that
+     * change the container return the container to use from then on, which lets a container
+     * switch between the array and bitmap forms as it grows and shrinks.
+     */
+    private abstract static class Container {
+
+        abstract Container add(char low);
+
+        abstract Container remove(char low);
+
+        abstract boolean contains(char low);
+
+        abstract int cardinality();
+
+        abstract Container and(Container other);
+
+        abstract void forEach(int high, IntConsumer consumer);
+    }
+
+    /**
+     * A container holding its values in a sorted {@code char} array.
+     */
+    private static final class ArrayContainer extends Container {
+
+        private char[] values;
+        private int cardinality;
+
+        ArrayContainer() {
+            values = new char[4];
+        }
+
+        ArrayContainer(char[] values, int cardinality) {
+            this.values = values;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                return this;
+            }
+
+            // Too many values to keep in an array, switch to a bitmap
+            if (cardinality >= ARRAY_LIMIT) {
+                return toBitmap().add(low);
+            }
+
+            index = -index - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.max(4, Math.min(cardinality * 2, ARRAY_LIMIT)));
+            }
+            System.arraycopy(values, index, values, index + 1, cardinality - index);
+            values[index] = low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            int index = Arrays.binarySearch(values, 0, cardinality, low);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, cardinality - index - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[Math.min(cardinality, other.cardinality())];
+            int count = 0;
+
+            if (other instanceof ArrayContainer) {
+                // Merge the two sorted arrays
+                ArrayContainer array = (ArrayContainer) other;
+                int i = 0;
+                int j = 0;
+                while (i < cardinality && j < array.cardinality) {
+                    if (values[i] < array.values[j]) {
+                        i++;
+                    } else if (values[i] > array.values[j]) {
+                        j++;
+                    } else {
+                        result[count++] = values[i];
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                // Probe the bitmap for each of our values
+                for (int i = 0; i < cardinality; i++) {
+                    if (other.contains(values[i])) {
+                        result[count++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(result, count);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < cardinality; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        /**
+         * Converts this container into a bitmap container holding the same values.
+         *
+         * @return the bitmap container
+         */
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * A container holding its values as bits in a 65536-bit bitmap.
+     */
+    private static final class BitmapContainer extends Container {
+
+        private final long[] words;
+        private int cardinality;
+
+        BitmapContainer() {
+            words = new long[1024];
+        }
+
+        BitmapContainer(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char low) {
+            long word = words[low >>> 6];
+            long updated = word | (1L << low);
+            if (updated != word) {
+                words[low >>> 6] = updated;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char low) {
+            long word = words[low >>> 6];
+            long updated = word & ~(1L << low);
+            if (updated != word) {
+                words[low >>> 6] = updated;
+                cardinality--;
+
+                // Few enough values left to go back to an array
+                if (cardinality <= ARRAY_LIMIT) {
+                    return toArray();
+                }
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+
+            // AND the two bitmaps word by word
+            long[] otherWords = ((BitmapContainer) other).words;
+            long[] result = new long[words.length];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                result[i] = words[i] & otherWords[i];
+                count += Long.bitCount(result[i]);
+            }
+
+            BitmapContainer bitmap = new BitmapContainer(result, count);
+            return count <= ARRAY_LIMIT ? bitmap.toArray() : bitmap;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        /**
+         * Converts this container into an array container holding the same values.
+         *
+         * @return the array container
+         */
+        private ArrayContainer toArray() {
+            char[] values = new char[cardinality];
+            int count = 0;
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    values[count++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+            return new ArrayContainer(values, count);
+        }
+    }
+}
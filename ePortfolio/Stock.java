@@ -10,6 +10,9 @@ public class Stock extends Investment {
     /** A fixed commission applied to each stock transaction. */
     public static final double COMISSION = 9.99;
 
+    /** The commission, in {@link Money} units. */
+    static final long COMISSION_UNITS = Money.of(COMISSION);
+
     /**
      * Constructs a Stock object with a specified symbol, name, quantity, price, and book value.
      * 
@@ -34,22 +37,29 @@ public class Stock extends Investment {
      */
     public Stock(String symbol, String name, int quantity, double price) {
         super(symbol, name, quantity, price);
-        setBookValue(quantity * price + COMISSION);
+        setBookValueUnits(Money.add(getBookValueUnits(), COMISSION_UNITS));
+    }
+
+    /**
+     * Constructs a copy of another stock.
+     * 
+     * @param other the stock to copy
+     */
+    Stock(Stock other) {
+        super(other);
     }
 
     // Getter and setter methods are inherited from investment parent class
 
     /**
-     * Buys more stocks by updating the quantity and book value.
-     * Adds an additional commission to the book value for each purchase.
+     * Returns the commission added to the book value for each purchase of more stocks.
+     * {@code buy} adds it in the same change as the stocks, so a listener sees one update.
      * 
-     * @param quantity the quantity of stocks to buy
-     * @param price the price at which the stocks are purchased
+     * @return the commission, in {@link Money} units
      */
     @Override
-    public void buy(int quantity, double price) {
-        super.buy(quantity, price);
-        setBookValue(getBookValue() + COMISSION);
+    long purchaseFeeUnits() {
+        return COMISSION_UNITS;
     }
 
     /**
@@ -59,15 +69,32 @@ public class Stock extends Investment {
      * @param quantity the quantity of stocks to sell
      * @param price the price per unit at which the stocks are sold
      * @return a string message indicating the payment received after deducting the commission
+     * @throws IllegalArgumentException if the payment is too large to hold
      */
     @Override
     public String sell(int quantity, double price) {
-        double paymentReceived = quantity * price - COMISSION;
-        String message = "Payment received by investor is " + paymentReceived;
+        String message;
+        try {
+            message = saleMessage(quantity, Money.of(price));
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount out of range: " + price + " x " + quantity);
+        }
         super.sell(quantity, price);
         return message;
     }
 
+    /**
+     * Builds the message for a sale of stocks, showing the payment received after the commission.
+     *
+     * @param quantity the quantity of stocks sold
+     * @param price    the price per unit, in {@link Money} units
+     * @return the message for the sale
+     */
+    static String saleMessage(int quantity, long price) {
+        long paymentReceived = Money.subtract(Money.times(price, quantity), COMISSION_UNITS);
+        return "Payment received by investor is " + Money.toDouble(paymentReceived);
+    }
+
     /**
      * Provides a formatted string representation of the stock.
      * 
@@ -90,18 +117,41 @@ public class Stock extends Investment {
                "symbol = \"" + this.getSymbol() + "\"\n" +
                "name = \"" + this.getName() + "\"\n" +
                "quantity = \"" + this.getQuantity() + "\"\n" +
-               "price = \"" + this.getPrice() + "\"\n" +
-               "bookValue = \"" + this.getBookValue() + "\"\n";
+               "price = \"" + Money.toString(this.getPriceUnits()) + "\"\n" +
+               "bookValue = \"" + Money.toString(this.getBookValueUnits()) + "\"\n";
     }
 
     /**
      * Calculates the gain for the stock.
      * The gain is calculated as the current value of the stock minus the commission and the book value.
      * 
-     * @return the calculated gain for the stock
+     * @return the calculated gain for the stock, in {@link Money} units
      */
     @Override
-    public double getGain() {
-        return (this.getPrice() * this.getQuantity() - COMISSION) - this.getBookValue();
+    public long getGainUnits() {
+        return gainUnits(this.getQuantity(), this.getPriceUnits(), this.getBookValueUnits());
+    }
+
+    @Override
+    long gainUnitsAt(int quantity, long price, long bookValue) {
+        return gainUnits(quantity, price, bookValue);
+    }
+
+    @Override
+    Stock copy() {
+        return new Stock(this);
+    }
+
+    /**
+     * Calculates the gain of a stock position from its attributes.
+     *
+     * @param quantity  the quantity of stocks owned
+     * @param price     the price per unit, in {@link Money} units
+     * @param bookValue the book value, in {@link Money} units
+     * @return the gain, in {@link Money} units
+     */
+    static long gainUnits(int quantity, long price, long bookValue) {
+        long currentValue = Money.times(price, quantity);
+        return Money.subtract(Money.subtract(currentValue, COMISSION_UNITS), bookValue);
     }
 }